@@ -0,0 +1,3 @@
+-- Add client_tap_id column to meal_records table
+-- Set for taps a kiosk recorded offline and uploaded later; a re-upload of the same tap is recognised by it
+ALTER TABLE meal_records ADD COLUMN client_tap_id VARCHAR(100) UNIQUE;
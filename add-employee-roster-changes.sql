@@ -0,0 +1,13 @@
+-- Create the kiosk roster change log; versions are the auto-increment keys and survive restarts
+-- The application creates these tables on startup if they are missing
+CREATE TABLE IF NOT EXISTS employee_roster_changes (
+    version BIGINT AUTO_INCREMENT PRIMARY KEY,
+    employee_id VARCHAR(36) NOT NULL,
+    changed_at TIMESTAMP NOT NULL
+);
+
+-- Epoch of the change log; a new epoch makes kiosks take a full roster
+CREATE TABLE IF NOT EXISTS employee_roster_state (
+    id INT PRIMARY KEY,
+    epoch BIGINT NOT NULL
+);
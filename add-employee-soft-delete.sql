@@ -0,0 +1,3 @@
+-- Add deleted_at column to employees table
+-- Deleted employees keep their row and meal history for payroll; the column marks when they were removed
+ALTER TABLE employees ADD COLUMN deleted_at DATETIME NULL;
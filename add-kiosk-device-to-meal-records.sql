@@ -0,0 +1,4 @@
+-- Add kiosk_device_id column to meal_records table
+-- The kiosk device that signed the tap; null for meals recorded by staff logins
+ALTER TABLE meal_records ADD COLUMN kiosk_device_id VARCHAR(64);
+CREATE INDEX idx_meal_records_kiosk_recorded_at ON meal_records (kiosk_device_id, recorded_at);
@@ -0,0 +1,12 @@
+-- Create kiosk_devices table
+-- Each kiosk signs its requests with its own secret and records meals as its operator user
+CREATE TABLE IF NOT EXISTS kiosk_devices (
+    id VARCHAR(64) PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    secret VARCHAR(64) NOT NULL,
+    operator_user_id VARCHAR(50) NOT NULL,
+    is_active BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at DATETIME,
+    updated_at DATETIME,
+    FOREIGN KEY (operator_user_id) REFERENCES users(id)
+);
@@ -0,0 +1,9 @@
+-- Create meal_record_receipts table
+-- Holds the receipt data of each meal record as it was at record time, so reprints need one primary-key read
+CREATE TABLE IF NOT EXISTS meal_record_receipts (
+    meal_record_id VARCHAR(36) PRIMARY KEY,
+    payload TEXT NOT NULL,
+    created_at DATETIME,
+    updated_at DATETIME,
+    FOREIGN KEY (meal_record_id) REFERENCES meal_records(id) ON DELETE CASCADE
+);
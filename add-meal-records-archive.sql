@@ -0,0 +1,44 @@
+-- Create meal_records_archive and meal_record_items_archive tables
+-- Meal records older than cafeteria.archive.retention-months are moved here by MealRecordArchiveService.
+-- meal_records itself is not partitioned: MySQL requires every unique key (order_number, client_tap_id) to
+-- include the partition column and does not allow foreign keys (meal_record_items, meal_record_receipts)
+-- on partitioned tables. The archive has neither, so it is compressed and partitioned by month; the
+-- service adds one partition per archived month by splitting p_future.
+CREATE TABLE IF NOT EXISTS meal_records_archive (
+    id VARCHAR(36) NOT NULL,
+    employee_id VARCHAR(36) NOT NULL,
+    card_id VARCHAR(255) NOT NULL,
+    meal_type_id VARCHAR(36) NOT NULL,
+    meal_category_id VARCHAR(36) NOT NULL,
+    recorded_by_user_id VARCHAR(36),
+    meal_name VARCHAR(100) NOT NULL,
+    category VARCHAR(20) NOT NULL,
+    price_type VARCHAR(20) NOT NULL,
+    normal_price DECIMAL(10,2) NOT NULL,
+    supported_price DECIMAL(10,2) NOT NULL,
+    actual_price DECIMAL(10,2) NOT NULL,
+    support_amount DECIMAL(10,2) NOT NULL,
+    employee_salary DECIMAL(10,2),
+    recorded_at DATETIME(6) NOT NULL,
+    created_at DATETIME(6),
+    order_number VARCHAR(255),
+    client_tap_id VARCHAR(100),
+    kiosk_device_id VARCHAR(64),
+    PRIMARY KEY (id, recorded_at),
+    INDEX idx_meal_records_archive_recorded_at (recorded_at),
+    INDEX idx_meal_records_archive_employee (employee_id, recorded_at)
+) ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8
+PARTITION BY RANGE COLUMNS (recorded_at) (
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+CREATE TABLE IF NOT EXISTS meal_record_items_archive (
+    id VARCHAR(36) PRIMARY KEY,
+    meal_record_id VARCHAR(36) NOT NULL,
+    meal_item_id VARCHAR(36) NOT NULL,
+    quantity INT NOT NULL,
+    price_per_item DECIMAL(10,2) NOT NULL,
+    total_price DECIMAL(10,2) NOT NULL,
+    created_at DATETIME(6),
+    INDEX idx_meal_record_items_archive_record (meal_record_id)
+) ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8;
@@ -0,0 +1,6 @@
+-- Create replica_heartbeat table on the primary (it reaches the replica through replication)
+-- The application writes the current time here and reads it back from the replica to measure lag
+CREATE TABLE IF NOT EXISTS replica_heartbeat (
+    id INT PRIMARY KEY,
+    beat_at BIGINT NOT NULL
+);
@@ -0,0 +1,3 @@
+-- Add token_generation column to users table
+-- Refresh tokens carry the generation they were issued for; logout increments it to revoke them
+ALTER TABLE users ADD COLUMN token_generation BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,190 @@
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop load test for POST /api/meal-records/record, signed as a kiosk. Each client sends a
+ * tap, waits for the answer and sends the next one; latencies measured after the warm-up are
+ * reported as throughput and p50/p95/p99/max.
+ *
+ * <p>Runs as a single source file (Java 21): {@code java loadtest/TapLoadTest.java --kiosk-id=...
+ * --kiosk-secret=... --category=... --cards=cards.txt}. Every card records once per meal type and
+ * day; later taps of the same card are answered 400 by the one-meal rule, which still runs the card
+ * lookup and duplicate check. Use a fresh card list (or category) per run so runs are comparable.
+ */
+public class TapLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String baseUrl = options.getOrDefault("url", "http://localhost:8080");
+        String kioskId = required(options, "kiosk-id");
+        byte[] secret = Base64.getDecoder().decode(required(options, "kiosk-secret"));
+        String categoryId = required(options, "category");
+        List<String> cards = readCards(required(options, "cards"));
+        int clients = Integer.parseInt(options.getOrDefault("clients", "200"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        String label = options.getOrDefault("label", "run");
+
+        HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+        long start = System.nanoTime();
+        long measureFrom = start + Duration.ofSeconds(warmupSeconds).toNanos();
+        long end = measureFrom + Duration.ofSeconds(durationSeconds).toNanos();
+        AtomicInteger nextCard = new AtomicInteger();
+        Worker[] workers = new Worker[clients];
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                Worker worker = new Worker();
+                workers[i] = worker;
+                executor.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        String card = cards.get(Math.floorMod(nextCard.getAndIncrement(), cards.size()));
+                        String path = "/api/meal-records/record?cardId=" + URLEncoder.encode(card, StandardCharsets.UTF_8)
+                            + "&mealCategoryId=" + URLEncoder.encode(categoryId, StandardCharsets.UTF_8);
+                        long sent = System.nanoTime();
+                        int status;
+                        try {
+                            status = http.send(signedPost(baseUrl, path, kioskId, secret), HttpResponse.BodyHandlers.discarding())
+                                .statusCode();
+                        } catch (Exception e) {
+                            status = 0;
+                        }
+                        long received = System.nanoTime();
+                        if (sent >= measureFrom && received <= end) {
+                            worker.record(status, received - sent);
+                        }
+                    }
+                    return null;
+                });
+            }
+        }
+
+        report(label, workers, durationSeconds);
+    }
+
+    private static HttpRequest signedPost(String baseUrl, String path, String kioskId, byte[] secret) throws Exception {
+        String timestamp = String.valueOf(System.currentTimeMillis() / 1000);
+        String nonce = UUID.randomUUID().toString();
+        String bodyHash = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(new byte[0]));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+        String canonical = "POST\n" + path + "\n" + timestamp + "\n" + nonce + "\n" + bodyHash;
+        String signature = Base64.getEncoder().encodeToString(mac.doFinal(canonical.getBytes(StandardCharsets.UTF_8)));
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(Duration.ofSeconds(30))
+            .header("X-Kiosk-Id", kioskId)
+            .header("X-Kiosk-Timestamp", timestamp)
+            .header("X-Kiosk-Nonce", nonce)
+            .header("X-Kiosk-Signature", signature)
+            .POST(HttpRequest.BodyPublishers.noBody())
+            .build();
+    }
+
+    private static void report(String label, Worker[] workers, int durationSeconds) {
+        int total = 0;
+        for (Worker worker : workers) {
+            total += worker.count;
+        }
+        long[] latencies = new long[total];
+        Map<String, Integer> statuses = new HashMap<>();
+        int offset = 0;
+        for (Worker worker : workers) {
+            System.arraycopy(worker.latencies, 0, latencies, offset, worker.count);
+            offset += worker.count;
+            worker.statuses.forEach((status, count) -> statuses.merge(status, count, Integer::sum));
+        }
+        Arrays.sort(latencies);
+
+        int recorded = statuses.getOrDefault("2xx", 0);
+        System.out.printf("%s: %d requests in %ds, %.1f req/s, %.1f taps recorded/s%n",
+            label, total, durationSeconds, (double) total / durationSeconds, (double) recorded / durationSeconds);
+        System.out.printf("%s: status %s%n", label, statuses);
+        if (total > 0) {
+            System.out.printf("%s: latency ms p50 %.1f  p95 %.1f  p99 %.1f  max %.1f%n", label,
+                millis(percentile(latencies, 50)), millis(percentile(latencies, 95)),
+                millis(percentile(latencies, 99)), millis(latencies[total - 1]));
+        }
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static List<String> readCards(String file) throws Exception {
+        List<String> cards = new ArrayList<>();
+        for (String line : Files.readAllLines(Path.of(file))) {
+            if (!line.isBlank()) {
+                cards.add(line.trim());
+            }
+        }
+        if (cards.isEmpty()) {
+            throw new IllegalArgumentException("No card IDs in " + file);
+        }
+        return cards;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    private static String required(Map<String, String> options, String name) {
+        String value = options.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing --" + name + "=...");
+        }
+        return value;
+    }
+
+    /**
+     * Latencies of one client; only its own thread writes them.
+     */
+    private static class Worker {
+        long[] latencies = new long[1024];
+        int count;
+        final Map<String, Integer> statuses = new HashMap<>();
+
+        void record(int status, long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            statuses.merge(status == 0 ? "error" : status / 100 + "xx", 1, Integer::sum);
+        }
+    }
+}
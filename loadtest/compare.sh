@@ -0,0 +1,65 @@
+#!/bin/bash
+# Compares tap throughput and latency of the platform-thread and virtual-thread request models.
+# Both runs use the same Java 21 jar and database; only the Spring profile differs.
+#
+# Usage: KIOSK_ID=KIOSK-01 KIOSK_SECRET=... CATEGORY_ID=... CARDS_FILE=cards.txt loadtest/compare.sh
+# CARDS_FILE holds one active card ID per line. The first half is tapped in the platform run and
+# the second half in the virtual-thread run, so both record the same number of new meals.
+# The output is kept in OUTPUT (default loadtest/results-<timestamp>.txt) for loadtest/RESULTS.md.
+
+set -euo pipefail
+
+: "${KIOSK_ID:?KIOSK_ID is required}"
+: "${KIOSK_SECRET:?KIOSK_SECRET is required}"
+: "${CATEGORY_ID:?CATEGORY_ID is required}"
+: "${CARDS_FILE:?CARDS_FILE is required}"
+CLIENTS=${CLIENTS:-200}
+WARMUP=${WARMUP:-10}
+DURATION=${DURATION:-60}
+URL=${URL:-http://localhost:8080}
+
+cd "$(dirname "$0")/.."
+OUTPUT=${OUTPUT:-loadtest/results-$(date +%Y%m%d-%H%M%S).txt}
+./gradlew bootJar -PjavaVersion=21 -x test
+JAR=$(ls build/libs/*-SNAPSHOT.jar | grep -v plain | head -1)
+
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+CARD_COUNT=$(grep -c . "$CARDS_FILE")
+grep . "$CARDS_FILE" | head -n $((CARD_COUNT / 2)) > "$WORK/platform-cards.txt"
+grep . "$CARDS_FILE" | tail -n +$((CARD_COUNT / 2 + 1)) > "$WORK/virtual-threads-cards.txt"
+{
+    echo "date: $(date -Is)"
+    echo "clients: $CLIENTS, warmup: ${WARMUP}s, duration: ${DURATION}s, cards per run: $((CARD_COUNT / 2))"
+    echo "java: $(java -version 2>&1 | head -1)"
+    echo "host: $(uname -srm), $(nproc) CPUs"
+} > "$WORK/results.txt"
+
+for MODE in platform virtual-threads; do
+    PROFILE_ARG=""
+    if [ "$MODE" = "virtual-threads" ]; then
+        PROFILE_ARG="--spring.profiles.active=virtual-threads"
+    fi
+    echo "Starting application ($MODE)..."
+    java -jar "$JAR" $PROFILE_ARG --logging.level.et.moe.ethernet.cateteria=INFO \
+        --logging.level.org.springframework.security=INFO --spring.jpa.show-sql=false > "$WORK/$MODE.log" 2>&1 &
+    APP_PID=$!
+    until curl -sf "$URL/api/meal-types/enabled" > /dev/null; do
+        if ! kill -0 $APP_PID 2> /dev/null; then
+            echo "Application failed to start, see log:"; tail -50 "$WORK/$MODE.log"; exit 1
+        fi
+        sleep 1
+    done
+
+    java loadtest/TapLoadTest.java --url="$URL" --kiosk-id="$KIOSK_ID" --kiosk-secret="$KIOSK_SECRET" \
+        --category="$CATEGORY_ID" --cards="$WORK/$MODE-cards.txt" \
+        --clients="$CLIENTS" --warmup="$WARMUP" --duration="$DURATION" --label="$MODE" | tee -a "$WORK/results.txt"
+
+    kill $APP_PID
+    wait $APP_PID || true
+done
+
+echo
+cat "$WORK/results.txt"
+cp "$WORK/results.txt" "$OUTPUT"
+echo "Results saved to $OUTPUT"
@@ -0,0 +1,76 @@
+package et.moe.ethernet.cateteria.config;
+
+import et.moe.ethernet.cateteria.service.AdmissionControlService;
+import et.moe.ethernet.cateteria.service.AdmissionControlService.Lane;
+import et.moe.ethernet.cateteria.service.AdmissionControlService.Outcome;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Admits each authorized request into its lane (see {@link AdmissionControlService}) and sets the
+ * route {@link RoutingDataSource} uses to pick its connection pool. Runs after authorization, so
+ * requests that are rejected anyway never take a slot. Requests that cannot be admitted get 503
+ * (lane full) or 429 (kiosk over its own limit) with {@code Retry-After}.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private final AdmissionControlService admissionControlService;
+    private final int retryAfterSeconds;
+
+    public AdmissionControlFilter(AdmissionControlService admissionControlService, int retryAfterSeconds) {
+        this.admissionControlService = admissionControlService;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Lane lane = admissionControlService.classify(request.getRequestURI().substring(request.getContextPath().length()));
+        if (lane == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String kioskId = KioskSignatureFilter.currentDeviceId();
+        Outcome outcome;
+        try {
+            outcome = admissionControlService.admit(lane, kioskId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reject(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server is shutting down");
+            return;
+        }
+        if (outcome == Outcome.KIOSK_LIMIT) {
+            reject(response, 429, "Too many requests from this kiosk");
+            return;
+        }
+        if (outcome != Outcome.ADMITTED) {
+            reject(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server busy, retry shortly");
+            return;
+        }
+
+        // GET requests do not write, so their read-only transactions may use the replica
+        boolean replicaReads = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+        RoutingDataSource.setRoute(lane, replicaReads);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RoutingDataSource.clearRoute();
+            admissionControlService.release(lane, kioskId);
+        }
+    }
+
+    private void reject(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"" + message + "\"}");
+    }
+}
@@ -0,0 +1,116 @@
+package et.moe.ethernet.cateteria.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import et.moe.ethernet.cateteria.service.ReplicaHeartbeatService;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Role;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+
+/**
+ * Connection pools of the application:
+ * <ul>
+ *   <li>general: the primary database, configured with {@code spring.datasource.hikari.*}</li>
+ *   <li>tap: the primary too, used only by kiosk taps so reports and admin screens can never take
+ *       the connections a tap needs</li>
+ *   <li>replica: an optional read replica ({@code cafeteria.datasource.replica.url}) for
+ *       report and list reads marked {@link ReplicaRead}</li>
+ * </ul>
+ * {@link RoutingDataSource} picks the pool per request.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    // Bean names, also the keys of the Map<String, HikariDataSource> services inject
+    public static final String GENERAL_POOL = "generalDataSource";
+    public static final String REPLICA_POOL = "replicaDataSource";
+
+    @Value("${cafeteria.admission.tap.pool-size:10}")
+    private int tapPoolSize;
+
+    @Value("${cafeteria.admission.tap.connection-timeout-ms:3000}")
+    private long tapConnectionTimeoutMs;
+
+    @Value("${cafeteria.datasource.replica.url:}")
+    private String replicaUrl;
+
+    // Empty: same credentials as the primary
+    @Value("${cafeteria.datasource.replica.username:}")
+    private String replicaUsername;
+
+    @Value("${cafeteria.datasource.replica.password:}")
+    private String replicaPassword;
+
+    @Value("${cafeteria.datasource.replica.pool-size:10}")
+    private int replicaPoolSize;
+
+    @Bean(GENERAL_POOL)
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource generalDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("general");
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource tapDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("tap");
+        dataSource.setMaximumPoolSize(tapPoolSize);
+        dataSource.setMinimumIdle(tapPoolSize);
+        dataSource.setConnectionTimeout(tapConnectionTimeoutMs);
+        return dataSource;
+    }
+
+    @Bean(REPLICA_POOL)
+    @ConditionalOnProperty("cafeteria.datasource.replica.url")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("replica");
+        dataSource.setJdbcUrl(replicaUrl);
+        if (!replicaUsername.isBlank()) {
+            dataSource.setUsername(replicaUsername);
+            dataSource.setPassword(replicaPassword);
+        }
+        dataSource.setMaximumPoolSize(replicaPoolSize);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource generalDataSource, HikariDataSource tapDataSource,
+                                 @Qualifier(REPLICA_POOL) ObjectProvider<HikariDataSource> replicaDataSource,
+                                 ReplicaHeartbeatService replicaHeartbeatService) {
+        RoutingDataSource routing = new RoutingDataSource(generalDataSource, tapDataSource,
+            replicaDataSource.getIfAvailable(), replicaHeartbeatService::isReplicaUsable);
+        // Delays choosing the pool until the first statement, when the transaction's read-only flag is set
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    // Infrastructure role, so the transaction auto-proxy creator applies it as well
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor replicaReadAdvisor(ObjectProvider<PlatformTransactionManager> transactionManager,
+                                             ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        ComposablePointcut pointcut = new ComposablePointcut(AnnotationMatchingPointcut.forClassAnnotation(ReplicaRead.class))
+            .union(AnnotationMatchingPointcut.forMethodAnnotation(ReplicaRead.class));
+        return new DefaultPointcutAdvisor(pointcut, new ReplicaReadInterceptor(transactionManager, entityManagerFactory));
+    }
+}
@@ -0,0 +1,168 @@
+package et.moe.ethernet.cateteria.config;
+
+import et.moe.ethernet.cateteria.service.KioskDeviceService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Authenticates requests signed by a registered kiosk (see {@link KioskDeviceService}) as the
+ * kiosk's operator user with role {@code KIOSK}. Requests without {@code X-Kiosk-Signature} pass
+ * through untouched; requests with a bad signature are rejected with 401.
+ */
+public class KioskSignatureFilter extends OncePerRequestFilter {
+
+    public static final String DEVICE_HEADER = "X-Kiosk-Id";
+    public static final String TIMESTAMP_HEADER = "X-Kiosk-Timestamp";
+    public static final String NONCE_HEADER = "X-Kiosk-Nonce";
+    public static final String SIGNATURE_HEADER = "X-Kiosk-Signature";
+
+    // Taps and lookups are small; the limit is sized for offline tap uploads
+    private static final int MAX_BODY_BYTES = 4 * 1024 * 1024;
+
+    private final KioskDeviceService kioskDeviceService;
+
+    public KioskSignatureFilter(KioskDeviceService kioskDeviceService) {
+        this.kioskDeviceService = kioskDeviceService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String signature = request.getHeader(SIGNATURE_HEADER);
+        if (signature == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String deviceId = request.getHeader(DEVICE_HEADER);
+        String timestamp = request.getHeader(TIMESTAMP_HEADER);
+        String nonce = request.getHeader(NONCE_HEADER);
+        if (deviceId == null || timestamp == null || nonce == null) {
+            reject(response, HttpServletResponse.SC_UNAUTHORIZED, "Missing kiosk signature headers");
+            return;
+        }
+
+        byte[] body = request.getInputStream().readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            reject(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Kiosk request body too large");
+            return;
+        }
+
+        String pathAndQuery = request.getQueryString() == null
+            ? request.getRequestURI()
+            : request.getRequestURI() + "?" + request.getQueryString();
+        var operator = kioskDeviceService.authenticate(
+            deviceId, timestamp, nonce, signature, request.getMethod(), pathAndQuery, body);
+        if (operator.isEmpty()) {
+            reject(response, HttpServletResponse.SC_UNAUTHORIZED, "Invalid kiosk signature");
+            return;
+        }
+
+        var authentication = new UsernamePasswordAuthenticationToken(
+            operator.get(),
+            null,
+            List.of(new SimpleGrantedAuthority("ROLE_KIOSK"))
+        );
+        authentication.setDetails(deviceId);
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+
+        filterChain.doFilter(new CachedBodyRequest(request, body), response);
+    }
+
+    /**
+     * The device that signed the current request, or null for staff logins and unauthenticated requests.
+     */
+    public static String currentDeviceId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getDetails() instanceof String deviceId)) {
+            return null;
+        }
+        boolean kiosk = authentication.getAuthorities().stream()
+            .anyMatch(authority -> "ROLE_KIOSK".equals(authority.getAuthority()));
+        return kiosk ? deviceId : null;
+    }
+
+    private static void reject(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"" + message + "\"}");
+    }
+
+    /**
+     * Replays the body that was read to check the signature. The whole body is in memory, so an
+     * async reader is told right away that all data is available.
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding)));
+        }
+    }
+}
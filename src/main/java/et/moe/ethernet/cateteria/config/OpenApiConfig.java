@@ -32,7 +32,9 @@ public class OpenApiConfig {
                     - **User Authentication**: Role-based access control (Admin, Manager, Operator)
                     
                     ## Authentication
-                    The API uses Basic Authentication. Default users are created on startup:
+                    The API uses bearer tokens. `POST /auth/login` returns a short-lived access token and a refresh token;
+                    send the access token as `Authorization: Bearer <token>` and exchange the refresh token at
+                    `POST /auth/refresh` before it expires. Default users are created on startup:
                     - **Admin**: `admin` / `admin123`
                     - **Manager**: `manager` / `manager123`
                     - **Operator**: `operator` / `operator123`
@@ -58,11 +60,11 @@ public class OpenApiConfig {
                 new Server()
                     .url("https://api.moe.gov.et/cafeteria")
                     .description("Production Server")))
-            .addSecurityItem(new SecurityRequirement().addList("basicAuth"))
+            .addSecurityItem(new SecurityRequirement().addList("bearerAuth"))
             .components(new Components()
-                .addSecuritySchemes("basicAuth", new SecurityScheme()
+                .addSecuritySchemes("bearerAuth", new SecurityScheme()
                     .type(SecurityScheme.Type.HTTP)
-                    .scheme("basic")
-                    .description("Basic Authentication")));
+                    .scheme("bearer")
+                    .description("Access token from /auth/login")));
     }
 } 
\ No newline at end of file
@@ -0,0 +1,22 @@
+package et.moe.ethernet.cateteria.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks report and list reads that may run on the read replica. Their read-only transactions go
+ * to the replica in GET requests and report jobs (see {@link RoutingDataSource}); everything else,
+ * including other read-only transactions, stays on the primary. While a marked method runs, the
+ * session reads the second-level cache but does not add to it, so lagging replica rows are never
+ * cached for other requests.
+ *
+ * <p>On a class, applies to all its public methods.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReplicaRead {
+}
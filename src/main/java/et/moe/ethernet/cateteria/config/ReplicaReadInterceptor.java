@@ -0,0 +1,80 @@
+package et.moe.ethernet.cateteria.config;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Runs {@link ReplicaRead} methods in a read-only transaction that may use the replica, with the
+ * second-level cache read but not filled. Joins the method's own read-only transaction, if it
+ * starts one first.
+ */
+public class ReplicaReadInterceptor implements MethodInterceptor {
+
+    private final ObjectProvider<PlatformTransactionManager> transactionManager;
+    private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+    private volatile TransactionTemplate readOnlyTransaction;
+
+    public ReplicaReadInterceptor(ObjectProvider<PlatformTransactionManager> transactionManager,
+                                  ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        this.transactionManager = transactionManager;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        boolean wasReplicaRead = RoutingDataSource.enterReplicaRead();
+        try {
+            if (wasReplicaRead) {
+                return invocation.proceed();
+            }
+            try {
+                return readOnlyTransaction().execute(status -> proceedWithoutCachePuts(invocation));
+            } catch (UndeclaredThrowableException e) {
+                throw e.getUndeclaredThrowable();
+            }
+        } finally {
+            RoutingDataSource.exitReplicaRead(wasReplicaRead);
+        }
+    }
+
+    private Object proceedWithoutCachePuts(MethodInvocation invocation) {
+        EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory.getObject());
+        Session session = entityManager != null ? entityManager.unwrap(Session.class) : null;
+        CacheMode previous = session != null ? session.getCacheMode() : null;
+        if (session != null) {
+            session.setCacheMode(CacheMode.GET);
+        }
+        try {
+            return invocation.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        } finally {
+            if (session != null) {
+                session.setCacheMode(previous);
+            }
+        }
+    }
+
+    private TransactionTemplate readOnlyTransaction() {
+        TransactionTemplate template = readOnlyTransaction;
+        if (template == null) {
+            template = new TransactionTemplate(transactionManager.getObject());
+            template.setReadOnly(true);
+            readOnlyTransaction = template;
+        }
+        return template;
+    }
+}
@@ -0,0 +1,98 @@
+package et.moe.ethernet.cateteria.config;
+
+import et.moe.ethernet.cateteria.service.AdmissionControlService.Lane;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Picks the connection pool for the current request when a connection is first used:
+ * <ul>
+ *   <li>tap lane: the tap pool</li>
+ *   <li>read-only transaction inside a {@link ReplicaRead} method, in a GET request of another
+ *       lane or a report job: the replica, while it is within the allowed lag</li>
+ *   <li>everything else (writes, other reads, scheduled jobs, print workers, startup): the general
+ *       pool</li>
+ * </ul>
+ * The route is set by {@link AdmissionControlFilter}, and by report job workers. Sits behind a
+ * {@code LazyConnectionDataSourceProxy}, so the read-only flag of the transaction is known by the
+ * time the pool is chosen. Only GET requests read from the replica, so a request that writes never
+ * bases its write on a lagging read; and only marked reads do, so lookups that fill the
+ * second-level cache (menu, support configuration) always read the primary.
+ */
+public class RoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String REPLICA = "replica";
+
+    private static final ThreadLocal<Route> CURRENT_ROUTE = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+    private final boolean hasReplica;
+    private final BooleanSupplier replicaUsable;
+
+    private record Route(Lane lane, boolean replicaReads) {
+    }
+
+    public RoutingDataSource(DataSource general, DataSource tap, DataSource replica, BooleanSupplier replicaUsable) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Lane.TAP, tap);
+        if (replica != null) {
+            targets.put(REPLICA, replica);
+        }
+        this.hasReplica = replica != null;
+        this.replicaUsable = replicaUsable;
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(general);
+        afterPropertiesSet();
+    }
+
+    public static void setRoute(Lane lane, boolean replicaReads) {
+        CURRENT_ROUTE.set(new Route(lane, replicaReads));
+    }
+
+    public static void clearRoute() {
+        CURRENT_ROUTE.remove();
+    }
+
+    /**
+     * Marks the start of a {@link ReplicaRead} method on this thread.
+     *
+     * @return whether a replica read was already in progress, to be passed to {@link #exitReplicaRead}
+     */
+    public static boolean enterReplicaRead() {
+        boolean entered = isReplicaRead();
+        REPLICA_READ.set(Boolean.TRUE);
+        return entered;
+    }
+
+    public static void exitReplicaRead(boolean wasReplicaRead) {
+        if (!wasReplicaRead) {
+            REPLICA_READ.remove();
+        }
+    }
+
+    public static boolean isReplicaRead() {
+        return REPLICA_READ.get() != null;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Route route = CURRENT_ROUTE.get();
+        if (route == null) {
+            return null;
+        }
+        if (route.lane() == Lane.TAP) {
+            return Lane.TAP;
+        }
+        if (hasReplica && route.replicaReads() && isReplicaRead()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && replicaUsable.getAsBoolean()) {
+            return REPLICA;
+        }
+        return null;
+    }
+}
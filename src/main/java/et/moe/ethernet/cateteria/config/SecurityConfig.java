@@ -1,25 +1,64 @@
 package et.moe.ethernet.cateteria.config;
 
+import et.moe.ethernet.cateteria.service.AdmissionControlService;
+import et.moe.ethernet.cateteria.service.KioskDeviceService;
+import et.moe.ethernet.cateteria.service.TokenService;
+import jakarta.servlet.DispatcherType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfigurationSource;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
     
+    // Endpoints used by kiosks at the counter (with context path)
+    private static final String[] KIOSK_ENDPOINTS = {
+        "/employees/by-card/{cardId}",
+        "/employees/by-code/{code}",
+        "/employees/roster", "/employees/roster/changes", // Offline card lookup
+        "/meal-records/record",
+        "/meal-records/record-with-items",
+        "/meal-records/offline-batch",
+        "/meal-records/check-duplicate",
+        "/meal-records/{id}/receipt",
+        "/api/print/{endpoint}",
+        "/api/print/jobs/{jobId}", // Kiosks poll the status of their print jobs
+        "/api/print/receipt/{mealRecordId}"
+    };
+    
     private final CorsConfigurationSource corsConfigurationSource;
+    private final TokenService tokenService;
+    private final KioskDeviceService kioskDeviceService;
+    private final AdmissionControlService admissionControlService;
+    
+    // Set to false only while kiosks are being switched to signed requests
+    @Value("${cafeteria.kiosk.require-signature:true}")
+    private boolean requireKioskSignature;
+    
+    @Value("${cafeteria.admission.retry-after-seconds:2}")
+    private int admissionRetryAfterSeconds;
     
-    public SecurityConfig(CorsConfigurationSource corsConfigurationSource) {
+    public SecurityConfig(CorsConfigurationSource corsConfigurationSource, TokenService tokenService,
+                          KioskDeviceService kioskDeviceService, AdmissionControlService admissionControlService) {
         this.corsConfigurationSource = corsConfigurationSource;
+        this.tokenService = tokenService;
+        this.kioskDeviceService = kioskDeviceService;
+        this.admissionControlService = admissionControlService;
     }
     
     @Bean
@@ -27,36 +66,52 @@ public class SecurityConfig {
         http
             .csrf(AbstractHttpConfigurer::disable)
             .cors(cors -> cors.configurationSource(corsConfigurationSource))
+            // Every request carries its own bearer token; nothing is kept in the HTTP session
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(authz -> authz
-                // Allow public access to uploaded files (must be first)
+                // Async completion of live feeds and error pages dispatch again; the original request was already checked
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+                // Allow public access to uploaded files (must be the first request matcher)
                 .requestMatchers("/api/uploads/**").permitAll()
                 // Swagger UI endpoints (without context path)
                 .requestMatchers("/swagger-ui/**", "/swagger-ui.html", "/api-docs/**", "/v3/api-docs/**").permitAll()
                 // Auth endpoints (with context path)
-                .requestMatchers("/auth/login", "/auth/logout", "/auth/me").permitAll()
+                .requestMatchers("/auth/login", "/auth/refresh", "/auth/logout", "/auth/me").permitAll()
                 // Public API endpoints (with context path) - allow both authenticated and anonymous
                 .requestMatchers("/meal-types/active").permitAll()
+                .requestMatchers("/menu", "/menu/version", "/menu/stock").permitAll() // Full menu snapshot for kiosks
                 .requestMatchers("/meal-categories/active").permitAll()
                 .requestMatchers("/meal-categories/by-type/{mealTypeId}").permitAll()
                 .requestMatchers("/meal-categories/{id}").permitAll() // Allow access to individual meal categories
                 .requestMatchers("/meal-items/active").permitAll() // Allow access to active meal items
                 .requestMatchers("/meal-items/by-category/{mealCategoryId}").permitAll() // Allow access to meal items by category
-                .requestMatchers("/employees/by-card/{cardId}").permitAll()
-                .requestMatchers("/employees/by-code/{code}").permitAll()
-                .requestMatchers("/meal-records/record").permitAll()
-                .requestMatchers("/meal-records/check-duplicate").permitAll()
-                .requestMatchers("/meal-records/{id}/receipt").permitAll()
                 .requestMatchers("/support-config").permitAll()
                 .requestMatchers("/support-reports/{id}").permitAll()
-                .requestMatchers("/api/print/{endpoint}").permitAll()
-                // All other endpoints require authentication
-                .anyRequest().authenticated()
+                // Kiosk endpoints: signed kiosk requests or logged-in staff
+                .requestMatchers(KIOSK_ENDPOINTS).hasAnyRole(kioskEndpointRoles())
+                // All other endpoints require a staff login; kiosk credentials do not reach them
+                .anyRequest().hasAnyRole("ADMIN", "MANAGER", "OPERATOR")
             )
-            .httpBasic();
+            // Access tokens are verified with HMAC only; BCrypt runs once at login
+            .addFilterBefore(new TokenAuthenticationFilter(tokenService), UsernamePasswordAuthenticationFilter.class)
+            // Kiosk signatures are HMAC too; the operator user is cached per device
+            .addFilterBefore(new KioskSignatureFilter(kioskDeviceService), UsernamePasswordAuthenticationFilter.class)
+            // Lane limits apply only to requests that passed authorization
+            .addFilterAfter(new AdmissionControlFilter(admissionControlService, admissionRetryAfterSeconds), AuthorizationFilter.class)
+            .exceptionHandling(exceptions -> exceptions
+                .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)));
         
         return http.build();
     }
     
+    private String[] kioskEndpointRoles() {
+        if (requireKioskSignature) {
+            return new String[] {"KIOSK", "ADMIN", "MANAGER", "OPERATOR"};
+        }
+        // Unsigned requests are authenticated as anonymous
+        return new String[] {"KIOSK", "ADMIN", "MANAGER", "OPERATOR", "ANONYMOUS"};
+    }
+    
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
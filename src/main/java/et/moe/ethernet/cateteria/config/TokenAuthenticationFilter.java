@@ -0,0 +1,49 @@
+package et.moe.ethernet.cateteria.config;
+
+import et.moe.ethernet.cateteria.service.TokenService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Authenticates requests carrying {@code Authorization: Bearer <access token>} from the token
+ * claims alone. Requests without a valid token continue unauthenticated and are rejected by the
+ * authorization rules if the endpoint is protected.
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final TokenService tokenService;
+
+    public TokenAuthenticationFilter(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            tokenService.verify(header.substring(BEARER_PREFIX.length()).trim(), TokenService.TYPE_ACCESS)
+                .ifPresent(claims -> {
+                    var authentication = new UsernamePasswordAuthenticationToken(
+                        claims.get("sub"),
+                        null,
+                        List.of(new SimpleGrantedAuthority("ROLE_" + claims.get("role")))
+                    );
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                });
+        }
+        filterChain.doFilter(request, response);
+    }
+}
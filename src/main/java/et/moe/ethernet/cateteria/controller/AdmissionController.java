@@ -0,0 +1,35 @@
+package et.moe.ethernet.cateteria.controller;
+
+import et.moe.ethernet.cateteria.service.AdmissionControlService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/admission")
+@RequiredArgsConstructor
+@Tag(name = "Admission Control", description = "Request lanes, queue depth and rejections")
+public class AdmissionController {
+
+    private final AdmissionControlService admissionControlService;
+
+    @GetMapping("/stats")
+    @Operation(
+        summary = "Get admission statistics",
+        description = "Per lane (TAP, REPORT, DEFAULT): limits, running and queued requests, admitted and rejected counts and average queue wait; " +
+            "and active, idle and waiting counts of the tap and general connection pools. Not itself subject to admission control. Requires authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved admission statistics"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Authentication required")
+    })
+    public ResponseEntity<Map<String, Object>> getStatistics() {
+        return ResponseEntity.ok(admissionControlService.getStatistics());
+    }
+}
@@ -2,11 +2,15 @@ package et.moe.ethernet.cateteria.controller;
 
 import et.moe.ethernet.cateteria.dto.LoginRequest;
 import et.moe.ethernet.cateteria.dto.LoginResponse;
+import et.moe.ethernet.cateteria.dto.RefreshTokenRequest;
+import et.moe.ethernet.cateteria.entity.User;
+import et.moe.ethernet.cateteria.service.TokenService;
 import et.moe.ethernet.cateteria.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -23,9 +27,10 @@ public class AuthController {
 
     private final AuthenticationManager authenticationManager;
     private final UserService userService;
+    private final TokenService tokenService;
 
     @PostMapping("/login")
-    @Operation(summary = "User login", description = "Authenticate user with username and password")
+    @Operation(summary = "User login", description = "Authenticate user with username and password; returns a short-lived access token and a refresh token")
     public ResponseEntity<LoginResponse> login(@Valid @RequestBody LoginRequest loginRequest) {
         try {
             // Authenticate user
@@ -39,7 +44,6 @@ public class AuthController {
             SecurityContextHolder.getContext().setAuthentication(authentication);
 
             // Get user details
-            var userDetails = userService.loadUserByUsername(loginRequest.getUsername());
             var userOptional = userService.findByUsername(loginRequest.getUsername());
             
             if (userOptional.isEmpty()) {
@@ -49,12 +53,7 @@ public class AuthController {
                 return ResponseEntity.badRequest().body(response);
             }
 
-            LoginResponse response = new LoginResponse();
-            response.setUser(userOptional.get());
-            response.setMessage("Login successful");
-            response.setSuccess(true);
-
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(tokenResponse(userOptional.get(), "Login successful"));
         } catch (Exception e) {
             LoginResponse response = new LoginResponse();
             response.setMessage("Invalid username or password");
@@ -63,9 +62,41 @@ public class AuthController {
         }
     }
 
+    @PostMapping("/refresh")
+    @Operation(summary = "Refresh tokens", description = "Exchange a refresh token for a new access token and refresh token without sending the password again")
+    public ResponseEntity<LoginResponse> refresh(@Valid @RequestBody RefreshTokenRequest refreshRequest) {
+        var claims = tokenService.verify(refreshRequest.getRefreshToken(), TokenService.TYPE_REFRESH);
+        var userOptional = claims.flatMap(c -> userService.findByUsername((String) c.get("sub")));
+        
+        // Deactivated users, password changes and logouts invalidate outstanding refresh tokens
+        if (userOptional.isEmpty() || !userOptional.get().isEnabled()
+            || !tokenService.isCurrent(claims.get(), userOptional.get())) {
+            LoginResponse response = new LoginResponse();
+            response.setMessage("Invalid or expired refresh token");
+            response.setSuccess(false);
+            return ResponseEntity.status(401).body(response);
+        }
+        
+        return ResponseEntity.ok(tokenResponse(userOptional.get(), "Token refreshed"));
+    }
+
     @PostMapping("/logout")
-    @Operation(summary = "User logout", description = "Logout current user")
-    public ResponseEntity<LoginResponse> logout() {
+    @Operation(summary = "User logout", description = "Logout current user and revoke all of their refresh tokens. " +
+        "Send the access token, or the refresh token in the body when the access token has expired.")
+    public ResponseEntity<LoginResponse> logout(@RequestBody(required = false) RefreshTokenRequest refreshRequest) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String username = null;
+        if (authentication != null && authentication.isAuthenticated()
+            && !(authentication instanceof AnonymousAuthenticationToken)) {
+            username = authentication.getName();
+        } else if (refreshRequest != null) {
+            username = tokenService.verify(refreshRequest.getRefreshToken(), TokenService.TYPE_REFRESH)
+                .map(claims -> (String) claims.get("sub"))
+                .orElse(null);
+        }
+        if (username != null) {
+            userService.revokeRefreshTokens(username);
+        }
         SecurityContextHolder.clearContext();
         
         LoginResponse response = new LoginResponse();
@@ -99,4 +130,16 @@ public class AuthController {
         
         return ResponseEntity.status(401).body(response);
     }
+
+    private LoginResponse tokenResponse(User user, String message) {
+        LoginResponse response = new LoginResponse();
+        response.setUser(user);
+        response.setMessage(message);
+        response.setSuccess(true);
+        response.setAccessToken(tokenService.issueAccessToken(user));
+        response.setRefreshToken(tokenService.issueRefreshToken(user));
+        response.setTokenType("Bearer");
+        response.setExpiresIn(tokenService.getAccessTokenTtlSeconds());
+        return response;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,55 @@
+package et.moe.ethernet.cateteria.controller;
+
+import et.moe.ethernet.cateteria.service.CatalogCacheService;
+import et.moe.ethernet.cateteria.service.ReportCoalescingService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/cache")
+@RequiredArgsConstructor
+@Tag(name = "Cache", description = "Catalog cache statistics and invalidation")
+public class CacheController {
+
+    private final CatalogCacheService catalogCacheService;
+    private final ReportCoalescingService reportCoalescingService;
+
+    @GetMapping("/stats")
+    @Operation(
+        summary = "Get cache statistics",
+        description = "Hit/miss counts and sizes for the catalog second-level cache regions, the query cache and the employee card cache, " +
+            "and how many support report calls joined an in-flight computation (reportCoalescing). Requires authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved cache statistics"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Authentication required")
+    })
+    public ResponseEntity<Map<String, Object>> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>(catalogCacheService.getStatistics());
+        statistics.put("reportCoalescing", reportCoalescingService.getStatistics());
+        return ResponseEntity.ok(statistics);
+    }
+
+    @DeleteMapping("/catalog")
+    @Operation(
+        summary = "Evict the catalog cache",
+        description = "Drops cached meal types, categories, items and support configs and rebuilds the menu snapshot. " +
+            "Only needed after the database was changed outside the application. Requires authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Catalog cache evicted"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Authentication required")
+    })
+    public ResponseEntity<Object> evictCatalog() {
+        catalogCacheService.evictCatalog();
+        return ResponseEntity.ok(Map.of("message", "Catalog cache evicted"));
+    }
+}
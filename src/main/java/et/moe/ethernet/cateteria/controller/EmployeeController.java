@@ -1,9 +1,14 @@
 package et.moe.ethernet.cateteria.controller;
 
+import et.moe.ethernet.cateteria.dto.BulkCardAssignmentRequest;
+import et.moe.ethernet.cateteria.dto.BulkCardAssignmentResult;
+import et.moe.ethernet.cateteria.dto.BulkStatusRequest;
 import et.moe.ethernet.cateteria.dto.EmployeeDto;
+import et.moe.ethernet.cateteria.dto.EmployeeImportResult;
 import et.moe.ethernet.cateteria.dto.EmployeeUsageStatsDto;
 import et.moe.ethernet.cateteria.dto.MealRecordDto;
 import et.moe.ethernet.cateteria.entity.Employee;
+import et.moe.ethernet.cateteria.service.EmployeeImportService;
 import et.moe.ethernet.cateteria.service.EmployeeService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -16,8 +21,12 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/employees")
@@ -26,6 +35,7 @@ import java.util.List;
 public class EmployeeController {
     
     private final EmployeeService employeeService;
+    private final EmployeeImportService employeeImportService;
     
     @GetMapping
     @Operation(
@@ -171,7 +181,63 @@ public class EmployeeController {
         EmployeeDto createdEmployee = employeeService.createEmployee(employee);
         return ResponseEntity.ok(createdEmployee);
     }
-    
+
+    @PostMapping(value = "/import", consumes = {"multipart/form-data"})
+    @Operation(
+        summary = "Bulk import employees from a file",
+        description = "Upsert employees by employee ID from an uploaded CSV (header row required) or JSON array file. " +
+            "Rows are validated in memory and written in batches; invalid rows are reported without stopping the import. Requires authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Import finished; see the per-row error report"),
+        @ApiResponse(responseCode = "400", description = "Bad request - Unreadable file"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Authentication required")
+    })
+    public ResponseEntity<Object> importEmployeesFile(
+        @Parameter(description = "CSV or JSON file with columns employeeId, cardId, shortCode, name, department, salary, photoUrl, isActive")
+        @RequestPart("file") MultipartFile file
+    ) {
+        String filename = file.getOriginalFilename() != null ? file.getOriginalFilename().toLowerCase() : "";
+        EmployeeImportService.ImportFormat format = filename.endsWith(".json") || "application/json".equals(file.getContentType())
+            ? EmployeeImportService.ImportFormat.JSON
+            : EmployeeImportService.ImportFormat.CSV;
+        try (InputStream input = file.getInputStream()) {
+            EmployeeImportResult result = employeeImportService.importEmployees(input, format);
+            return ResponseEntity.ok(result);
+        } catch (IOException | RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "error", "Failed to import employees: " + e.getMessage()
+            ));
+        }
+    }
+
+    @PostMapping(value = "/import", consumes = {"application/json", "text/csv"})
+    @Operation(
+        summary = "Bulk import employees from the request body",
+        description = "Streaming variant of the file import: send a JSON array of employees, or CSV with Content-Type text/csv. Requires authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Import finished; see the per-row error report"),
+        @ApiResponse(responseCode = "400", description = "Bad request - Malformed body"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Authentication required")
+    })
+    public ResponseEntity<Object> importEmployeesStream(
+        @RequestHeader(value = "Content-Type", defaultValue = "application/json") String contentType,
+        InputStream body
+    ) {
+        EmployeeImportService.ImportFormat format = contentType.toLowerCase().startsWith("text/csv")
+            ? EmployeeImportService.ImportFormat.CSV
+            : EmployeeImportService.ImportFormat.JSON;
+        try {
+            EmployeeImportResult result = employeeImportService.importEmployees(body, format);
+            return ResponseEntity.ok(result);
+        } catch (IOException | RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "error", "Failed to import employees: " + e.getMessage()
+            ));
+        }
+    }
+
     @PutMapping("/{id}")
     @Operation(
         summary = "Update an employee",
@@ -211,10 +277,29 @@ public class EmployeeController {
         return success ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
     }
     
+    @PatchMapping("/bulk-status")
+    @Operation(
+        summary = "Activate or deactivate employees in bulk",
+        description = "Set the active status of many employees with a single update statement and return the number of rows changed. Deactivated employees can no longer tap cards. Requires authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Status updated; response contains the affected count"),
+        @ApiResponse(responseCode = "400", description = "Bad request - ids and isActive are required"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Authentication required")
+    })
+    public ResponseEntity<Object> bulkUpdateStatus(@RequestBody BulkStatusRequest request) {
+        if (request.getIds() == null || request.getIds().isEmpty() || request.getIsActive() == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Missing required parameters: ids and isActive"));
+        }
+        int affected = employeeService.setEmployeesActive(request.getIds(), request.getIsActive());
+        return ResponseEntity.ok(Map.of("affected", affected));
+    }
+    
     @DeleteMapping("/{id}")
     @Operation(
         summary = "Delete an employee",
-        description = "Delete an employee by ID. Requires authentication."
+        description = "Soft delete an employee by ID: the employee is deactivated and their card and short code are released, " +
+            "while meal history is kept for payroll. Use the purge endpoint to remove the data permanently. Requires authentication."
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Successfully deleted employee"),
@@ -229,6 +314,31 @@ public class EmployeeController {
         return success ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
     }
     
+    @DeleteMapping("/{id}/purge")
+    @Operation(
+        summary = "Permanently purge a deleted employee",
+        description = "Permanently remove a soft-deleted employee together with their meal records. Rows are removed in bounded chunks " +
+            "without loading them. This cannot be undone. Requires authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Employee and meal history purged"),
+        @ApiResponse(responseCode = "400", description = "Bad request - Employee has not been deleted"),
+        @ApiResponse(responseCode = "404", description = "Employee not found"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Authentication required")
+    })
+    public ResponseEntity<Object> purgeEmployee(
+        @Parameter(description = "Employee UUID", example = "123e4567-e89b-12d3-a456-426614174000")
+        @PathVariable String id
+    ) {
+        try {
+            return employeeService.purgeEmployee(id)
+                .<ResponseEntity<Object>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
     @GetMapping("/{id}/usage-stats")
     @Operation(
         summary = "Get employee usage statistics",
@@ -319,6 +429,49 @@ public class EmployeeController {
             .orElse(ResponseEntity.notFound().build());
     }
     
+    @PostMapping("/assign-cards")
+    @Operation(
+        summary = "Assign cards to many employees",
+        description = "Assign card IDs and optional short codes to many employees in one transaction. " +
+            "If any assignment collides with another employee's card or short code, nothing is applied and the conflicts are returned. Requires authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "All cards assigned"),
+        @ApiResponse(responseCode = "409", description = "Conflicts found - no assignments applied"),
+        @ApiResponse(responseCode = "400", description = "Bad request - No assignments provided"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Authentication required")
+    })
+    public ResponseEntity<Object> assignCardsInBulk(
+        @io.swagger.v3.oas.annotations.parameters.RequestBody(
+            description = "Card assignments",
+            required = true,
+            content = @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = BulkCardAssignmentRequest.class),
+                examples = @ExampleObject(
+                    name = "Bulk Card Assignment Example",
+                    value = """
+                        {
+                          "assignments": [
+                            { "employeeId": "EMP001", "cardId": "04A2B3C4D5", "shortCode": "1234" },
+                            { "employeeId": "EMP002", "cardId": "15B3C4D5E6", "shortCode": "5678" }
+                          ]
+                        }
+                        """
+                )
+            )
+        )
+        @RequestBody BulkCardAssignmentRequest request
+    ) {
+        if (request.getAssignments() == null || request.getAssignments().isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "No assignments provided"));
+        }
+        BulkCardAssignmentResult result = employeeService.assignCardsInBulk(request.getAssignments());
+        return result.getConflicts().isEmpty()
+            ? ResponseEntity.ok(result)
+            : ResponseEntity.status(409).body(result);
+    }
+    
     // DTO for card assignment request
     public static class CardAssignmentRequest {
         private String cardId;
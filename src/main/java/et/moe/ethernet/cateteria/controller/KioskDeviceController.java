@@ -0,0 +1,92 @@
+package et.moe.ethernet.cateteria.controller;
+
+import et.moe.ethernet.cateteria.dto.KioskDeviceDto;
+import et.moe.ethernet.cateteria.dto.KioskDeviceRequest;
+import et.moe.ethernet.cateteria.service.KioskDeviceService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import jakarta.validation.Valid;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/kiosk-devices")
+@RequiredArgsConstructor
+@Tag(name = "Kiosk Devices", description = "Kiosk registration and signing secrets")
+public class KioskDeviceController {
+
+    private final KioskDeviceService kioskDeviceService;
+
+    @GetMapping
+    @Operation(summary = "Get all kiosk devices", description = "List registered kiosks with their operator user. Secrets are not included.")
+    public ResponseEntity<List<KioskDeviceDto>> getAllDevices() {
+        List<KioskDeviceDto> devices = kioskDeviceService.getAllDevices().stream()
+            .map(KioskDeviceDto::fromEntity)
+            .collect(Collectors.toList());
+        return ResponseEntity.ok(devices);
+    }
+
+    @PostMapping
+    @Operation(
+        summary = "Register kiosk device",
+        description = "Registers a kiosk and returns its signing secret. The secret is only shown here and on rotation; " +
+            "configure it on the kiosk together with the device ID. Meals recorded by the kiosk are attributed to the operator user."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Device registered, secret included"),
+        @ApiResponse(responseCode = "400", description = "Bad request - Duplicate ID or unknown operator")
+    })
+    public ResponseEntity<Object> registerDevice(@Valid @RequestBody KioskDeviceRequest request) {
+        try {
+            return ResponseEntity.ok(KioskDeviceDto.withSecret(kioskDeviceService.registerDevice(request)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PutMapping("/{id}")
+    @Operation(summary = "Update kiosk device", description = "Change the name or operator user of a kiosk. The ID in the body is ignored.")
+    public ResponseEntity<Object> updateDevice(@PathVariable String id, @Valid @RequestBody KioskDeviceRequest request) {
+        try {
+            return kioskDeviceService.updateDevice(id, request)
+                .<ResponseEntity<Object>>map(device -> ResponseEntity.ok(KioskDeviceDto.fromEntity(device)))
+                .orElse(ResponseEntity.notFound().build());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{id}/rotate-secret")
+    @Operation(summary = "Rotate kiosk secret", description = "Issues a new signing secret; requests signed with the old one are rejected immediately")
+    public ResponseEntity<KioskDeviceDto> rotateSecret(@PathVariable String id) {
+        return kioskDeviceService.rotateSecret(id)
+            .map(KioskDeviceDto::withSecret)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PatchMapping("/{id}/toggle")
+    @Operation(summary = "Toggle kiosk status", description = "Enable or disable a kiosk; disabled kiosks cannot sign requests")
+    public ResponseEntity<KioskDeviceDto> toggleDeviceStatus(@PathVariable String id) {
+        return kioskDeviceService.toggleDeviceStatus(id)
+            .map(KioskDeviceDto::fromEntity)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Delete kiosk device", description = "Remove a kiosk registration")
+    public ResponseEntity<Void> deleteDevice(@PathVariable String id) {
+        if (kioskDeviceService.deleteDevice(id)) {
+            return ResponseEntity.ok().build();
+        }
+        return ResponseEntity.notFound().build();
+    }
+}
@@ -1,5 +1,6 @@
 package et.moe.ethernet.cateteria.controller;
 
+import et.moe.ethernet.cateteria.dto.BulkStatusRequest;
 import et.moe.ethernet.cateteria.dto.CreateMealItemRequest;
 import et.moe.ethernet.cateteria.dto.MealItemDto;
 import et.moe.ethernet.cateteria.entity.MealItem;
@@ -19,6 +20,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/meal-items")
@@ -185,6 +187,60 @@ public class MealItemController {
         return success ? ResponseEntity.ok(true) : ResponseEntity.notFound().build();
     }
     
+    @PatchMapping("/bulk-status")
+    @Operation(
+        summary = "Activate or deactivate meal items in bulk",
+        description = "Set the active status of many meal items with a single update statement and return the number of rows changed. Requires authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Status updated; response contains the affected count"),
+        @ApiResponse(responseCode = "400", description = "Bad request - ids and isActive are required"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Authentication required")
+    })
+    public ResponseEntity<Object> bulkUpdateStatus(@RequestBody BulkStatusRequest request) {
+        if (request.getIds() == null || request.getIds().isEmpty() || request.getIsActive() == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Missing required parameters: ids and isActive"));
+        }
+        int affected = mealItemService.setMealItemsActive(request.getIds(), request.getIsActive());
+        return ResponseEntity.ok(Map.of("affected", affected));
+    }
+    
+    @PatchMapping("/by-category/{mealCategoryId}/status")
+    @Operation(
+        summary = "Activate or deactivate all items in a category",
+        description = "Set the active status of every meal item in a meal category with a single update statement. Requires authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Status updated; response contains the affected count"),
+        @ApiResponse(responseCode = "400", description = "Bad request - isActive is required"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Authentication required")
+    })
+    public ResponseEntity<Object> updateStatusByCategory(@PathVariable String mealCategoryId, @RequestBody BulkStatusRequest request) {
+        if (request.getIsActive() == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Missing required parameter: isActive"));
+        }
+        int affected = mealItemService.setMealItemsActiveByCategory(mealCategoryId, request.getIsActive());
+        return ResponseEntity.ok(Map.of("affected", affected));
+    }
+    
+    @PatchMapping("/by-category/{mealCategoryId}/availability")
+    @Operation(
+        summary = "Set availability for all items in a category",
+        description = "Set the total available quantity of every meal item in a meal category with a single update statement. Send 0 to mark the whole category sold out. Requires authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Availability updated; response contains the affected count"),
+        @ApiResponse(responseCode = "400", description = "Bad request - Negative quantity"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Authentication required")
+    })
+    public ResponseEntity<Object> updateAvailabilityByCategory(@PathVariable String mealCategoryId, @RequestBody Integer totalAvailable) {
+        if (totalAvailable == null || totalAvailable < 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "totalAvailable must be zero or greater"));
+        }
+        int affected = mealItemService.updateAvailabilityByCategory(mealCategoryId, totalAvailable);
+        return ResponseEntity.ok(Map.of("affected", affected));
+    }
+    
     @DeleteMapping("/{id}")
     @Operation(
         summary = "Delete a meal item",
@@ -1,9 +1,14 @@
 package et.moe.ethernet.cateteria.controller;
 
 import et.moe.ethernet.cateteria.dto.MealRecordDto;
+import et.moe.ethernet.cateteria.dto.OfflineTapBatchRequest;
+import et.moe.ethernet.cateteria.dto.OfflineTapBatchResult;
 import et.moe.ethernet.cateteria.dto.RecordMealWithItemsRequest;
 import et.moe.ethernet.cateteria.service.MealRecordService;
+import et.moe.ethernet.cateteria.service.OfflineTapService;
 import et.moe.ethernet.cateteria.service.PrintService;
+import et.moe.ethernet.cateteria.service.RecentActivityService;
+import et.moe.ethernet.cateteria.service.ReceiptTemplateService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -30,6 +35,9 @@ public class MealRecordController {
     
     private final MealRecordService mealRecordService;
     private final PrintService printService;
+    private final ReceiptTemplateService receiptTemplateService;
+    private final OfflineTapService offlineTapService;
+    private final RecentActivityService recentActivityService;
     
     @GetMapping
     @Operation(
@@ -45,6 +53,42 @@ public class MealRecordController {
         return ResponseEntity.ok(records);
     }
     
+    @GetMapping("/recent")
+    @Operation(
+        summary = "Get the most recent meal records",
+        description = "The latest meal records, newest first, served from memory without a database query. " +
+            "Holds the last cafeteria.recent-activity.capacity records. Requires authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved recent meal records"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Authentication required")
+    })
+    public ResponseEntity<List<MealRecordDto>> getRecentMealRecords(
+        @Parameter(description = "Maximum number of records", example = "200")
+        @RequestParam(defaultValue = "200") int limit
+    ) {
+        return ResponseEntity.ok(recentActivityService.getRecent(clampRecentLimit(limit), null));
+    }
+    
+    @GetMapping("/recent/kiosk/{kioskDeviceId}")
+    @Operation(
+        summary = "Get the most recent meal records of a kiosk",
+        description = "The latest meal records recorded by one kiosk device, newest first, taken from the same in-memory " +
+            "records as /meal-records/recent. Requires authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved recent meal records"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Authentication required")
+    })
+    public ResponseEntity<List<MealRecordDto>> getRecentMealRecordsByKiosk(
+        @Parameter(description = "Kiosk device ID", example = "kiosk-01")
+        @PathVariable String kioskDeviceId,
+        @Parameter(description = "Maximum number of records", example = "50")
+        @RequestParam(defaultValue = "50") int limit
+    ) {
+        return ResponseEntity.ok(recentActivityService.getRecent(clampRecentLimit(limit), kioskDeviceId));
+    }
+    
     @GetMapping("/employee/{employeeId}")
     @Operation(
         summary = "Get meal records by employee",
@@ -243,6 +287,35 @@ public class MealRecordController {
         }
     }
     
+    @PostMapping("/offline-batch")
+    @Operation(
+        summary = "Upload taps recorded offline",
+        description = "Records many taps a kiosk collected while offline, each with its kiosk-assigned clientId and original recordedAt. " +
+            "Each tap carries the card ID or short code and the roster id of the employee the kiosk resolved it to; the meal is recorded for that employee. " +
+            "Taps are checked against the one-meal-per-meal-type-per-day rule (against existing records and earlier taps in the batch) " +
+            "and priced with the support configuration active at the tap's time. Re-uploading a tap returns ALREADY_RECORDED. " +
+            "Requires a signed kiosk request or authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Batch processed; see the per-tap results", content = @Content(
+            mediaType = "application/json",
+            schema = @Schema(implementation = OfflineTapBatchResult.class)
+        )),
+        @ApiResponse(responseCode = "400", description = "Bad request - Empty or oversized batch")
+    })
+    public ResponseEntity<Object> uploadOfflineTaps(
+        @Parameter(description = "Taps recorded offline")
+        @RequestBody OfflineTapBatchRequest request
+    ) {
+        try {
+            return ResponseEntity.ok(offlineTapService.ingest(request.getTaps()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "error", e.getMessage()
+            ));
+        }
+    }
+    
     @PostMapping("/{id}/items")
     @Operation(
         summary = "Attach selected items to an existing meal record",
@@ -273,7 +346,8 @@ public class MealRecordController {
     @GetMapping("/{id}/receipt")
     @Operation(
         summary = "Get receipt text for a meal record",
-        description = "Generate receipt text for a specific meal record. This endpoint is publicly accessible for receipt printing."
+        description = "Generate receipt text for a specific meal record. The format is taken from the format parameter, " +
+            "else from the kiosk's configured format (X-Kiosk-Id header), else the default. This endpoint is publicly accessible for receipt printing."
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Successfully generated receipt text"),
@@ -283,19 +357,17 @@ public class MealRecordController {
     public ResponseEntity<Object> getReceiptText(
         @Parameter(description = "Meal record UUID", example = "123e4567-e89b-12d3-a456-426614174000")
         @PathVariable String id,
-        @Parameter(description = "Receipt format", example = "simple")
-        @RequestParam(defaultValue = "detailed") String format
+        @Parameter(description = "Receipt format (detailed, simple or a custom template)", example = "simple")
+        @RequestParam(required = false) String format,
+        @Parameter(description = "Kiosk identifier used to pick the kiosk's receipt format")
+        @RequestHeader(value = "X-Kiosk-Id", required = false) String kioskId
     ) {
         try {
-            MealRecordDto mealRecord = mealRecordService.getMealRecordById(id)
+            MealRecordDto mealRecord = mealRecordService.getReceiptSnapshot(id)
                 .orElseThrow(() -> new RuntimeException("Meal record not found"));
             
-            String receiptText;
-            if ("simple".equalsIgnoreCase(format)) {
-                receiptText = printService.generateSimpleReceiptText(mealRecord);
-            } else {
-                receiptText = printService.generateReceiptText(mealRecord);
-            }
+            format = receiptTemplateService.resolveFormat(format, kioskId);
+            String receiptText = printService.generateReceiptText(format, mealRecord);
             
             return ResponseEntity.ok(Map.of(
                 "receiptText", receiptText,
@@ -309,4 +381,8 @@ public class MealRecordController {
             ));
         }
     }
-} 
\ No newline at end of file
+    
+    private int clampRecentLimit(int limit) {
+        return Math.max(1, Math.min(limit, recentActivityService.getCapacity()));
+    }
+}
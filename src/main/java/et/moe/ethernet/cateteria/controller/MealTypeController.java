@@ -1,5 +1,6 @@
 package et.moe.ethernet.cateteria.controller;
 
+import et.moe.ethernet.cateteria.dto.BulkStatusRequest;
 import et.moe.ethernet.cateteria.dto.MealTypeDto;
 import et.moe.ethernet.cateteria.entity.MealType;
 import et.moe.ethernet.cateteria.service.MealTypeService;
@@ -16,6 +17,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/meal-types")
@@ -145,6 +147,24 @@ public class MealTypeController {
         return success ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
     }
     
+    @PatchMapping("/bulk-status")
+    @Operation(
+        summary = "Activate or deactivate meal types in bulk",
+        description = "Set the active status of many meal types with a single update statement and return the number of rows changed. Requires authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Status updated; response contains the affected count"),
+        @ApiResponse(responseCode = "400", description = "Bad request - ids and isActive are required"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Authentication required")
+    })
+    public ResponseEntity<Object> bulkUpdateStatus(@RequestBody BulkStatusRequest request) {
+        if (request.getIds() == null || request.getIds().isEmpty() || request.getIsActive() == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Missing required parameters: ids and isActive"));
+        }
+        int affected = mealTypeService.setMealTypesActive(request.getIds(), request.getIsActive());
+        return ResponseEntity.ok(Map.of("affected", affected));
+    }
+    
     @DeleteMapping("/{id}")
     @Operation(
         summary = "Delete a meal type",
@@ -0,0 +1,103 @@
+package et.moe.ethernet.cateteria.controller;
+
+import et.moe.ethernet.cateteria.service.ItemStockService;
+import et.moe.ethernet.cateteria.service.MenuSnapshotService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/menu")
+@RequiredArgsConstructor
+@Tag(name = "Menu", description = "Full active menu snapshot for kiosks")
+public class MenuController {
+    
+    private static final String VERSION_HEADER = "X-Menu-Version";
+    
+    private final MenuSnapshotService menuSnapshotService;
+    private final ItemStockService itemStockService;
+    
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+        summary = "Get the full active menu",
+        description = "Returns every active meal type with its active categories and their active items (including availability) in one response. " +
+            "Send the previous ETag in If-None-Match to get 304 Not Modified when the menu has not changed. This endpoint is publicly accessible."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Current menu snapshot"),
+        @ApiResponse(responseCode = "304", description = "Menu unchanged since the given ETag")
+    })
+    public ResponseEntity<byte[]> getMenu(
+        @Parameter(description = "ETag of the menu the kiosk already has")
+        @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch
+    ) {
+        MenuSnapshotService.Snapshot snapshot = menuSnapshotService.getSnapshot();
+        if (matches(ifNoneMatch, snapshot.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(snapshot.getEtag())
+                .header(VERSION_HEADER, String.valueOf(snapshot.getVersion()))
+                .build();
+        }
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .cacheControl(CacheControl.noCache())
+            .eTag(snapshot.getEtag())
+            .header(VERSION_HEADER, String.valueOf(snapshot.getVersion()))
+            .body(snapshot.getBody());
+    }
+    
+    @GetMapping("/version")
+    @Operation(
+        summary = "Get the current menu version",
+        description = "Returns only the menu version and ETag so kiosks can cheaply check for changes. This endpoint is publicly accessible."
+    )
+    public ResponseEntity<Object> getMenuVersion() {
+        MenuSnapshotService.Snapshot snapshot = menuSnapshotService.getSnapshot();
+        return ResponseEntity.ok(Map.of(
+            "version", snapshot.getVersion(),
+            "etag", snapshot.getEtag()
+        ));
+    }
+    
+    @GetMapping("/stock")
+    @Operation(
+        summary = "Get live item stock",
+        description = "Returns the available quantity of every meal item in the current menu, keyed by item ID. " +
+            "Stock is not part of the menu snapshot, so it can be polled without invalidating the menu ETag. This endpoint is publicly accessible."
+    )
+    public ResponseEntity<Object> getStock() {
+        MenuSnapshotService.Snapshot snapshot = menuSnapshotService.getSnapshot();
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.noStore())
+            .body(Map.of(
+                "version", snapshot.getVersion(),
+                "stock", itemStockService.getAvailable(snapshot.getItemIds())
+            ));
+    }
+    
+    private boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals(etag) || trimmed.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
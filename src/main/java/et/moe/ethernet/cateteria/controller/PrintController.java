@@ -1,15 +1,24 @@
 package et.moe.ethernet.cateteria.controller;
 
+import et.moe.ethernet.cateteria.dto.MealRecordDto;
+import et.moe.ethernet.cateteria.dto.PrintJob;
+import et.moe.ethernet.cateteria.service.EscPosBuilder;
+import et.moe.ethernet.cateteria.service.MealRecordService;
+import et.moe.ethernet.cateteria.service.PrintService;
+import et.moe.ethernet.cateteria.service.PrintSpoolService;
+import et.moe.ethernet.cateteria.service.ReceiptTemplateService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -17,107 +26,57 @@ import java.util.Map;
 @RequiredArgsConstructor
 @Tag(name = "Print", description = "Direct printing operations")
 public class PrintController {
-    
+
+    private final PrintSpoolService printSpoolService;
+    private final PrintService printService;
+    private final MealRecordService mealRecordService;
+    private final ReceiptTemplateService receiptTemplateService;
+
     @PostMapping("/test")
     @Operation(
         summary = "Test print using the working command format",
-        description = "Test print using the exact command format that works"
+        description = "Queue a test page using the exact command format that works. Returns immediately with a job ID."
     )
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "Successfully printed test page"),
-        @ApiResponse(responseCode = "500", description = "Internal server error - Print command failed")
+        @ApiResponse(responseCode = "202", description = "Test page queued"),
+        @ApiResponse(responseCode = "400", description = "Bad request - Invalid or unknown printer name"),
+        @ApiResponse(responseCode = "503", description = "Print queue is full")
     })
     public ResponseEntity<Object> testPrint(
         @Parameter(description = "Printer name", example = "POS-80")
         @RequestParam(defaultValue = "POS-80") String printer
     ) {
-        try {
-            // Use the exact working command format
-            String command = String.format("echo -e \"\\x1B\\x40Hello POS-80\\n This is the test page tttttttttttttttttttttttttttttttttttttttttttttttttttt\\x1D\\x56\\x00\" | lp -d %s", printer);
-            
-            Process process = Runtime.getRuntime().exec(new String[]{"bash", "-c", command});
-            int exitCode = process.waitFor();
-            
-            if (exitCode == 0) {
-                return ResponseEntity.ok(Map.of(
-                    "message", "Test print successful",
-                    "printer", printer,
-                    "command", command
-                ));
-            } else {
-                return ResponseEntity.internalServerError().body(Map.of(
-                    "error", "Test print failed with exit code: " + exitCode,
-                    "command", command
-                ));
-            }
-            
-        } catch (IOException | InterruptedException e) {
-            return ResponseEntity.internalServerError().body(Map.of(
-                "error", "Failed to execute test print command: " + e.getMessage()
-            ));
-        }
+        return submit(printer, EscPosBuilder.fromEchoEscapes(
+            "\\x1B\\x40Hello POS-80\\n This is the test page tttttttttttttttttttttttttttttttttttttttttttttttttttt\\x1D\\x56\\x00"));
     }
-    
+
     @PostMapping("/echo")
     @Operation(
         summary = "Print receipt using echo command",
-        description = "Print receipt data using echo command with lp"
+        description = "Same as POST /api/print; kept for existing clients. Returns immediately with a job ID."
     )
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "Successfully printed"),
+        @ApiResponse(responseCode = "202", description = "Print job queued"),
         @ApiResponse(responseCode = "400", description = "Bad request - Invalid print data"),
-        @ApiResponse(responseCode = "500", description = "Internal server error - Print command failed")
+        @ApiResponse(responseCode = "503", description = "Print queue is full")
     })
     public ResponseEntity<Object> printReceiptEcho(
         @Parameter(description = "Print request containing data and printer name")
         @RequestBody Map<String, String> request
     ) {
-        String data = request.get("data");
-        String printer = request.get("printer");
-        
-        if (data == null || printer == null) {
-            return ResponseEntity.badRequest().body(Map.of(
-                "error", "Missing required parameters: data and printer"
-            ));
-        }
-        
-        try {
-            // Create the echo command similar to the working example
-            String command = String.format("echo -e \"%s\" | lp -d %s", 
-                data.replace("\"", "\\\""), printer);
-            
-            Process process = Runtime.getRuntime().exec(new String[]{"bash", "-c", command});
-            int exitCode = process.waitFor();
-            
-            if (exitCode == 0) {
-                return ResponseEntity.ok(Map.of(
-                    "message", "Receipt printed successfully via echo",
-                    "printer", printer,
-                    "command", command
-                ));
-            } else {
-                return ResponseEntity.internalServerError().body(Map.of(
-                    "error", "Echo print command failed with exit code: " + exitCode,
-                    "command", command
-                ));
-            }
-            
-        } catch (IOException | InterruptedException e) {
-            return ResponseEntity.internalServerError().body(Map.of(
-                "error", "Failed to execute echo print command: " + e.getMessage()
-            ));
-        }
+        return printReceipt(request);
     }
-    
+
     @PostMapping
     @Operation(
-        summary = "Print receipt using lp command",
-        description = "Print receipt data directly using the system lp command"
+        summary = "Print raw receipt data",
+        description = "Queue receipt data for printing. Escapes understood by echo -e (\\n, \\t, \\xHH) are converted to bytes. " +
+            "Returns immediately with a job ID; poll /api/print/jobs/{jobId} for the result."
     )
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "Successfully printed"),
+        @ApiResponse(responseCode = "202", description = "Print job queued"),
         @ApiResponse(responseCode = "400", description = "Bad request - Invalid print data"),
-        @ApiResponse(responseCode = "500", description = "Internal server error - Print command failed")
+        @ApiResponse(responseCode = "503", description = "Print queue is full")
     })
     public ResponseEntity<Object> printReceipt(
         @Parameter(description = "Print request containing data and printer name")
@@ -125,36 +84,97 @@ public class PrintController {
     ) {
         String data = request.get("data");
         String printer = request.get("printer");
-        
+
         if (data == null || printer == null) {
             return ResponseEntity.badRequest().body(Map.of(
                 "error", "Missing required parameters: data and printer"
             ));
         }
-        
+
+        return submit(printer, EscPosBuilder.fromEchoEscapes(data));
+    }
+    
+    @PostMapping("/receipt/{mealRecordId}")
+    @Operation(
+        summary = "Print the receipt of a meal record",
+        description = "Render the receipt of a meal record as ESC/POS (non-Latin text is printed as an image) and queue it. " +
+            "Returns immediately with a job ID."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Receipt queued"),
+        @ApiResponse(responseCode = "400", description = "Bad request - Meal record not found or invalid or unknown printer name"),
+        @ApiResponse(responseCode = "503", description = "Print queue is full")
+    })
+    public ResponseEntity<Object> printMealRecordReceipt(
+        @Parameter(description = "Meal record UUID")
+        @PathVariable String mealRecordId,
+        @Parameter(description = "Printer name", example = "POS-80")
+        @RequestParam(defaultValue = "POS-80") String printer,
+        @Parameter(description = "Receipt format (detailed, simple or a custom template)")
+        @RequestParam(required = false) String format,
+        @Parameter(description = "Kiosk identifier used to pick the kiosk's receipt format")
+        @RequestHeader(value = "X-Kiosk-Id", required = false) String kioskId
+    ) {
+        byte[] payload;
+        try {
+            MealRecordDto mealRecord = mealRecordService.getReceiptSnapshot(mealRecordId)
+                .orElseThrow(() -> new RuntimeException("Meal record not found"));
+            payload = printService.generateReceiptEscPos(receiptTemplateService.resolveFormat(format, kioskId), mealRecord);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        return submit(printer, payload);
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    @Operation(
+        summary = "Get print job status",
+        description = "Status of a queued, running or recently finished print job."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved job status"),
+        @ApiResponse(responseCode = "404", description = "Job not found")
+    })
+    public ResponseEntity<Object> getJob(
+        @Parameter(description = "Print job ID")
+        @PathVariable String jobId
+    ) {
+        return printSpoolService.getJob(jobId)
+            .<ResponseEntity<Object>>map(job -> ResponseEntity.ok(toStatus(job)))
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/jobs")
+    @Operation(
+        summary = "List pending print jobs",
+        description = "All print jobs that are queued, printing or waiting for a retry."
+    )
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved pending jobs")
+    public ResponseEntity<List<Map<String, Object>>> getPendingJobs() {
+        return ResponseEntity.ok(printSpoolService.getPendingJobs().stream().map(this::toStatus).toList());
+    }
+
+    private ResponseEntity<Object> submit(String printer, byte[] payload) {
         try {
-            // Create the lp command similar to the working example
-            String command = String.format("echo -e \"%s\" | lp -d %s", 
-                data.replace("\"", "\\\""), printer);
-            
-            Process process = Runtime.getRuntime().exec(new String[]{"bash", "-c", command});
-            int exitCode = process.waitFor();
-            
-            if (exitCode == 0) {
-                return ResponseEntity.ok(Map.of(
-                    "message", "Receipt printed successfully",
-                    "printer", printer
-                ));
-            } else {
-                return ResponseEntity.internalServerError().body(Map.of(
-                    "error", "Print command failed with exit code: " + exitCode
-                ));
-            }
-            
-        } catch (IOException | InterruptedException e) {
-            return ResponseEntity.internalServerError().body(Map.of(
-                "error", "Failed to execute print command: " + e.getMessage()
-            ));
+            PrintJob job = printSpoolService.submit(printer, payload);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(toStatus(job));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
         }
     }
-} 
\ No newline at end of file
+
+    private Map<String, Object> toStatus(PrintJob job) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("jobId", job.getId());
+        status.put("printer", job.getPrinter());
+        status.put("status", job.getStatus());
+        status.put("attempts", job.getAttempts());
+        status.put("lastError", job.getLastError());
+        status.put("createdAt", job.getCreatedAt());
+        status.put("updatedAt", job.getUpdatedAt());
+        status.put("nextAttemptAt", job.getNextAttemptAt());
+        return status;
+    }
+}
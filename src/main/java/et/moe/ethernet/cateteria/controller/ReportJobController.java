@@ -0,0 +1,109 @@
+package et.moe.ethernet.cateteria.controller;
+
+import et.moe.ethernet.cateteria.dto.ReportJob;
+import et.moe.ethernet.cateteria.dto.ReportJobRequest;
+import et.moe.ethernet.cateteria.service.ReportJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/report-jobs")
+@RequiredArgsConstructor
+@Tag(name = "Report Jobs", description = "Background reports and meal record exports")
+public class ReportJobController {
+
+    private final ReportJobService reportJobService;
+
+    @PostMapping
+    @Operation(
+        summary = "Start a report job",
+        description = "Queue a support report (SUMMARY, DEPARTMENT_ANALYSIS, CATEGORY_USAGE for a period) or a CSV export " +
+            "of meal records (MEAL_RECORDS for a start/end range). If the same report is already queued or running, " +
+            "that job is returned instead. Poll /report-jobs/{jobId} and download /report-jobs/{jobId}/result when DONE."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Report job queued, or the running job for the same report"),
+        @ApiResponse(responseCode = "400", description = "Bad request - Invalid report spec"),
+        @ApiResponse(responseCode = "503", description = "Report queue is full")
+    })
+    public ResponseEntity<Object> submit(@Valid @RequestBody ReportJobRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(reportJobService.submit(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{jobId}")
+    @Operation(summary = "Get report job status", description = "Status and progress (0-100) of a report job.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved job status"),
+        @ApiResponse(responseCode = "404", description = "Job not found or expired")
+    })
+    public ResponseEntity<ReportJob> getJob(
+        @Parameter(description = "Report job ID")
+        @PathVariable String jobId
+    ) {
+        return reportJobService.getJob(jobId)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{jobId}/result")
+    @Operation(summary = "Download a report result", description = "The JSON report or CSV export of a finished job.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Result file"),
+        @ApiResponse(responseCode = "404", description = "Job not found or expired"),
+        @ApiResponse(responseCode = "409", description = "Job not finished or failed")
+    })
+    public ResponseEntity<Object> getResult(
+        @Parameter(description = "Report job ID")
+        @PathVariable String jobId
+    ) {
+        Optional<ReportJob> job = reportJobService.getJob(jobId);
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.get().getStatus() != ReportJob.Status.DONE) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                "error", "Report job is " + job.get().getStatus(),
+                "progress", job.get().getProgress()
+            ));
+        }
+        Optional<Path> file = reportJobService.getResultFile(jobId);
+        if (file.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(job.get().getContentType()))
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(job.get().getFileName()).build().toString())
+            .body(new FileSystemResource(file.get()));
+    }
+
+    @GetMapping
+    @Operation(summary = "List report jobs", description = "Queued, running and finished report jobs that have not expired, newest first.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved report jobs")
+    public ResponseEntity<List<ReportJob>> getJobs() {
+        return ResponseEntity.ok(reportJobService.getJobs());
+    }
+}
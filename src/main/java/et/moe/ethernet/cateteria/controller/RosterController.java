@@ -0,0 +1,92 @@
+package et.moe.ethernet.cateteria.controller;
+
+import et.moe.ethernet.cateteria.dto.RosterDto;
+import et.moe.ethernet.cateteria.service.EmployeeRosterService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/employees/roster")
+@RequiredArgsConstructor
+@Tag(name = "Employee Roster", description = "Versioned employee roster for offline card lookup on kiosks")
+public class RosterController {
+
+    private static final String VERSION_HEADER = "X-Roster-Version";
+
+    private final EmployeeRosterService employeeRosterService;
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+        summary = "Get the full employee roster",
+        description = "Every active employee with a card or short code: card, short code, name, department, support eligibility and photo hash, " +
+            "with the roster epoch and version. Send the previous ETag in If-None-Match to get 304 Not Modified. Requires a signed kiosk request or staff login."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Current roster"),
+        @ApiResponse(responseCode = "304", description = "Roster unchanged since the given ETag"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Signed kiosk request or authentication required")
+    })
+    public ResponseEntity<byte[]> getRoster(
+        @Parameter(description = "ETag of the roster the kiosk already has")
+        @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch
+    ) {
+        EmployeeRosterService.Roster roster = employeeRosterService.getRoster();
+        if (matches(ifNoneMatch, roster.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(roster.getEtag())
+                .header(VERSION_HEADER, String.valueOf(roster.getVersion()))
+                .build();
+        }
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .cacheControl(CacheControl.noCache())
+            .eTag(roster.getEtag())
+            .header(VERSION_HEADER, String.valueOf(roster.getVersion()))
+            .body(roster.getFullBody());
+    }
+
+    @GetMapping("/changes")
+    @Operation(
+        summary = "Get roster changes since a version",
+        description = "Returns the employees added or changed since the given version and the ids to remove (full=false). " +
+            "If the epoch differs (change log recreated) or the version is too old, the full roster is returned instead (full=true). " +
+            "Requires a signed kiosk request or staff login."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Roster changes or full roster"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Signed kiosk request or authentication required")
+    })
+    public ResponseEntity<RosterDto> getChanges(
+        @Parameter(description = "Roster epoch the kiosk holds", required = true)
+        @RequestParam long epoch,
+        @Parameter(description = "Roster version the kiosk holds", required = true)
+        @RequestParam long since
+    ) {
+        return ResponseEntity.ok(employeeRosterService.getChangesSince(epoch, since));
+    }
+
+    private boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals(etag) || trimmed.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
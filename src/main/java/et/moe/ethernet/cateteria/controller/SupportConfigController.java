@@ -1,8 +1,11 @@
 package et.moe.ethernet.cateteria.controller;
 
+import et.moe.ethernet.cateteria.config.CacheConfig;
 import et.moe.ethernet.cateteria.entity.SupportConfig;
 import et.moe.ethernet.cateteria.repository.SupportConfigRepository;
+import et.moe.ethernet.cateteria.service.EmployeeRosterService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -15,6 +18,7 @@ import java.util.Optional;
 public class SupportConfigController {
     
     private final SupportConfigRepository supportConfigRepository;
+    private final EmployeeRosterService employeeRosterService;
     
     @GetMapping
     public ResponseEntity<SupportConfig> getSupportConfig() {
@@ -24,6 +28,7 @@ public class SupportConfigController {
     }
     
     @PostMapping
+    @CacheEvict(value = CacheConfig.EMPLOYEES_BY_CARD, allEntries = true) // cached lookups carry support eligibility
     public ResponseEntity<SupportConfig> createSupportConfig(@RequestBody SupportConfig supportConfig) {
         // Deactivate existing config
         supportConfigRepository.findByIsActiveTrue()
@@ -35,10 +40,12 @@ public class SupportConfigController {
         // Create new config
         supportConfig.setActive(true);
         SupportConfig savedConfig = supportConfigRepository.save(supportConfig);
+        employeeRosterService.rosterChanged(); // eligibility on the kiosk roster
         return ResponseEntity.ok(savedConfig);
     }
     
     @PutMapping("/max-salary")
+    @CacheEvict(value = CacheConfig.EMPLOYEES_BY_CARD, allEntries = true)
     public ResponseEntity<SupportConfig> updateMaxSalaryForSupport(@RequestParam BigDecimal maxSalary) {
         // Deactivate existing config
         supportConfigRepository.findByIsActiveTrue()
@@ -53,6 +60,7 @@ public class SupportConfigController {
         newConfig.setActive(true);
         
         SupportConfig savedConfig = supportConfigRepository.save(newConfig);
+        employeeRosterService.rosterChanged();
         return ResponseEntity.ok(savedConfig);
     }
 } 
\ No newline at end of file
@@ -1,6 +1,8 @@
 package et.moe.ethernet.cateteria.controller;
 
+import et.moe.ethernet.cateteria.service.ReportCoalescingService;
 import et.moe.ethernet.cateteria.service.SupportReportService;
+import et.moe.ethernet.cateteria.service.TodayCountersService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -15,21 +17,29 @@ import java.util.List;
 @Tag(name = "Support Reports", description = "Support report endpoints")
 public class SupportReportController {
     
-    private final SupportReportService supportReportService;
+    // Dashboards opened at the same time share one computation per report
+    private final ReportCoalescingService reportCoalescingService;
+    private final TodayCountersService todayCountersService;
     
     @GetMapping("/summary")
     @Operation(summary = "Get support summary", description = "Get support summary statistics for a given period")
     public ResponseEntity<SupportReportService.SupportSummary> getSupportSummary(
             @RequestParam(defaultValue = "monthly") String period) {
-        SupportReportService.SupportSummary summary = supportReportService.getSupportSummary(period);
+        SupportReportService.SupportSummary summary = reportCoalescingService.getSupportSummary(period);
         return ResponseEntity.ok(summary);
     }
     
+    @GetMapping("/today")
+    @Operation(summary = "Get today's totals", description = "Meals, revenue and subsidy of today so far, and meals per meal type. Served from memory.")
+    public ResponseEntity<TodayCountersService.TodayTotals> getTodayTotals() {
+        return ResponseEntity.ok(todayCountersService.getTotals());
+    }
+    
     @GetMapping("/department-analysis")
     @Operation(summary = "Get department analysis", description = "Get department-wise support analysis for a given period")
     public ResponseEntity<List<SupportReportService.DepartmentSupportAnalysis>> getDepartmentAnalysis(
             @RequestParam(defaultValue = "monthly") String period) {
-        List<SupportReportService.DepartmentSupportAnalysis> analysis = supportReportService.getDepartmentAnalysis(period);
+        List<SupportReportService.DepartmentSupportAnalysis> analysis = reportCoalescingService.getDepartmentAnalysis(period);
         return ResponseEntity.ok(analysis);
     }
     
@@ -39,7 +49,7 @@ public class SupportReportController {
             @RequestParam(defaultValue = "monthly") String period,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
-        SupportReportService.PaginatedDepartmentAnalysis analysis = supportReportService.getPaginatedDepartmentAnalysis(period, page, size);
+        SupportReportService.PaginatedDepartmentAnalysis analysis = reportCoalescingService.getPaginatedDepartmentAnalysis(period, page, size);
         return ResponseEntity.ok(analysis);
     }
     
@@ -47,6 +57,6 @@ public class SupportReportController {
     @Operation(summary = "Get meal category usage", description = "Get usage per meal category for a given period")
     public ResponseEntity<List<SupportReportService.MealCategoryUsage>> getMealCategoryUsage(
             @RequestParam(defaultValue = "monthly") String period) {
-        return ResponseEntity.ok(supportReportService.getMealCategoryUsage(period));
+        return ResponseEntity.ok(reportCoalescingService.getMealCategoryUsage(period));
     }
 } 
\ No newline at end of file
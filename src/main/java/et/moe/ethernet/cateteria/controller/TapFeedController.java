@@ -0,0 +1,63 @@
+package et.moe.ethernet.cateteria.controller;
+
+import et.moe.ethernet.cateteria.service.TapFeedService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/meal-records/live")
+@RequiredArgsConstructor
+@Tag(name = "Live Tap Feed", description = "Server-Sent Events stream of recorded meals for supervisor screens")
+public class TapFeedController {
+
+    private final TapFeedService tapFeedService;
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Stream recorded meals",
+        description = "Server-Sent Events stream. mode=meals sends a 'meal' event per recorded meal; mode=aggregates " +
+            "sends an 'aggregate' event every second with the meals, revenue and subsidy of the previous second. " +
+            "Events a slow client cannot keep up with are dropped, oldest first. Requires authentication."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Event stream opened"),
+        @ApiResponse(responseCode = "400", description = "Bad request - Unknown mode"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized - Authentication required"),
+        @ApiResponse(responseCode = "503", description = "Too many live feed subscribers")
+    })
+    public ResponseEntity<SseEmitter> stream(
+        @Parameter(description = "meals or aggregates", example = "meals")
+        @RequestParam(defaultValue = "meals") String mode
+    ) {
+        TapFeedService.Mode feedMode;
+        try {
+            feedMode = TapFeedService.Mode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(tapFeedService.subscribe(feedMode));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").build();
+        }
+    }
+
+    @GetMapping("/stats")
+    @Operation(summary = "Get live feed statistics", description = "Open subscriptions, published meals and dropped events.")
+    @ApiResponse(responseCode = "200", description = "Successfully retrieved feed statistics")
+    public ResponseEntity<Map<String, Object>> getStatistics() {
+        return ResponseEntity.ok(tapFeedService.getStatistics());
+    }
+}
@@ -0,0 +1,24 @@
+package et.moe.ethernet.cateteria.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkCardAssignmentRequest {
+
+    private List<Assignment> assignments;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Assignment {
+        private String employeeId;
+        private String cardId;
+        private String shortCode;
+    }
+}
@@ -0,0 +1,27 @@
+package et.moe.ethernet.cateteria.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkCardAssignmentResult {
+
+    private int requested;
+    private int updated;
+    private List<Conflict> conflicts = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Conflict {
+        private int index;
+        private String employeeId;
+        private String message;
+    }
+}
@@ -0,0 +1,19 @@
+package et.moe.ethernet.cateteria.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStatusRequest {
+    
+    private List<String> ids;
+    
+    @JsonProperty("isActive")
+    private Boolean isActive;
+}
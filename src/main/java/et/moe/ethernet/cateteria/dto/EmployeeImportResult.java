@@ -0,0 +1,30 @@
+package et.moe.ethernet.cateteria.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmployeeImportResult {
+
+    private int totalRows;
+    private int inserted;
+    private int updated;
+    private int failed;
+    private long durationMs;
+    private List<RowError> errors = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private int row;
+        private String employeeId;
+        private String message;
+    }
+}
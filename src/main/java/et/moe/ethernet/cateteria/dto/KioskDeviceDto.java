@@ -0,0 +1,48 @@
+package et.moe.ethernet.cateteria.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import et.moe.ethernet.cateteria.entity.KioskDevice;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KioskDeviceDto {
+    
+    private String id;
+    private String name;
+    private String operatorUsername;
+    
+    @JsonProperty("isActive")
+    private boolean isActive;
+    
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    
+    // Only returned when the secret is issued (registration and rotation)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String secret;
+    
+    public static KioskDeviceDto fromEntity(KioskDevice device) {
+        return new KioskDeviceDto(
+            device.getId(),
+            device.getName(),
+            device.getOperatorUser().getUsername(),
+            device.isActive(),
+            device.getCreatedAt(),
+            device.getUpdatedAt(),
+            null
+        );
+    }
+    
+    public static KioskDeviceDto withSecret(KioskDevice device) {
+        KioskDeviceDto dto = fromEntity(device);
+        dto.setSecret(device.getSecret());
+        return dto;
+    }
+}
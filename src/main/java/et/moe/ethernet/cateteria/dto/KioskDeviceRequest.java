@@ -0,0 +1,19 @@
+package et.moe.ethernet.cateteria.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import lombok.Data;
+
+@Data
+public class KioskDeviceRequest {
+    
+    @NotBlank(message = "Device ID is required")
+    @Pattern(regexp = "[A-Za-z0-9._-]{1,64}", message = "Device ID may only contain letters, digits, '.', '_' and '-' (max 64)")
+    private String id;
+    
+    @NotBlank(message = "Name is required")
+    private String name;
+    
+    @NotBlank(message = "Operator username is required")
+    private String operatorUsername;
+}
@@ -9,4 +9,8 @@ public class LoginResponse {
     private User user;
     private String message;
     private boolean success;
+    private String accessToken;
+    private String refreshToken;
+    private String tokenType;
+    private Long expiresIn;
 } 
\ No newline at end of file
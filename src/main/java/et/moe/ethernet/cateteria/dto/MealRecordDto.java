@@ -36,6 +36,13 @@ public class MealRecordDto {
     private String recordedByUsername;
     private String recordedByFullName;
     
+    // Receipt details, so receipts can be rendered without further lookups
+    private String employeeShortCode;
+    private String mealTypeName;
+    
+    // Kiosk device that recorded the meal, if any
+    private String kioskDeviceId;
+    
     // Meal items information
     private List<MealRecordItemDto> mealItems;
     
@@ -60,6 +67,9 @@ public class MealRecordDto {
             mealRecord.getRecordedByUser() != null ? mealRecord.getRecordedByUser().getId() : null,
             mealRecord.getRecordedByUser() != null ? mealRecord.getRecordedByUser().getUsername() : null,
             mealRecord.getRecordedByUser() != null ? mealRecord.getRecordedByUser().getFullName() : null,
+            mealRecord.getEmployee().getShortCode(),
+            mealRecord.getMealType().getName(),
+            mealRecord.getKioskDeviceId(),
             null // mealItems will be set separately
         );
     }
@@ -0,0 +1,14 @@
+package et.moe.ethernet.cateteria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published in-process after a meal is recorded at a kiosk.
+ */
+@Data
+@AllArgsConstructor
+public class MealRecordedEvent {
+
+    private MealRecordDto mealRecord;
+}
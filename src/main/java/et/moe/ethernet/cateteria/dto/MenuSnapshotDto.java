@@ -0,0 +1,37 @@
+package et.moe.ethernet.cateteria.dto;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuSnapshotDto {
+    
+    private long version;
+    private LocalDateTime generatedAt;
+    private List<MenuMealType> mealTypes;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MenuMealType {
+        @JsonUnwrapped
+        private MealTypeDto mealType;
+        private List<MenuMealCategory> categories;
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MenuMealCategory {
+        @JsonUnwrapped
+        private MealCategoryDto mealCategory;
+        private List<MealItemDto> items;
+    }
+}
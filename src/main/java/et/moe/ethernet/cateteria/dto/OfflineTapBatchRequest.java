@@ -0,0 +1,32 @@
+package et.moe.ethernet.cateteria.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OfflineTapBatchRequest {
+    
+    private List<OfflineTap> taps;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class OfflineTap {
+        // Unique id the kiosk gave the tap (e.g. a UUID); re-uploads with the same id are not recorded twice
+        private String clientId;
+        // Card ID or short code that was tapped
+        private String cardId;
+        // Roster id of the employee the kiosk resolved the card to; the meal is recorded for this employee
+        private String employeeId;
+        private String mealCategoryId;
+        // When the tap happened on the kiosk
+        private LocalDateTime recordedAt;
+        private List<RecordMealWithItemsRequest.SelectedMealItem> selectedItems;
+    }
+}
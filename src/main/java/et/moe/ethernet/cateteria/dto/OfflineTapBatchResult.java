@@ -0,0 +1,45 @@
+package et.moe.ethernet.cateteria.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OfflineTapBatchResult {
+
+    private int received;
+    private int accepted;
+    private int alreadyRecorded;
+    private int conflicts;
+    private int rejected;
+    private long durationMs;
+    private List<TapResult> results = new ArrayList<>();
+
+    public enum TapStatus {
+        // Recorded now
+        ACCEPTED,
+        // Recorded by an earlier upload of the same tap
+        ALREADY_RECORDED,
+        // The employee already has this meal type on that day
+        CONFLICT,
+        // Invalid tap (unknown card or category, bad items, bad timestamp)
+        REJECTED
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TapResult {
+        private String clientId;
+        private TapStatus status;
+        // The record created, the earlier upload, or the record it conflicts with
+        private String mealRecordId;
+        private String orderNumber;
+        private String message;
+    }
+}
@@ -0,0 +1,34 @@
+package et.moe.ethernet.cateteria.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PrintJob {
+
+    private String id;
+    private String printer;
+    // Raw printer bytes, stored base64-encoded in the spool file
+    private byte[] payload;
+    private Status status;
+    private int attempts;
+    private String lastError;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime nextAttemptAt;
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+
+    public enum Status {
+        QUEUED, PRINTING, RETRYING, DONE, FAILED
+    }
+}
@@ -0,0 +1,41 @@
+package et.moe.ethernet.cateteria.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportJob {
+
+    private String id;
+    private ReportJobRequest spec;
+    private Status status;
+    // 0-100; meal record exports advance per exported chunk
+    private int progress;
+    private String error;
+    private String fileName;
+    private String contentType;
+    private long resultBytes;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private LocalDateTime expiresAt;
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    public enum Type {
+        SUMMARY, DEPARTMENT_ANALYSIS, CATEGORY_USAGE, MEAL_RECORDS
+    }
+}
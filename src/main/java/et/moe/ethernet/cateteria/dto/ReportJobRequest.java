@@ -0,0 +1,25 @@
+package et.moe.ethernet.cateteria.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportJobRequest {
+
+    @NotNull(message = "Report type is required")
+    private ReportJob.Type type;
+
+    // daily, weekly, monthly or yearly (default monthly); for SUMMARY, DEPARTMENT_ANALYSIS and CATEGORY_USAGE
+    private String period;
+
+    // Time range [start, end) and optional department filter; for MEAL_RECORDS
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private String department;
+}
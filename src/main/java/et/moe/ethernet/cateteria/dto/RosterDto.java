@@ -0,0 +1,45 @@
+package et.moe.ethernet.cateteria.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Employee roster for kiosks. A full roster lists every active employee with a card or short
+ * code; a delta lists the employees changed since the kiosk's version and the ids to drop.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RosterDto {
+    
+    // Changes only when the change log is recreated; a kiosk holding another epoch must take a full roster
+    private long epoch;
+    private long version;
+    private boolean full;
+    private LocalDateTime generatedAt;
+    private List<RosterEmployee> employees;
+    
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<String> removed;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RosterEmployee {
+        private String id;
+        private String employeeId;
+        private String cardId;
+        private String shortCode;
+        private String name;
+        private String department;
+        private boolean eligibleForSupport;
+        private String photoUrl;
+        // Changes when the photo changes, so kiosks only download photos they do not have
+        private String photoHash;
+    }
+}
@@ -50,7 +50,12 @@ public class Employee {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
-    @OneToMany(mappedBy = "employee", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    // Set when the employee is deleted; the row and its meal history are kept for payroll
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+    
+    // No cascade: meal records are payroll history and are only removed by an explicit chunked purge
+    @OneToMany(mappedBy = "employee", fetch = FetchType.LAZY)
     private List<MealRecord> mealRecords;
     
     @PrePersist
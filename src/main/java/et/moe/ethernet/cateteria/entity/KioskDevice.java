@@ -0,0 +1,58 @@
+package et.moe.ethernet.cateteria.entity;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A registered kiosk. Requests from the kiosk are signed with its secret and attributed to its
+ * operator user.
+ */
+@Entity
+@Table(name = "kiosk_devices")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KioskDevice {
+    
+    // Chosen at registration and sent by the kiosk as X-Kiosk-Id
+    @Id
+    @Column(length = 64)
+    private String id;
+    
+    @Column(nullable = false)
+    private String name;
+    
+    // Base64 HMAC-SHA256 key; the server needs the plain value to verify signatures
+    @Column(nullable = false, length = 64)
+    private String secret;
+    
+    @ManyToOne(fetch = FetchType.EAGER)
+    @JoinColumn(name = "operator_user_id", nullable = false)
+    private User operatorUser;
+    
+    @JsonProperty("isActive")
+    @Column(name = "is_active", nullable = false)
+    private boolean isActive = true;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -73,6 +73,14 @@ public class MealRecord {
     @Column(name = "order_number", unique = true)
     private String orderNumber;
     
+    // Id the kiosk gave a tap recorded offline; makes re-uploading the same tap harmless
+    @Column(name = "client_tap_id", unique = true, length = 100)
+    private String clientTapId;
+    
+    // Kiosk device that signed the tap; null for taps recorded by staff logins
+    @Column(name = "kiosk_device_id", length = 64)
+    private String kioskDeviceId;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,69 @@
+package et.moe.ethernet.cateteria.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Receipt data of a meal record captured when it was recorded (JSON of the record with its items).
+ * Reprints render from this row instead of reloading the record, employee and catalog.
+ *
+ * <p>The id is assigned (it is the meal record's), so the entity tells Spring Data itself whether
+ * it is new. Otherwise saving a new receipt would go through merge and select it first.
+ */
+@Entity
+@Table(name = "meal_record_receipts")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MealRecordReceipt implements Persistable<String> {
+    
+    @Id
+    @Column(name = "meal_record_id", length = 36)
+    private String mealRecordId;
+    
+    @Lob
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    // True until the receipt is persisted or loaded
+    @Transient
+    private boolean isNew = true;
+    
+    @Override
+    public String getId() {
+        return mealRecordId;
+    }
+    
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+    
+    @PostPersist
+    @PostLoad
+    protected void markNotNew() {
+        isNew = false;
+    }
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -7,6 +7,7 @@ import lombok.AllArgsConstructor;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonValue;
@@ -55,6 +56,11 @@ public class User implements UserDetails {
     @Column(name = "last_login")
     private LocalDateTime lastLogin;
     
+    // Refresh tokens carry the generation they were issued for; logout bumps it to revoke them
+    @JsonIgnore
+    @Column(name = "token_generation", nullable = false)
+    private long tokenGeneration;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -4,10 +4,14 @@ import et.moe.ethernet.cateteria.entity.Employee;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -43,4 +47,21 @@ public interface EmployeeRepository extends JpaRepository<Employee, String> {
 
     Optional<Employee> findByCardIdOrShortCode(String cardId, String shortCode);
     Optional<Employee> findByCardIdOrShortCodeAndIsActiveTrue(String cardId, String shortCode);
+    
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Employee e SET e.isActive = false, e.cardId = NULL, e.shortCode = NULL, e.deletedAt = :now, e.updatedAt = :now " +
+           "WHERE e.id = :id AND e.deletedAt IS NULL")
+    int softDeleteById(@Param("id") String id, @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("DELETE FROM Employee e WHERE e.id = :id AND e.deletedAt IS NOT NULL")
+    int purgeById(@Param("id") String id);
+    
+    // Locks a soft-deleted employee's row for the rest of the transaction, so an import cannot restore it meanwhile
+    @Query(value = "SELECT id FROM employees WHERE id = :id AND deleted_at IS NOT NULL FOR UPDATE", nativeQuery = true)
+    Optional<String> lockDeletedById(@Param("id") String id);
+    
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Employee e SET e.isActive = :active, e.updatedAt = :now WHERE e.id IN :ids AND e.isActive <> :active AND e.deletedAt IS NULL")
+    int updateActiveByIds(@Param("ids") Collection<String> ids, @Param("active") boolean active, @Param("now") LocalDateTime now);
 } 
\ No newline at end of file
@@ -0,0 +1,13 @@
+package et.moe.ethernet.cateteria.repository;
+
+import et.moe.ethernet.cateteria.entity.KioskDevice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface KioskDeviceRepository extends JpaRepository<KioskDevice, String> {
+    
+    List<KioskDevice> findAllByOrderByIdAsc();
+}
@@ -2,22 +2,35 @@ package et.moe.ethernet.cateteria.repository;
 
 import et.moe.ethernet.cateteria.entity.MealCategory;
 import et.moe.ethernet.cateteria.entity.MealType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface MealCategoryRepository extends JpaRepository<MealCategory, String> {
     
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<MealCategory> findByIsActiveTrue();
     
     List<MealCategory> findByMealTypeAndIsActiveTrue(MealType mealType);
     
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<MealCategory> findByMealTypeIdAndIsActiveTrue(String mealTypeId);
     
     Optional<MealCategory> findByIdAndIsActiveTrue(String id);
     
     boolean existsByMealTypeAndCategory(MealType mealType, MealCategory.MealCategoryType category);
+    
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE MealCategory mc SET mc.isActive = :active, mc.updatedAt = :now WHERE mc.id IN :ids AND mc.isActive <> :active")
+    int updateActiveByIds(@Param("ids") Collection<String> ids, @Param("active") boolean active, @Param("now") LocalDateTime now);
 } 
\ No newline at end of file
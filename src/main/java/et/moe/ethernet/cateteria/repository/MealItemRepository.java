@@ -1,17 +1,26 @@
 package et.moe.ethernet.cateteria.repository;
 
 import et.moe.ethernet.cateteria.entity.MealItem;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface MealItemRepository extends JpaRepository<MealItem, String> {
     
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<MealItem> findByIsActiveTrue();
     
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<MealItem> findByMealCategoryIdAndIsActiveTrue(String mealCategoryId);
     
     List<MealItem> findByMealCategoryId(String mealCategoryId);
@@ -19,4 +28,19 @@ public interface MealItemRepository extends JpaRepository<MealItem, String> {
     Optional<MealItem> findByIdAndIsActiveTrue(String id);
     
     boolean existsByNameAndMealCategoryId(String name, String mealCategoryId);
+    
+    @Query("SELECT mi.id FROM MealItem mi WHERE mi.mealCategory.id = :mealCategoryId")
+    List<String> findIdsByMealCategoryId(@Param("mealCategoryId") String mealCategoryId);
+    
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE MealItem mi SET mi.isActive = :active, mi.updatedAt = :now WHERE mi.id IN :ids AND mi.isActive <> :active")
+    int updateActiveByIds(@Param("ids") Collection<String> ids, @Param("active") boolean active, @Param("now") LocalDateTime now);
+    
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE MealItem mi SET mi.isActive = :active, mi.updatedAt = :now WHERE mi.mealCategory.id = :mealCategoryId AND mi.isActive <> :active")
+    int updateActiveByMealCategoryId(@Param("mealCategoryId") String mealCategoryId, @Param("active") boolean active, @Param("now") LocalDateTime now);
+    
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE MealItem mi SET mi.totalAvailable = :totalAvailable, mi.updatedAt = :now WHERE mi.mealCategory.id = :mealCategoryId")
+    int updateTotalAvailableByMealCategoryId(@Param("mealCategoryId") String mealCategoryId, @Param("totalAvailable") int totalAvailable, @Param("now") LocalDateTime now);
 } 
\ No newline at end of file
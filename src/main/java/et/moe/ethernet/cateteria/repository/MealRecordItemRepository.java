@@ -2,10 +2,12 @@ package et.moe.ethernet.cateteria.repository;
 
 import et.moe.ethernet.cateteria.entity.MealRecordItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -22,8 +24,21 @@ public interface MealRecordItemRepository extends JpaRepository<MealRecordItem,
     @Query("SELECT mri FROM MealRecordItem mri WHERE mri.mealRecord.id IN :mealRecordIds ORDER BY mri.mealRecord.id, mri.createdAt")
     List<MealRecordItem> findByMealRecordIds(@Param("mealRecordIds") List<String> mealRecordIds);
     
+    /**
+     * Total quantity of items already recorded on a meal record
+     */
+    @Query("SELECT COALESCE(SUM(mri.quantity), 0) FROM MealRecordItem mri WHERE mri.mealRecord.id = :mealRecordId")
+    long sumQuantityByMealRecordId(@Param("mealRecordId") String mealRecordId);
+    
     /**
      * Delete all meal record items for a specific meal record
      */
     void deleteByMealRecordId(String mealRecordId);
+    
+    /**
+     * Delete all meal record items for multiple meal records in one statement
+     */
+    @Modifying
+    @Query("DELETE FROM MealRecordItem mri WHERE mri.mealRecord.id IN :mealRecordIds")
+    int deleteByMealRecordIds(@Param("mealRecordIds") Collection<String> mealRecordIds);
 } 
\ No newline at end of file
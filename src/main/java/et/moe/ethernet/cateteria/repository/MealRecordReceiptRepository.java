@@ -0,0 +1,18 @@
+package et.moe.ethernet.cateteria.repository;
+
+import et.moe.ethernet.cateteria.entity.MealRecordReceipt;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+
+@Repository
+public interface MealRecordReceiptRepository extends JpaRepository<MealRecordReceipt, String> {
+    
+    @Modifying
+    @Query("DELETE FROM MealRecordReceipt r WHERE r.mealRecordId IN :mealRecordIds")
+    int deleteByMealRecordIds(@Param("mealRecordIds") Collection<String> mealRecordIds);
+}
@@ -1,13 +1,16 @@
 package et.moe.ethernet.cateteria.repository;
 
 import et.moe.ethernet.cateteria.entity.MealRecord;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -36,6 +39,18 @@ public interface MealRecordRepository extends JpaRepository<MealRecord, String>
     @Query("SELECT mr FROM MealRecord mr ORDER BY mr.recordedAt DESC")
     List<MealRecord> findAllOrderByRecordedAtDesc();
     
+    // Newest records with everything MealRecordDto reads, in one query
+    @Query("SELECT mr FROM MealRecord mr JOIN FETCH mr.employee JOIN FETCH mr.mealType LEFT JOIN FETCH mr.recordedByUser " +
+           "ORDER BY mr.recordedAt DESC")
+    List<MealRecord> findLatest(Pageable pageable);
+    
     @Query("SELECT mr FROM MealRecord mr WHERE mr.employee.employeeId = ?1 ORDER BY mr.recordedAt DESC")
     List<MealRecord> findByEmployeeIdOrderByRecordedAtDesc(String employeeId);
+    
+    @Query("SELECT mr.id FROM MealRecord mr WHERE mr.employee.id = ?1")
+    List<String> findIdsByEmployee(String employeeUuid, Pageable pageable);
+    
+    @Modifying
+    @Query("DELETE FROM MealRecord mr WHERE mr.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<String> ids);
 } 
\ No newline at end of file
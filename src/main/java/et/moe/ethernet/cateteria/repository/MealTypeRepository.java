@@ -1,18 +1,30 @@
 package et.moe.ethernet.cateteria.repository;
 
 import et.moe.ethernet.cateteria.entity.MealType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface MealTypeRepository extends JpaRepository<MealType, String> {
     
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<MealType> findByIsActiveTrue();
     
     Optional<MealType> findByIdAndIsActiveTrue(String id);
     
     boolean existsByIdAndIsActiveTrue(String id);
+    
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE MealType mt SET mt.isActive = :active, mt.updatedAt = :now WHERE mt.id IN :ids AND mt.isActive <> :active")
+    int updateActiveByIds(@Param("ids") Collection<String> ids, @Param("active") boolean active, @Param("now") LocalDateTime now);
 } 
\ No newline at end of file
@@ -1,15 +1,22 @@
 package et.moe.ethernet.cateteria.repository;
 
 import et.moe.ethernet.cateteria.entity.SupportConfig;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface SupportConfigRepository extends JpaRepository<SupportConfig, String> {
     
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<SupportConfig> findByIsActiveTrue();
     
     Optional<SupportConfig> findFirstByOrderByCreatedAtDesc();
+    
+    // Configs are deactivated, never deleted, when replaced, so this is their history
+    List<SupportConfig> findAllByOrderByCreatedAtAsc();
 } 
\ No newline at end of file
@@ -2,6 +2,9 @@ package et.moe.ethernet.cateteria.repository;
 
 import et.moe.ethernet.cateteria.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -18,4 +21,8 @@ public interface UserRepository extends JpaRepository<User, String> {
     boolean existsByEmail(String email);
     
     Optional<User> findByUsernameAndIsActiveTrue(String username);
+    
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE User u SET u.tokenGeneration = u.tokenGeneration + 1 WHERE u.username = :username")
+    int incrementTokenGeneration(@Param("username") String username);
 } 
\ No newline at end of file
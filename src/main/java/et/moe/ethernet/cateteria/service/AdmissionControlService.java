@@ -0,0 +1,314 @@
+package et.moe.ethernet.cateteria.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Splits requests into lanes so a burst of one kind cannot starve another. Each lane has its own
+ * concurrency limit and a bounded FIFO queue; a request that finds the queue full, or waits longer
+ * than the lane's timeout, is rejected right away instead of holding a request thread.
+ *
+ * <p>Taps have a lane of their own (with a dedicated connection pool, see
+ * {@code DataSourceConfig}), and each kiosk may only hold a few tap slots at once so one kiosk
+ * retrying in a loop cannot crowd out the others. Reports get a small lane; everything else shares
+ * the default lane. A request that only waits for another request's work (e.g. a coalesced report)
+ * can give its slot back early with {@link #releaseCurrent()}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AdmissionControlService {
+
+    public enum Lane { TAP, REPORT, DEFAULT }
+
+    public enum Outcome { ADMITTED, QUEUE_FULL, TIMED_OUT, KIOSK_LIMIT }
+
+    // Paths without the context path; the live feed does no database work and must not wait in a lane
+    private static final List<String> EXEMPT_PATHS = List.of(
+        "/admission/**", "/api/uploads/**", "/swagger-ui/**", "/swagger-ui.html", "/api-docs/**", "/v3/api-docs/**",
+        "/meal-records/live");
+
+    private static final List<String> TAP_PATHS = List.of(
+        "/employees/by-card/*", "/employees/by-code/*",
+        "/employees/roster", "/employees/roster/changes",
+        "/menu", "/menu/version", "/menu/stock",
+        "/meal-records/record", "/meal-records/record-with-items",
+        "/meal-records/check-duplicate", "/meal-records/*/receipt",
+        "/api/print/**");
+
+    private static final List<String> REPORT_PATHS = List.of(
+        "/support-reports/**",
+        "/meal-records/date-range", "/meal-records/department/**", "/meal-records/employee/**",
+        "/employees/*/usage-stats", "/employees/*/meal-records");
+
+    private final Map<String, HikariDataSource> connectionPools;
+    private final ReplicaHeartbeatService replicaHeartbeatService;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Value("${cafeteria.admission.tap.max-concurrent:80}")
+    private int tapMaxConcurrent;
+
+    @Value("${cafeteria.admission.tap.max-queued:40}")
+    private int tapMaxQueued;
+
+    @Value("${cafeteria.admission.tap.queue-timeout-ms:2000}")
+    private long tapQueueTimeoutMs;
+
+    @Value("${cafeteria.admission.tap.per-kiosk-max-concurrent:4}")
+    private int perKioskMaxConcurrent;
+
+    @Value("${cafeteria.admission.report.max-concurrent:4}")
+    private int reportMaxConcurrent;
+
+    @Value("${cafeteria.admission.report.max-queued:16}")
+    private int reportMaxQueued;
+
+    @Value("${cafeteria.admission.report.queue-timeout-ms:10000}")
+    private long reportQueueTimeoutMs;
+
+    @Value("${cafeteria.admission.default.max-concurrent:20}")
+    private int defaultMaxConcurrent;
+
+    @Value("${cafeteria.admission.default.max-queued:40}")
+    private int defaultMaxQueued;
+
+    @Value("${cafeteria.admission.default.queue-timeout-ms:3000}")
+    private long defaultQueueTimeoutMs;
+
+    @Value("${server.tomcat.threads.max:200}")
+    private int requestThreads;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+
+    // The slot held by the request on this thread, from admit to release
+    private static final ThreadLocal<Admission> CURRENT = new ThreadLocal<>();
+
+    private static final class Admission {
+        final Lane lane;
+        final String kioskId;
+        boolean released;
+
+        Admission(Lane lane, String kioskId) {
+            this.lane = lane;
+            this.kioskId = kioskId;
+        }
+    }
+
+    // Tap slots currently held per kiosk device
+    private final Map<String, AtomicInteger> kioskInFlight = new ConcurrentHashMap<>();
+    private final LongAdder kioskLimitRejections = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        lanes.put(Lane.TAP, new LaneState(tapMaxConcurrent, tapMaxQueued, tapQueueTimeoutMs));
+        lanes.put(Lane.REPORT, new LaneState(reportMaxConcurrent, reportMaxQueued, reportQueueTimeoutMs));
+        lanes.put(Lane.DEFAULT, new LaneState(defaultMaxConcurrent, defaultMaxQueued, defaultQueueTimeoutMs));
+
+        // Queued requests hold a request thread too; without room left over, taps would wait for a thread
+        int nonTapThreads = reportMaxConcurrent + reportMaxQueued + defaultMaxConcurrent + defaultMaxQueued;
+        if (!virtualThreads && nonTapThreads >= requestThreads) {
+            log.warn("Report and default lanes can hold {} of {} request threads; taps have no reserved threads",
+                nonTapThreads, requestThreads);
+        }
+    }
+
+    /**
+     * The lane of a request path (without the context path), or null if the path is not limited.
+     */
+    public Lane classify(String path) {
+        if (matchesAny(EXEMPT_PATHS, path)) {
+            return null;
+        }
+        if (matchesAny(TAP_PATHS, path)) {
+            return Lane.TAP;
+        }
+        if (matchesAny(REPORT_PATHS, path)) {
+            return Lane.REPORT;
+        }
+        return Lane.DEFAULT;
+    }
+
+    /**
+     * Waits for a slot in the lane. Every {@link Outcome#ADMITTED} must be followed by
+     * {@link #release(Lane, String)} with the same arguments.
+     *
+     * @param kioskId the signing kiosk for tap requests, or null for staff requests
+     */
+    public Outcome admit(Lane lane, String kioskId) throws InterruptedException {
+        if (lane == Lane.TAP && kioskId != null) {
+            AtomicInteger inFlight = kioskInFlight.computeIfAbsent(kioskId, id -> new AtomicInteger());
+            if (inFlight.incrementAndGet() > perKioskMaxConcurrent) {
+                inFlight.decrementAndGet();
+                kioskLimitRejections.increment();
+                return Outcome.KIOSK_LIMIT;
+            }
+        }
+        Outcome outcome = lanes.get(lane).acquire();
+        if (outcome != Outcome.ADMITTED && lane == Lane.TAP && kioskId != null) {
+            kioskInFlight.get(kioskId).decrementAndGet();
+        }
+        if (outcome == Outcome.ADMITTED) {
+            CURRENT.set(new Admission(lane, kioskId));
+        }
+        return outcome;
+    }
+
+    /**
+     * Frees the slot taken by {@link #admit}, on the thread that was admitted. Does nothing more if
+     * the slot was already given back with {@link #releaseCurrent()}.
+     */
+    public void release(Lane lane, String kioskId) {
+        Admission admission = CURRENT.get();
+        CURRENT.remove();
+        if (admission != null && admission.released) {
+            return;
+        }
+        freeSlot(lane, kioskId);
+    }
+
+    /**
+     * Gives back the slot of the request on this thread before it finishes, for a request that
+     * from now on only waits for work done elsewhere and holds no connection. Does nothing outside
+     * an admitted request.
+     */
+    public void releaseCurrent() {
+        Admission admission = CURRENT.get();
+        if (admission != null && !admission.released) {
+            admission.released = true;
+            freeSlot(admission.lane, admission.kioskId);
+        }
+    }
+
+    private void freeSlot(Lane lane, String kioskId) {
+        lanes.get(lane).permits.release();
+        if (lane == Lane.TAP && kioskId != null) {
+            kioskInFlight.get(kioskId).decrementAndGet();
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> laneStats = new LinkedHashMap<>();
+        lanes.forEach((lane, state) -> {
+            Map<String, Object> stats = state.statistics();
+            if (lane == Lane.TAP) {
+                stats.put("rejectedKioskLimit", kioskLimitRejections.sum());
+            }
+            laneStats.put(lane.name(), stats);
+        });
+
+        Map<String, Object> poolStats = new LinkedHashMap<>();
+        connectionPools.values().forEach(dataSource -> poolStats.put(dataSource.getPoolName(), poolStatistics(dataSource)));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("lanes", laneStats);
+        result.put("connectionPools", poolStats);
+        if (replicaHeartbeatService.isReplicaConfigured()) {
+            result.put("replica", Map.of(
+                "usable", replicaHeartbeatService.isReplicaUsable(),
+                "lagMs", replicaHeartbeatService.getLastLagMs()));
+        }
+        return result;
+    }
+
+    private static Map<String, Object> poolStatistics(HikariDataSource dataSource) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maximumPoolSize", dataSource.getMaximumPoolSize());
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool != null) {
+            stats.put("active", pool.getActiveConnections());
+            stats.put("idle", pool.getIdleConnections());
+            stats.put("threadsAwaitingConnection", pool.getThreadsAwaitingConnection());
+        }
+        return stats;
+    }
+
+    private boolean matchesAny(List<String> patterns, String path) {
+        for (String pattern : patterns) {
+            if (pathMatcher.match(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class LaneState {
+        private final int maxConcurrent;
+        private final int maxQueued;
+        private final long queueTimeoutMs;
+        // Fair, so queued requests are admitted in arrival order
+        private final Semaphore permits;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder rejectedQueueFull = new LongAdder();
+        private final LongAdder rejectedTimeout = new LongAdder();
+        private final LongAdder queueWaitNanos = new LongAdder();
+
+        LaneState(int maxConcurrent, int maxQueued, long queueTimeoutMs) {
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueued = maxQueued;
+            this.queueTimeoutMs = queueTimeoutMs;
+            this.permits = new Semaphore(maxConcurrent, true);
+        }
+
+        Outcome acquire() throws InterruptedException {
+            // The timed tryAcquire honours fairness; the untimed one would jump the queue
+            if (permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                admitted.increment();
+                return Outcome.ADMITTED;
+            }
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                rejectedQueueFull.increment();
+                return Outcome.QUEUE_FULL;
+            }
+            long start = System.nanoTime();
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS);
+            } finally {
+                queued.decrementAndGet();
+            }
+            if (!acquired) {
+                rejectedTimeout.increment();
+                return Outcome.TIMED_OUT;
+            }
+            queueWaitNanos.add(System.nanoTime() - start);
+            admitted.increment();
+            return Outcome.ADMITTED;
+        }
+
+        Map<String, Object> statistics() {
+            long admittedCount = admitted.sum();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("maxConcurrent", maxConcurrent);
+            stats.put("active", maxConcurrent - permits.availablePermits());
+            stats.put("maxQueued", maxQueued);
+            stats.put("queued", queued.get());
+            stats.put("admitted", admittedCount);
+            stats.put("rejectedQueueFull", rejectedQueueFull.sum());
+            stats.put("rejectedTimeout", rejectedTimeout.sum());
+            stats.put("averageQueueWaitMs", admittedCount == 0 ? 0.0 : queueWaitNanos.sum() / 1_000_000.0 / admittedCount);
+            return stats;
+        }
+    }
+}
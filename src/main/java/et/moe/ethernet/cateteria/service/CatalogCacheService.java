@@ -0,0 +1,108 @@
+package et.moe.ethernet.cateteria.service;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import et.moe.ethernet.cateteria.config.CacheConfig;
+import et.moe.ethernet.cateteria.entity.MealCategory;
+import et.moe.ethernet.cateteria.entity.MealItem;
+import et.moe.ethernet.cateteria.entity.MealType;
+import et.moe.ethernet.cateteria.entity.SupportConfig;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inspection and manual invalidation of the catalog caches. Hibernate keeps the second-level
+ * cache consistent for writes made through JPA (including bulk JPQL updates); {@link #evictCatalog()}
+ * is for data changed outside the application, e.g. by the SQL scripts in the repository root.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogCacheService {
+
+    private static final List<Class<?>> CATALOG_ENTITIES = List.of(
+        MealType.class, MealCategory.class, MealItem.class, SupportConfig.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final CacheManager cacheManager;
+    private final MenuSnapshotService menuSnapshotService;
+
+    public void evictCatalog() {
+        org.hibernate.Cache cache = sessionFactory().getCache();
+        CATALOG_ENTITIES.forEach(cache::evictEntityData);
+        cache.evictQueryRegions();
+        menuSnapshotService.catalogChanged();
+        log.info("Catalog second-level cache evicted");
+    }
+
+    /**
+     * Drops cached meal items whose rows were updated with plain JDBC (stock flushes).
+     */
+    public void evictMealItems(Collection<String> ids) {
+        org.hibernate.Cache cache = sessionFactory().getCache();
+        ids.forEach(id -> cache.evictEntityData(MealItem.class, id));
+    }
+
+    public Map<String, Object> getStatistics() {
+        Statistics statistics = sessionFactory().getStatistics();
+
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (Class<?> entity : CATALOG_ENTITIES) {
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(entity.getName());
+            if (region != null) {
+                regions.put(entity.getSimpleName(), regionStats(region.getHitCount(), region.getMissCount(),
+                    region.getPutCount(), region.getElementCountInMemory()));
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("secondLevelCacheEnabled", sessionFactory().getSessionFactoryOptions().isSecondLevelCacheEnabled());
+        // Counters stay at zero unless cafeteria.cache.statistics is on
+        result.put("statisticsEnabled", statistics.isStatisticsEnabled());
+        result.put("entityRegions", regions);
+        result.put("queryCache", regionStats(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+            statistics.getQueryCachePutCount(), -1));
+        result.put(CacheConfig.EMPLOYEES_BY_CARD, employeeCacheStats());
+        return result;
+    }
+
+    private Map<String, Object> employeeCacheStats() {
+        Cache cache = cacheManager.getCache(CacheConfig.EMPLOYEES_BY_CARD);
+        if (cache == null || !(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> caffeine)) {
+            return Map.of();
+        }
+        CacheStats stats = caffeine.stats();
+        // Spring populates the cache with put(), which Caffeine does not count
+        return regionStats(stats.hitCount(), stats.missCount(), -1, caffeine.estimatedSize());
+    }
+
+    private static Map<String, Object> regionStats(long hits, long misses, long puts, long size) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        if (puts >= 0) {
+            stats.put("puts", puts);
+        }
+        if (size >= 0) {
+            stats.put("size", size);
+        }
+        long lookups = hits + misses;
+        stats.put("hitRatio", lookups == 0 ? 0.0 : (double) hits / lookups);
+        return stats;
+    }
+
+    private SessionFactory sessionFactory() {
+        return entityManagerFactory.unwrap(SessionFactory.class);
+    }
+}
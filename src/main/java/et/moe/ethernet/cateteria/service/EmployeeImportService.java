@@ -0,0 +1,465 @@
+package et.moe.ethernet.cateteria.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import et.moe.ethernet.cateteria.config.CacheConfig;
+import et.moe.ethernet.cateteria.dto.EmployeeImportResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.BatchUpdateException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Bulk employee import. Rows are streamed from CSV or a JSON array, validated in memory against
+ * the employee/card/short-code keys loaded once up front, and written with JDBC batch statements.
+ * Rows are upserted by employeeId; a rejected row is reported and does not stop the import.
+ *
+ * <p>Each JDBC batch is committed in its own transaction, so a database error only affects the
+ * rows of its batch. Rows the database refuses (e.g. a card ID taken by a concurrent edit) are
+ * picked out from the batch's update counts and reported like validation errors; the rest of the
+ * batch is written again without them. If the file turns out to be malformed halfway, the batches
+ * committed before stay.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmployeeImportService {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_SQL =
+        "INSERT INTO employees (id, employee_id, card_id, short_code, name, department, salary, photo_url, " +
+        "is_active, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_SQL =
+        "UPDATE employees SET card_id = ?, short_code = ?, name = ?, department = ?, salary = ?, photo_url = ?, " +
+        "is_active = ?, updated_at = ?, deleted_at = NULL WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final EmployeeRosterService employeeRosterService;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheManager cacheManager;
+
+    public enum ImportFormat {
+        CSV, JSON
+    }
+
+    public EmployeeImportResult importEmployees(InputStream input, ImportFormat format) throws IOException {
+        long started = System.currentTimeMillis();
+        ImportContext context = new ImportContext();
+        loadExistingKeys(context);
+
+        if (format == ImportFormat.JSON) {
+            readJson(input, context);
+        } else {
+            readCsv(input, context);
+        }
+        context.flush();
+
+        EmployeeImportResult result = context.result;
+        result.setFailed(result.getErrors().size());
+        result.setDurationMs(System.currentTimeMillis() - started);
+        log.info("Employee import finished: {} rows, {} inserted, {} updated, {} failed in {} ms",
+            result.getTotalRows(), result.getInserted(), result.getUpdated(), result.getFailed(), result.getDurationMs());
+        return result;
+    }
+
+    private void loadExistingKeys(ImportContext context) {
+        jdbcTemplate.query("SELECT id, employee_id, card_id, short_code FROM employees", rs -> {
+            ExistingKeys keys = new ExistingKeys(rs.getString("id"), rs.getString("card_id"), rs.getString("short_code"));
+            String employeeId = rs.getString("employee_id");
+            context.keysByEmployeeId.put(employeeId, keys);
+            if (keys.cardId != null) {
+                context.cardOwners.put(keys.cardId, employeeId);
+            }
+            if (keys.shortCode != null) {
+                context.shortCodeOwners.put(keys.shortCode, employeeId);
+            }
+        });
+    }
+
+    private void readCsv(InputStream input, ImportContext context) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            throw new RuntimeException("CSV file is empty");
+        }
+        if (headerLine.startsWith("\uFEFF")) {
+            headerLine = headerLine.substring(1);
+        }
+        List<String> headers = new ArrayList<>();
+        for (String header : parseCsvLine(headerLine)) {
+            headers.add(normalizeKey(header));
+        }
+        if (!headers.contains("employeeid")) {
+            throw new RuntimeException("CSV header must contain an employeeId column");
+        }
+
+        String line;
+        int row = 0;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            row++;
+            List<String> values = parseCsvLine(line);
+            Map<String, String> fields = new HashMap<>();
+            for (int i = 0; i < headers.size() && i < values.size(); i++) {
+                fields.put(headers.get(i), values.get(i));
+            }
+            processRow(row, fields, context);
+        }
+    }
+
+    private void readJson(InputStream input, ImportContext context) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new RuntimeException("Expected a JSON array of employees");
+            }
+            int row = 0;
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                row++;
+                JsonNode node = objectMapper.readTree(parser);
+                Map<String, String> fields = new HashMap<>();
+                node.fields().forEachRemaining(entry -> fields.put(
+                    normalizeKey(entry.getKey()),
+                    entry.getValue().isNull() ? null : entry.getValue().asText()));
+                processRow(row, fields, context);
+            }
+        }
+    }
+
+    private void processRow(int row, Map<String, String> fields, ImportContext context) {
+        context.result.setTotalRows(context.result.getTotalRows() + 1);
+
+        String employeeId = trimToNull(fields.get("employeeid"));
+        String cardId = trimToNull(fields.get("cardid"));
+        String shortCode = trimToNull(fields.get("shortcode"));
+        String name = trimToNull(fields.get("name"));
+        String department = trimToNull(fields.get("department"));
+        String photoUrl = trimToNull(fields.get("photourl"));
+
+        if (employeeId == null) {
+            context.reject(row, null, "Employee ID is required");
+            return;
+        }
+        if (employeeId.length() > 50) {
+            context.reject(row, employeeId, "Employee ID must be at most 50 characters");
+            return;
+        }
+        if (!context.seenEmployeeIds.add(employeeId)) {
+            context.reject(row, employeeId, "Employee ID appears more than once in this import");
+            return;
+        }
+        if (name == null) {
+            context.reject(row, employeeId, "Name is required");
+            return;
+        }
+        if (department == null || department.length() > 100) {
+            context.reject(row, employeeId, "Department is required and must be at most 100 characters");
+            return;
+        }
+        if (shortCode != null && shortCode.length() > 4) {
+            context.reject(row, employeeId, "Short code must be at most 4 characters");
+            return;
+        }
+
+        BigDecimal salary;
+        try {
+            String rawSalary = trimToNull(fields.get("salary"));
+            salary = rawSalary != null ? new BigDecimal(rawSalary) : null;
+        } catch (NumberFormatException e) {
+            context.reject(row, employeeId, "Invalid salary: " + fields.get("salary"));
+            return;
+        }
+        boolean active = parseActive(fields.containsKey("isactive") ? fields.get("isactive") : fields.get("active"));
+
+        String cardOwner = cardId != null ? context.cardOwners.get(cardId) : null;
+        if (cardOwner != null && !cardOwner.equals(employeeId)) {
+            context.reject(row, employeeId, "Card ID already assigned");
+            return;
+        }
+        String shortCodeOwner = shortCode != null ? context.shortCodeOwners.get(shortCode) : null;
+        if (shortCodeOwner != null && !shortCodeOwner.equals(employeeId)) {
+            context.reject(row, employeeId, "Short code already assigned");
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        ExistingKeys existing = context.keysByEmployeeId.get(employeeId);
+        PendingRow pending;
+        if (existing == null) {
+            String id = UUID.randomUUID().toString();
+            pending = new PendingRow(row, employeeId, new ExistingKeys(id, cardId, shortCode), null, new Object[]{
+                id, employeeId, cardId, shortCode, name, department, salary, photoUrl, active, now, now
+            });
+        } else {
+            pending = new PendingRow(row, employeeId, new ExistingKeys(existing.id, cardId, shortCode), existing, new Object[]{
+                cardId, shortCode, name, department, salary, photoUrl, active, now, existing.id
+            });
+        }
+        context.claimKeys(pending);
+        context.pending.add(pending);
+
+        if (context.pending.size() >= BATCH_SIZE) {
+            context.flush();
+        }
+    }
+
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inQuotes) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    inQuotes = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private static String normalizeKey(String key) {
+        return key.trim().replace("_", "").replace(" ", "").toLowerCase();
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static boolean parseActive(String value) {
+        String trimmed = trimToNull(value);
+        if (trimmed == null) {
+            return true;
+        }
+        return trimmed.equalsIgnoreCase("true") || trimmed.equals("1")
+            || trimmed.equalsIgnoreCase("yes") || trimmed.equalsIgnoreCase("active");
+    }
+
+    private static class ExistingKeys {
+        final String id;
+        final String cardId;
+        final String shortCode;
+
+        ExistingKeys(String id, String cardId, String shortCode) {
+            this.id = id;
+            this.cardId = cardId;
+            this.shortCode = shortCode;
+        }
+    }
+
+    // A validated row waiting for the next JDBC batch
+    private static class PendingRow {
+        final int row;
+        final String employeeId;
+        final ExistingKeys keys;
+        // The employee's keys before this row; null when the row inserts a new employee
+        final ExistingKeys previous;
+        final Object[] args;
+
+        PendingRow(int row, String employeeId, ExistingKeys keys, ExistingKeys previous, Object[] args) {
+            this.row = row;
+            this.employeeId = employeeId;
+            this.keys = keys;
+            this.previous = previous;
+            this.args = args;
+        }
+    }
+
+    // Rows of one batch statement the database refused, and why
+    private static class FailedRows extends RuntimeException {
+        final List<PendingRow> rows;
+        final int attempted;
+
+        FailedRows(List<PendingRow> statementRows, DataAccessException cause) {
+            super("Could not be saved: " + cause.getMostSpecificCause().getMessage(), cause);
+            this.rows = failedRows(statementRows, cause);
+            this.attempted = statementRows.size();
+        }
+
+        private static List<PendingRow> failedRows(List<PendingRow> statementRows, DataAccessException cause) {
+            BatchUpdateException batchException = null;
+            for (Throwable t = cause; t != null && batchException == null; t = t.getCause()) {
+                if (t instanceof BatchUpdateException e) {
+                    batchException = e;
+                }
+            }
+            List<PendingRow> failed = new ArrayList<>();
+            if (batchException == null || batchException.getUpdateCounts() == null) {
+                return failed;
+            }
+            int[] counts = batchException.getUpdateCounts();
+            for (int i = 0; i < counts.length && i < statementRows.size(); i++) {
+                if (counts[i] == Statement.EXECUTE_FAILED) {
+                    failed.add(statementRows.get(i));
+                }
+            }
+            // Drivers that stop at the first failure only report the statements before it
+            if (counts.length < statementRows.size()) {
+                failed.add(statementRows.get(counts.length));
+            }
+            return failed;
+        }
+    }
+
+    private class ImportContext {
+        final Map<String, ExistingKeys> keysByEmployeeId = new HashMap<>();
+        final Map<String, String> cardOwners = new HashMap<>();
+        final Map<String, String> shortCodeOwners = new HashMap<>();
+        final Set<String> seenEmployeeIds = new HashSet<>();
+        final List<PendingRow> pending = new ArrayList<>();
+        final EmployeeImportResult result = new EmployeeImportResult();
+
+        void reject(int row, String employeeId, String message) {
+            result.getErrors().add(new EmployeeImportResult.RowError(row, employeeId, message));
+        }
+
+        void claimKeys(PendingRow row) {
+            // Release the keys this employee held before so other rows may claim them
+            if (row.previous != null) {
+                releaseKeys(row.employeeId, row.previous);
+            }
+            keysByEmployeeId.put(row.employeeId, row.keys);
+            if (row.keys.cardId != null) {
+                cardOwners.put(row.keys.cardId, row.employeeId);
+            }
+            if (row.keys.shortCode != null) {
+                shortCodeOwners.put(row.keys.shortCode, row.employeeId);
+            }
+        }
+
+        // A row that was not written: the employee keeps the keys it had before
+        void fail(PendingRow row, String message) {
+            releaseKeys(row.employeeId, row.keys);
+            if (row.previous == null) {
+                keysByEmployeeId.remove(row.employeeId);
+            } else {
+                keysByEmployeeId.put(row.employeeId, row.previous);
+                if (row.previous.cardId != null) {
+                    cardOwners.put(row.previous.cardId, row.employeeId);
+                }
+                if (row.previous.shortCode != null) {
+                    shortCodeOwners.put(row.previous.shortCode, row.employeeId);
+                }
+            }
+            reject(row.row, row.employeeId, message);
+        }
+
+        private void releaseKeys(String employeeId, ExistingKeys keys) {
+            if (keys.cardId != null && employeeId.equals(cardOwners.get(keys.cardId))) {
+                cardOwners.remove(keys.cardId);
+            }
+            if (keys.shortCode != null && employeeId.equals(shortCodeOwners.get(keys.shortCode))) {
+                shortCodeOwners.remove(keys.shortCode);
+            }
+        }
+
+        void flush() {
+            List<PendingRow> batch = new ArrayList<>(pending);
+            pending.clear();
+            while (!batch.isEmpty()) {
+                try {
+                    write(batch);
+                    return;
+                } catch (FailedRows e) {
+                    if (e.rows.isEmpty() || (e.rows.size() == e.attempted && e.attempted > 1)) {
+                        // The driver did not tell which rows failed, so find them one row at a time
+                        batch.forEach(this::writeAlone);
+                        return;
+                    }
+                    for (PendingRow row : e.rows) {
+                        fail(row, e.getMessage());
+                    }
+                    batch.removeAll(e.rows);
+                } catch (RuntimeException e) {
+                    log.warn("Employee import batch of {} rows failed: {}", batch.size(), e.getMessage());
+                    for (PendingRow row : batch) {
+                        fail(row, "Could not be saved: " + e.getMessage());
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void writeAlone(PendingRow row) {
+            try {
+                write(List.of(row));
+            } catch (RuntimeException e) {
+                fail(row, e instanceof FailedRows ? e.getMessage() : "Could not be saved: " + e.getMessage());
+            }
+        }
+
+        private void write(List<PendingRow> batch) {
+            List<PendingRow> updates = batch.stream().filter(row -> row.previous != null).toList();
+            List<PendingRow> inserts = batch.stream().filter(row -> row.previous == null).toList();
+            transactionTemplate.executeWithoutResult(status -> {
+                // Updates go first so that keys released by an update are free before inserts claim them
+                batchUpdate(UPDATE_SQL, updates);
+                batchUpdate(INSERT_SQL, inserts);
+                // Both run after this batch commits
+                employeeRosterService.rosterChanged(batch.stream().map(row -> row.keys.id).toList());
+                Cache employeesByCard = cacheManager.getCache(CacheConfig.EMPLOYEES_BY_CARD);
+                if (employeesByCard != null) {
+                    employeesByCard.clear();
+                }
+            });
+            result.setInserted(result.getInserted() + inserts.size());
+            result.setUpdated(result.getUpdated() + updates.size());
+        }
+
+        private void batchUpdate(String sql, List<PendingRow> rows) {
+            if (rows.isEmpty()) {
+                return;
+            }
+            try {
+                jdbcTemplate.batchUpdate(sql, rows.stream().map(row -> row.args).toList());
+            } catch (DataAccessException e) {
+                throw new FailedRows(rows, e);
+            }
+        }
+    }
+}
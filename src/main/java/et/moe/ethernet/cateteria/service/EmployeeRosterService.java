@@ -0,0 +1,510 @@
+package et.moe.ethernet.cateteria.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import et.moe.ethernet.cateteria.dto.RosterDto;
+import et.moe.ethernet.cateteria.entity.Employee;
+import et.moe.ethernet.cateteria.entity.SupportConfig;
+import et.moe.ethernet.cateteria.repository.EmployeeRepository;
+import et.moe.ethernet.cateteria.repository.SupportConfigRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Versioned employee roster so kiosks can resolve cards locally. Employee writes report the ids
+ * they touched through {@link #rosterChanged(Collection)}; after commit only those employees are
+ * reloaded, and each one whose kiosk-visible data changed is appended to the change log table
+ * {@code employee_roster_changes}. Support configuration changes move every employee's
+ * eligibility and go through {@link #rosterChanged()}, which compares the whole roster. Kiosks
+ * fetch the full roster once and afterwards only the changes since their version.
+ *
+ * <p>Versions are the log's auto-increment keys, written after commit in commit order, so a kiosk
+ * never skips a change and versions carry on across restarts. The epoch is stored next to the log
+ * and only changes when the log starts out empty. Employees edited directly in the database are
+ * not logged until their next write through the API. Like the stock counters, the in-memory
+ * roster assumes a single backend instance.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmployeeRosterService {
+
+    private static final String UPLOADS_PATH = "/uploads/";
+
+    // Employees are reloaded by id in chunks so large imports stay within IN-list limits
+    private static final int LOAD_CHUNK_SIZE = 1000;
+
+    private static final String CREATE_LOG_SQL =
+        "CREATE TABLE IF NOT EXISTS employee_roster_changes (version BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+        "employee_id VARCHAR(36) NOT NULL, changed_at TIMESTAMP NOT NULL)";
+    private static final String CREATE_STATE_SQL =
+        "CREATE TABLE IF NOT EXISTS employee_roster_state (id INT PRIMARY KEY, epoch BIGINT NOT NULL)";
+    private static final String INSERT_CHANGE_SQL =
+        "INSERT INTO employee_roster_changes (employee_id, changed_at) VALUES (?, ?)";
+    private static final String SELECT_CHANGES_SQL =
+        "SELECT version, employee_id FROM employee_roster_changes WHERE version > ? ORDER BY version";
+    private static final String MAX_VERSION_SQL = "SELECT MAX(version) FROM employee_roster_changes";
+    private static final String PRUNE_SQL = "DELETE FROM employee_roster_changes WHERE version <= ?";
+    private static final String SELECT_EPOCH_SQL = "SELECT epoch FROM employee_roster_state WHERE id = 1";
+    private static final String DELETE_EPOCH_SQL = "DELETE FROM employee_roster_state WHERE id = 1";
+    private static final String INSERT_EPOCH_SQL = "INSERT INTO employee_roster_state (id, epoch) VALUES (1, ?)";
+    private static final String COUNT_SQL =
+        "SELECT COUNT(*) AS active, COALESCE(SUM(CASE WHEN salary < ? THEN 1 ELSE 0 END), 0) AS eligible " +
+        "FROM employees WHERE is_active = TRUE";
+
+    private final EmployeeRepository employeeRepository;
+    private final SupportConfigRepository supportConfigRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+
+    // Changes kept in the log; kiosks further behind take a full roster
+    @Value("${cafeteria.roster.max-change-log-entries:10000}")
+    private int maxChangeLogEntries;
+
+    private volatile Roster current;
+
+    // Counted over all active employees, including those without a card or code; dropped on every
+    // change and recounted on the next read
+    private volatile EmployeeCounts employeeCounts;
+    private volatile long countsGeneration;
+
+    // Serializes loading and updating the roster
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    // Photo content hashes by URL, recomputed when the file changes
+    private final Map<String, PhotoHash> photoHashes = new ConcurrentHashMap<>();
+
+    // Updates run after the writer's commit, when its transaction can no longer be joined
+    private TransactionTemplate newTransaction;
+
+    private record PhotoHash(long lastModified, long size, String hash) {
+    }
+
+    public record EmployeeCounts(int active, int eligibleForSupport) {
+    }
+
+    @PostConstruct
+    public void init() {
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        getRoster();
+    }
+
+    /**
+     * Called after a write that can change what kiosks see for the given employees (primary
+     * keys). Inside a transaction the update waits for the commit.
+     */
+    public void rosterChanged(Collection<String> employeeIds) {
+        if (employeeIds.isEmpty()) {
+            return;
+        }
+        List<String> ids = List.copyOf(new LinkedHashSet<>(employeeIds));
+        afterCommit(() -> update(ids));
+    }
+
+    /**
+     * Called after a write that can change what kiosks see for every employee (support config).
+     * The whole roster is reloaded and compared with the current one.
+     */
+    public void rosterChanged() {
+        afterCommit(this::rebuild);
+    }
+
+    public Roster getRoster() {
+        Roster roster = current;
+        if (roster != null) {
+            return roster;
+        }
+        rebuildLock.lock();
+        try {
+            return current != null ? current : load();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Active employees and how many of them are eligible for support.
+     */
+    public EmployeeCounts getEmployeeCounts() {
+        EmployeeCounts counts = employeeCounts;
+        if (counts == null) {
+            long generation = countsGeneration;
+            counts = jdbcTemplate.queryForObject(COUNT_SQL,
+                (rs, rowNum) -> new EmployeeCounts(rs.getInt("active"), rs.getInt("eligible")),
+                maxSalaryForSupport());
+            // Keep it only if no change arrived while counting
+            if (generation == countsGeneration) {
+                employeeCounts = counts;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Changes since the given version of this epoch, or the full roster if the kiosk holds another
+     * epoch or a version older than the retained change log.
+     */
+    public RosterDto getChangesSince(long sinceEpoch, long sinceVersion) {
+        Roster roster = getRoster();
+        if (sinceEpoch != roster.epoch || sinceVersion < roster.oldestRetainedVersion || sinceVersion > roster.version) {
+            return roster.toFullDto();
+        }
+
+        List<RosterDto.RosterEmployee> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (String id : roster.changes.tailMap(sinceVersion, false).values()) {
+            RosterDto.RosterEmployee entry = roster.entries.get(id);
+            if (entry != null) {
+                changed.add(entry);
+            } else {
+                removed.add(id);
+            }
+        }
+        return new RosterDto(roster.epoch, roster.version, false, LocalDateTime.now(), changed, removed);
+    }
+
+    /**
+     * Reloads every active employee and logs those whose roster entry differs from the current one.
+     */
+    public Roster rebuild() {
+        rebuildLock.lock();
+        try {
+            Roster roster = current;
+            if (roster == null) {
+                return load();
+            }
+            Roster updated = newTransaction.execute(status -> {
+                Map<String, RosterDto.RosterEmployee> entries = loadAllEntries(maxSalaryForSupport());
+                List<String> changedIds = new ArrayList<>();
+                entries.forEach((id, entry) -> {
+                    if (!entry.equals(roster.entries.get(id))) {
+                        changedIds.add(id);
+                    }
+                });
+                for (String id : roster.entries.keySet()) {
+                    if (!entries.containsKey(id)) {
+                        changedIds.add(id);
+                    }
+                }
+                return logChanges(roster, changedIds, entries);
+            });
+            return publish(updated);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Drops log rows no kiosk can be served from any more.
+     */
+    @Scheduled(fixedRate = 3_600_000)
+    public void pruneChangeLog() {
+        Roster roster = current;
+        if (roster == null || roster.version <= maxChangeLogEntries) {
+            return;
+        }
+        int deleted = jdbcTemplate.update(PRUNE_SQL, roster.version - maxChangeLogEntries);
+        if (deleted > 0) {
+            log.debug("Pruned {} employee roster changes", deleted);
+        }
+    }
+
+    private void update(List<String> employeeIds) {
+        rebuildLock.lock();
+        try {
+            Roster roster = current;
+            if (roster == null) {
+                // Loaded fresh, so it already contains this write
+                load();
+                return;
+            }
+            Roster updated = newTransaction.execute(status -> {
+                Map<String, RosterDto.RosterEmployee> entries = loadEntries(employeeIds, maxSalaryForSupport());
+                List<String> changedIds = new ArrayList<>();
+                for (String id : employeeIds) {
+                    if (!Objects.equals(entries.get(id), roster.entries.get(id))) {
+                        changedIds.add(id);
+                    }
+                }
+                return logChanges(roster, changedIds, entries);
+            });
+            publish(updated);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private Roster publish(Roster roster) {
+        countsGeneration++;
+        employeeCounts = null;
+        current = roster;
+        return roster;
+    }
+
+    // Startup: entries from the employees table, version, epoch and recent changes from the log
+    private Roster load() {
+        jdbcTemplate.execute(CREATE_LOG_SQL);
+        jdbcTemplate.execute(CREATE_STATE_SQL);
+        Roster roster = newTransaction.execute(status -> {
+            Long maxVersion = jdbcTemplate.queryForObject(MAX_VERSION_SQL, Long.class);
+            long version = maxVersion != null ? maxVersion : 0;
+            long epoch = loadEpoch(maxVersion == null);
+
+            NavigableMap<Long, String> changes = new TreeMap<>();
+            Map<String, Long> lastChange = new HashMap<>();
+            jdbcTemplate.query(SELECT_CHANGES_SQL, rs -> {
+                addChange(changes, lastChange, rs.getLong("version"), rs.getString("employee_id"));
+            }, Math.max(0, version - maxChangeLogEntries));
+            long oldestRetained = changes.isEmpty() ? version : changes.firstKey() - 1;
+
+            Map<String, RosterDto.RosterEmployee> entries = loadAllEntries(maxSalaryForSupport());
+            return new Roster(epoch, version, oldestRetained, entries, changes, lastChange);
+        });
+        log.info("Employee roster loaded: epoch {}, version {}, {} employees", roster.epoch, roster.version, roster.entries.size());
+        return publish(roster);
+    }
+
+    private long loadEpoch(boolean logEmpty) {
+        List<Long> stored = jdbcTemplate.queryForList(SELECT_EPOCH_SQL, Long.class);
+        if (!logEmpty && !stored.isEmpty()) {
+            return stored.get(0);
+        }
+        // A new or emptied log restarts the versions; kiosks holding the old ones take a full roster
+        long epoch = System.currentTimeMillis();
+        jdbcTemplate.update(DELETE_EPOCH_SQL);
+        jdbcTemplate.update(INSERT_EPOCH_SQL, epoch);
+        return epoch;
+    }
+
+    /**
+     * Appends the changed employees to the log and returns the roster that includes them.
+     * {@code reloaded} holds the current entries of (at least) the changed employees; a changed id
+     * without an entry is removed from the roster.
+     */
+    private Roster logChanges(Roster roster, List<String> changedIds, Map<String, RosterDto.RosterEmployee> reloaded) {
+        if (changedIds.isEmpty()) {
+            return roster;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batchArgs = new ArrayList<>(changedIds.size());
+        for (String id : changedIds) {
+            batchArgs.add(new Object[]{id, now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_CHANGE_SQL, batchArgs);
+
+        Map<String, RosterDto.RosterEmployee> entries = new LinkedHashMap<>(roster.entries);
+        NavigableMap<Long, String> changes = new TreeMap<>(roster.changes);
+        Map<String, Long> lastChange = new HashMap<>(roster.lastChange);
+        long[] version = {roster.version};
+        jdbcTemplate.query(SELECT_CHANGES_SQL, rs -> {
+            long logged = rs.getLong("version");
+            String id = rs.getString("employee_id");
+            RosterDto.RosterEmployee entry = reloaded.get(id);
+            if (entry != null) {
+                entries.put(id, entry);
+            } else {
+                entries.remove(id);
+            }
+            addChange(changes, lastChange, logged, id);
+            version[0] = logged;
+        }, roster.version);
+
+        long oldestRetained = roster.oldestRetainedVersion;
+        while (changes.size() > maxChangeLogEntries) {
+            Map.Entry<Long, String> oldest = changes.pollFirstEntry();
+            lastChange.remove(oldest.getValue());
+            oldestRetained = oldest.getKey();
+        }
+
+        log.debug("Employee roster version {}: {} employees changed", version[0], changedIds.size());
+        return new Roster(roster.epoch, version[0], oldestRetained, entries, changes, lastChange);
+    }
+
+    private static void addChange(NavigableMap<Long, String> changes, Map<String, Long> lastChange, long version, String id) {
+        Long superseded = lastChange.put(id, version);
+        if (superseded != null) {
+            changes.remove(superseded);
+        }
+        changes.put(version, id);
+    }
+
+    private Map<String, RosterDto.RosterEmployee> loadAllEntries(BigDecimal maxSalaryForSupport) {
+        Map<String, RosterDto.RosterEmployee> entries = new LinkedHashMap<>();
+        for (Employee employee : employeeRepository.findByIsActiveTrue()) {
+            putEntry(entries, employee, maxSalaryForSupport);
+        }
+        return entries;
+    }
+
+    private Map<String, RosterDto.RosterEmployee> loadEntries(List<String> employeeIds, BigDecimal maxSalaryForSupport) {
+        Map<String, RosterDto.RosterEmployee> entries = new HashMap<>();
+        for (int from = 0; from < employeeIds.size(); from += LOAD_CHUNK_SIZE) {
+            List<String> chunk = employeeIds.subList(from, Math.min(from + LOAD_CHUNK_SIZE, employeeIds.size()));
+            for (Employee employee : employeeRepository.findAllById(chunk)) {
+                if (employee.isActive()) {
+                    putEntry(entries, employee, maxSalaryForSupport);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private void putEntry(Map<String, RosterDto.RosterEmployee> entries, Employee employee, BigDecimal maxSalaryForSupport) {
+        if (employee.getCardId() == null && employee.getShortCode() == null) {
+            return;
+        }
+        boolean eligibleForSupport = employee.getSalary() != null && employee.getSalary().compareTo(maxSalaryForSupport) < 0;
+        entries.put(employee.getId(), new RosterDto.RosterEmployee(
+            employee.getId(),
+            employee.getEmployeeId(),
+            employee.getCardId(),
+            employee.getShortCode(),
+            employee.getName(),
+            employee.getDepartment(),
+            eligibleForSupport,
+            employee.getPhotoUrl(),
+            photoHash(employee.getPhotoUrl())
+        ));
+    }
+
+    private BigDecimal maxSalaryForSupport() {
+        return supportConfigRepository.findByIsActiveTrue()
+            .orElse(new SupportConfig())
+            .getMaxSalaryForSupport();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private String photoHash(String photoUrl) {
+        if (photoUrl == null || photoUrl.isBlank()) {
+            return null;
+        }
+        int uploads = photoUrl.indexOf(UPLOADS_PATH);
+        if (uploads >= 0) {
+            Path file = Paths.get("uploads").resolve(photoUrl.substring(uploads + UPLOADS_PATH.length())).normalize();
+            try {
+                if (file.startsWith(Paths.get("uploads")) && Files.isRegularFile(file)) {
+                    long lastModified = Files.getLastModifiedTime(file).toMillis();
+                    long size = Files.size(file);
+                    PhotoHash cached = photoHashes.get(photoUrl);
+                    if (cached != null && cached.lastModified() == lastModified && cached.size() == size) {
+                        return cached.hash();
+                    }
+                    String hash = sha256Hex(Files.readAllBytes(file));
+                    photoHashes.put(photoUrl, new PhotoHash(lastModified, size, hash));
+                    return hash;
+                }
+            } catch (IOException e) {
+                log.debug("Could not hash photo {}", photoUrl, e);
+            }
+        }
+        // External or missing photo: the URL is all we know about it
+        return sha256Hex(photoUrl.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256Hex(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public class Roster {
+        private final long epoch;
+        private final long version;
+        private final long oldestRetainedVersion;
+        private final Map<String, RosterDto.RosterEmployee> entries;
+        private final NavigableMap<Long, String> changes;
+        private final Map<String, Long> lastChange;
+        private volatile byte[] fullBody;
+
+        Roster(long epoch, long version, long oldestRetainedVersion, Map<String, RosterDto.RosterEmployee> entries,
+               NavigableMap<Long, String> changes, Map<String, Long> lastChange) {
+            this.epoch = epoch;
+            this.version = version;
+            this.oldestRetainedVersion = oldestRetainedVersion;
+            this.entries = entries;
+            this.changes = changes;
+            this.lastChange = lastChange;
+        }
+
+        public long getEpoch() { return epoch; }
+        public long getVersion() { return version; }
+        public String getEtag() { return "\"" + epoch + "-" + version + "\""; }
+
+        RosterDto toFullDto() {
+            return new RosterDto(epoch, version, true, LocalDateTime.now(), new ArrayList<>(entries.values()), List.of());
+        }
+
+        /**
+         * The full roster serialized once per version.
+         */
+        public byte[] getFullBody() {
+            byte[] body = fullBody;
+            if (body == null) {
+                try {
+                    body = objectMapper.writeValueAsBytes(toFullDto());
+                } catch (JsonProcessingException e) {
+                    throw new RuntimeException("Failed to serialize employee roster", e);
+                }
+                fullBody = body;
+            }
+            return body;
+        }
+    }
+}
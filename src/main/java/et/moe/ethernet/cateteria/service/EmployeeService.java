@@ -1,36 +1,73 @@
 package et.moe.ethernet.cateteria.service;
 
+import et.moe.ethernet.cateteria.config.CacheConfig;
+import et.moe.ethernet.cateteria.config.ReplicaRead;
+import et.moe.ethernet.cateteria.dto.BulkCardAssignmentRequest;
+import et.moe.ethernet.cateteria.dto.BulkCardAssignmentResult;
 import et.moe.ethernet.cateteria.dto.EmployeeDto;
 import et.moe.ethernet.cateteria.dto.EmployeeUsageStatsDto;
 import et.moe.ethernet.cateteria.dto.MealRecordDto;
 import et.moe.ethernet.cateteria.entity.Employee;
 import et.moe.ethernet.cateteria.entity.SupportConfig;
 import et.moe.ethernet.cateteria.repository.EmployeeRepository;
+import et.moe.ethernet.cateteria.repository.MealRecordItemRepository;
+import et.moe.ethernet.cateteria.repository.MealRecordReceiptRepository;
 import et.moe.ethernet.cateteria.repository.MealRecordRepository;
 import et.moe.ethernet.cateteria.repository.SupportConfigRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class EmployeeService {
     
+    private static final String RESTORED_DURING_PURGE = "Employee was restored while being purged; purge stopped";
+    
     private final EmployeeRepository employeeRepository;
     private final SupportConfigRepository supportConfigRepository;
     private final MealRecordRepository mealRecordRepository;
+    private final MealRecordItemRepository mealRecordItemRepository;
+    private final MealRecordReceiptRepository mealRecordReceiptRepository;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EmployeeRosterService employeeRosterService;
+    private final MealRecordArchiveService mealRecordArchiveService;
+    
+    @Value("${cafeteria.purge.chunk-size:1000}")
+    private int purgeChunkSize;
     
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public List<EmployeeDto> getAllEmployees() {
         return employeeRepository.findByIsActiveTrue().stream()
             .map(employee -> EmployeeDto.fromEntity(employee, isEligibleForSupport(employee)))
             .collect(Collectors.toList());
     }
     
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public List<EmployeeDto> getEmployeesByDepartment(String department) {
         return employeeRepository.findByDepartmentAndIsActiveTrue(department).stream()
             .map(employee -> EmployeeDto.fromEntity(employee, isEligibleForSupport(employee)))
@@ -39,14 +76,17 @@ public class EmployeeService {
     
     public Optional<EmployeeDto> getEmployeeById(String id) {
         return employeeRepository.findById(id)
+            .filter(employee -> employee.getDeletedAt() == null)
             .map(employee -> EmployeeDto.fromEntity(employee, isEligibleForSupport(employee)));
     }
     
     public Optional<EmployeeDto> getEmployeeByEmployeeId(String employeeId) {
         return employeeRepository.findByEmployeeId(employeeId)
+            .filter(employee -> employee.getDeletedAt() == null)
             .map(employee -> EmployeeDto.fromEntity(employee, isEligibleForSupport(employee)));
     }
     
+    @Cacheable(value = CacheConfig.EMPLOYEES_BY_CARD, key = "#cardId", unless = "#result == null")
     public Optional<EmployeeDto> getEmployeeByCardId(String cardId) {
         return employeeRepository.findByCardIdOrShortCodeAndIsActiveTrue(cardId, cardId)
             .map(employee -> EmployeeDto.fromEntity(employee, isEligibleForSupport(employee)));
@@ -57,6 +97,7 @@ public class EmployeeService {
             .map(employee -> EmployeeDto.fromEntity(employee, isEligibleForSupport(employee)));
     }
     
+    @CacheEvict(value = CacheConfig.EMPLOYEES_BY_CARD, allEntries = true)
     public EmployeeDto createEmployee(Employee employee) {
         // Validate unique constraints
         if (employeeRepository.existsByEmployeeId(employee.getEmployeeId())) {
@@ -70,11 +111,14 @@ public class EmployeeService {
         }
         
         Employee savedEmployee = employeeRepository.save(employee);
+        employeeRosterService.rosterChanged(List.of(savedEmployee.getId()));
         return EmployeeDto.fromEntity(savedEmployee, isEligibleForSupport(savedEmployee));
     }
     
+    @CacheEvict(value = CacheConfig.EMPLOYEES_BY_CARD, allEntries = true)
     public Optional<EmployeeDto> updateEmployee(String id, Employee employeeUpdates) {
         return employeeRepository.findById(id)
+            .filter(employee -> employee.getDeletedAt() == null)
             .map(existingEmployee -> {
                 // Check for unique constraint violations
                 if (!existingEmployee.getEmployeeId().equals(employeeUpdates.getEmployeeId()) &&
@@ -102,26 +146,95 @@ public class EmployeeService {
                 existingEmployee.setActive(employeeUpdates.isActive());
                 
                 Employee savedEmployee = employeeRepository.save(existingEmployee);
+                employeeRosterService.rosterChanged(List.of(savedEmployee.getId()));
                 return EmployeeDto.fromEntity(savedEmployee, isEligibleForSupport(savedEmployee));
             });
     }
     
+    @CacheEvict(value = CacheConfig.EMPLOYEES_BY_CARD, allEntries = true)
     public boolean toggleEmployeeStatus(String id) {
         return employeeRepository.findById(id)
+            .filter(employee -> employee.getDeletedAt() == null)
             .map(employee -> {
                 employee.setActive(!employee.isActive());
                 employeeRepository.save(employee);
+                employeeRosterService.rosterChanged(List.of(employee.getId()));
                 return true;
             })
             .orElse(false);
     }
     
+    @Transactional
+    @CacheEvict(value = CacheConfig.EMPLOYEES_BY_CARD, allEntries = true)
+    public int setEmployeesActive(List<String> ids, boolean active) {
+        employeeRosterService.rosterChanged(ids);
+        return employeeRepository.updateActiveByIds(ids, active, LocalDateTime.now());
+    }
+    
+    /**
+     * Soft delete: deactivates the employee, releases the card and short code for reuse and stamps
+     * deletedAt. Meal records are untouched so payroll history survives.
+     */
+    @Transactional
+    @CacheEvict(value = CacheConfig.EMPLOYEES_BY_CARD, allEntries = true)
     public boolean deleteEmployee(String id) {
-        if (employeeRepository.existsById(id)) {
-            employeeRepository.deleteById(id);
-            return true;
+        employeeRosterService.rosterChanged(List.of(id));
+        return employeeRepository.softDeleteById(id, LocalDateTime.now()) > 0;
+    }
+    
+    /**
+     * Permanently removes a soft-deleted employee and their meal history. Records are deleted in
+     * bounded chunks, each in its own short transaction, using id projections and bulk deletes so
+     * no meal record entity is ever loaded and meal_records is never locked for long. Archived
+     * meal records are removed as well. Each chunk locks the employee row and checks that it is
+     * still deleted; if an import restored the employee meanwhile, the purge stops.
+     */
+    public Optional<PurgeResult> purgeEmployee(String id) {
+        Optional<Employee> employee = employeeRepository.findById(id);
+        if (employee.isEmpty()) {
+            return Optional.empty();
+        }
+        if (employee.get().getDeletedAt() == null) {
+            throw new RuntimeException("Employee must be deleted before it can be purged");
+        }
+        
+        int mealRecordsDeleted = 0;
+        int mealRecordItemsDeleted = 0;
+        while (true) {
+            int[] counts = transactionTemplate.execute(status -> {
+                requireStillDeleted(id);
+                List<String> recordIds = mealRecordRepository.findIdsByEmployee(id, PageRequest.of(0, purgeChunkSize));
+                if (recordIds.isEmpty()) {
+                    return null;
+                }
+                int items = mealRecordItemRepository.deleteByMealRecordIds(recordIds);
+                mealRecordReceiptRepository.deleteByMealRecordIds(recordIds);
+                int records = mealRecordRepository.deleteByIds(recordIds);
+                return new int[]{items, records};
+            });
+            if (counts == null) {
+                break;
+            }
+            mealRecordItemsDeleted += counts[0];
+            mealRecordsDeleted += counts[1];
+        }
+        // After meal_records, so records the archive job moved meanwhile are found there
+        int[] archived = mealRecordArchiveService.purgeEmployee(id, () -> requireStillDeleted(id));
+        mealRecordItemsDeleted += archived[0];
+        mealRecordsDeleted += archived[1];
+        transactionTemplate.executeWithoutResult(status -> {
+            if (employeeRepository.purgeById(id) == 0) {
+                throw new RuntimeException(RESTORED_DURING_PURGE);
+            }
+        });
+        log.info("Purged employee {}: {} meal records, {} meal record items", id, mealRecordsDeleted, mealRecordItemsDeleted);
+        return Optional.of(new PurgeResult(id, mealRecordsDeleted, mealRecordItemsDeleted));
+    }
+    
+    private void requireStillDeleted(String id) {
+        if (employeeRepository.lockDeletedById(id).isEmpty()) {
+            throw new RuntimeException(RESTORED_DURING_PURGE);
         }
-        return false;
     }
     
     public boolean isEligibleForSupport(Employee employee) {
@@ -135,6 +248,8 @@ public class EmployeeService {
         return employee.getSalary().compareTo(supportConfig.getMaxSalaryForSupport()) < 0;
     }
     
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public List<EmployeeDto> getEligibleEmployeesForSupport() {
         return employeeRepository.findByIsActiveTrue().stream()
             .filter(this::isEligibleForSupport)
@@ -142,14 +257,13 @@ public class EmployeeService {
             .collect(Collectors.toList());
     }
     
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public Optional<EmployeeUsageStatsDto> getEmployeeUsageStats(String employeeId) {
         return employeeRepository.findByEmployeeId(employeeId)
             .map(employee -> {
-                // Get all meal records for this employee
-                var mealRecordEntities = mealRecordRepository.findByEmployeeIdOrderByRecordedAtDesc(employeeId);
-                var mealRecords = mealRecordEntities.stream()
-                    .map(record -> et.moe.ethernet.cateteria.dto.MealRecordDto.fromEntity(record))
-                    .collect(Collectors.toList());
+                // Get all meal records for this employee, including archived ones
+                var mealRecords = findMealRecords(employeeId);
                 
                 int totalMeals = mealRecords.size();
                 BigDecimal totalAmount = mealRecords.stream()
@@ -195,16 +309,23 @@ public class EmployeeService {
             });
     }
     
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public Optional<List<MealRecordDto>> getEmployeeMealRecords(String employeeId) {
         return employeeRepository.findByEmployeeId(employeeId)
-            .map(employee -> {
-                var mealRecordEntities = mealRecordRepository.findByEmployeeIdOrderByRecordedAtDesc(employeeId);
-                return mealRecordEntities.stream()
-                    .map(record -> et.moe.ethernet.cateteria.dto.MealRecordDto.fromEntity(record))
-                    .collect(Collectors.toList());
-            });
+            .map(employee -> findMealRecords(employeeId));
+    }
+    
+    // Newest first: archived records are all older than those still in meal_records
+    private List<MealRecordDto> findMealRecords(String employeeId) {
+        List<MealRecordDto> mealRecords = mealRecordRepository.findByEmployeeIdOrderByRecordedAtDesc(employeeId).stream()
+            .map(MealRecordDto::fromEntity)
+            .collect(Collectors.toList());
+        mealRecords.addAll(mealRecordArchiveService.findMealRecordsByEmployee(employeeId));
+        return mealRecords;
     }
     
+    @CacheEvict(value = CacheConfig.EMPLOYEES_BY_CARD, allEntries = true)
     public Optional<EmployeeDto> assignCardToEmployee(String employeeId, String cardId, String shortCode) {
         // First, find the employee by the provided shortCode
         Optional<Employee> employeeByShortCode = employeeRepository.findByShortCodeAndIsActiveTrue(shortCode);
@@ -226,7 +347,137 @@ public class EmployeeService {
         // Update the employee's cardId
         employee.setCardId(cardId);
         Employee savedEmployee = employeeRepository.save(employee);
+        employeeRosterService.rosterChanged(List.of(savedEmployee.getId()));
         
         return Optional.of(EmployeeDto.fromEntity(savedEmployee, isEligibleForSupport(savedEmployee)));
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Assigns cards and short codes to many employees at once. Collisions are checked with a single
+     * query over every employee, card and short code in the request; if any assignment conflicts,
+     * nothing is written. Otherwise the affected keys are released and reassigned in one transaction,
+     * so cards may also be swapped between employees in the same request.
+     */
+    @Transactional
+    @CacheEvict(value = CacheConfig.EMPLOYEES_BY_CARD, allEntries = true)
+    public BulkCardAssignmentResult assignCardsInBulk(List<BulkCardAssignmentRequest.Assignment> assignments) {
+        BulkCardAssignmentResult result = new BulkCardAssignmentResult();
+        result.setRequested(assignments.size());
+        
+        Set<String> employeeIds = new HashSet<>();
+        Set<String> cardIds = new HashSet<>();
+        Set<String> shortCodes = new HashSet<>();
+        for (int i = 0; i < assignments.size(); i++) {
+            BulkCardAssignmentRequest.Assignment assignment = assignments.get(i);
+            if (assignment.getEmployeeId() == null || assignment.getCardId() == null) {
+                result.getConflicts().add(new BulkCardAssignmentResult.Conflict(i, assignment.getEmployeeId(), "employeeId and cardId are required"));
+            } else if (!employeeIds.add(assignment.getEmployeeId())) {
+                result.getConflicts().add(new BulkCardAssignmentResult.Conflict(i, assignment.getEmployeeId(), "Employee appears more than once in this request"));
+            } else if (!cardIds.add(assignment.getCardId())) {
+                result.getConflicts().add(new BulkCardAssignmentResult.Conflict(i, assignment.getEmployeeId(), "Card ID appears more than once in this request"));
+            } else if (assignment.getShortCode() != null && assignment.getShortCode().length() > 4) {
+                result.getConflicts().add(new BulkCardAssignmentResult.Conflict(i, assignment.getEmployeeId(), "Short code must be at most 4 characters"));
+            } else if (assignment.getShortCode() != null && !shortCodes.add(assignment.getShortCode())) {
+                result.getConflicts().add(new BulkCardAssignmentResult.Conflict(i, assignment.getEmployeeId(), "Short code appears more than once in this request"));
+            }
+        }
+        if (!result.getConflicts().isEmpty() || assignments.isEmpty()) {
+            return result;
+        }
+        
+        // One query returns every row that is either being updated or already holds a requested key
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("employeeIds", employeeIds)
+            .addValue("cardIds", cardIds);
+        String sql = "SELECT id, employee_id, card_id, short_code FROM employees WHERE employee_id IN (:employeeIds) OR card_id IN (:cardIds)";
+        if (!shortCodes.isEmpty()) {
+            params.addValue("shortCodes", shortCodes);
+            sql += " OR short_code IN (:shortCodes)";
+        }
+        Map<String, String> idsByEmployeeId = new HashMap<>();
+        Map<String, String> cardOwners = new HashMap<>();
+        Map<String, String> shortCodeOwners = new HashMap<>();
+        namedParameterJdbcTemplate.query(sql, params, rs -> {
+            String owner = rs.getString("employee_id");
+            idsByEmployeeId.put(owner, rs.getString("id"));
+            if (rs.getString("card_id") != null) {
+                cardOwners.put(rs.getString("card_id"), owner);
+            }
+            if (rs.getString("short_code") != null) {
+                shortCodeOwners.put(rs.getString("short_code"), owner);
+            }
+        });
+        
+        // Employees that receive a new short code in this request give up their current one
+        Set<String> releasingShortCodes = new HashSet<>();
+        for (BulkCardAssignmentRequest.Assignment assignment : assignments) {
+            if (assignment.getShortCode() != null) {
+                releasingShortCodes.add(assignment.getEmployeeId());
+            }
+        }
+        for (int i = 0; i < assignments.size(); i++) {
+            BulkCardAssignmentRequest.Assignment assignment = assignments.get(i);
+            String employeeId = assignment.getEmployeeId();
+            String cardOwner = cardOwners.get(assignment.getCardId());
+            String shortCodeOwner = assignment.getShortCode() != null ? shortCodeOwners.get(assignment.getShortCode()) : null;
+            if (!idsByEmployeeId.containsKey(employeeId)) {
+                result.getConflicts().add(new BulkCardAssignmentResult.Conflict(i, employeeId, "Employee not found"));
+            } else if (cardOwner != null && !cardOwner.equals(employeeId) && !employeeIds.contains(cardOwner)) {
+                result.getConflicts().add(new BulkCardAssignmentResult.Conflict(i, employeeId, "Card ID already assigned to another employee"));
+            } else if (shortCodeOwner != null && !shortCodeOwner.equals(employeeId) && !releasingShortCodes.contains(shortCodeOwner)) {
+                result.getConflicts().add(new BulkCardAssignmentResult.Conflict(i, employeeId, "Short code already assigned to another employee"));
+            }
+        }
+        if (!result.getConflicts().isEmpty()) {
+            return result;
+        }
+        
+        // Release the old keys first so swaps inside the request do not trip the unique constraints
+        namedParameterJdbcTemplate.update(
+            "UPDATE employees SET card_id = NULL WHERE employee_id IN (:employeeIds)",
+            new MapSqlParameterSource("employeeIds", employeeIds));
+        if (!releasingShortCodes.isEmpty()) {
+            namedParameterJdbcTemplate.update(
+                "UPDATE employees SET short_code = NULL WHERE employee_id IN (:employeeIds)",
+                new MapSqlParameterSource("employeeIds", releasingShortCodes));
+        }
+        
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batchArgs = new ArrayList<>(assignments.size());
+        for (BulkCardAssignmentRequest.Assignment assignment : assignments) {
+            batchArgs.add(new Object[]{assignment.getCardId(), assignment.getShortCode(), now, assignment.getEmployeeId()});
+        }
+        int[] counts = namedParameterJdbcTemplate.getJdbcTemplate().batchUpdate(
+            "UPDATE employees SET card_id = ?, short_code = COALESCE(?, short_code), updated_at = ? WHERE employee_id = ?",
+            batchArgs);
+        int updated = 0;
+        for (int count : counts) {
+            // Drivers may report SUCCESS_NO_INFO (-2) for rewritten batches
+            updated += count == java.sql.Statement.SUCCESS_NO_INFO ? 1 : count;
+        }
+        result.setUpdated(updated);
+        
+        List<String> changedIds = new ArrayList<>();
+        for (String employeeId : employeeIds) {
+            changedIds.add(idsByEmployeeId.get(employeeId));
+        }
+        employeeRosterService.rosterChanged(changedIds);
+        return result;
+    }
+    
+    public static class PurgeResult {
+        private final String employeeId;
+        private final int mealRecordsDeleted;
+        private final int mealRecordItemsDeleted;
+        
+        public PurgeResult(String employeeId, int mealRecordsDeleted, int mealRecordItemsDeleted) {
+            this.employeeId = employeeId;
+            this.mealRecordsDeleted = mealRecordsDeleted;
+            this.mealRecordItemsDeleted = mealRecordItemsDeleted;
+        }
+        
+        public String getEmployeeId() { return employeeId; }
+        public int getMealRecordsDeleted() { return mealRecordsDeleted; }
+        public int getMealRecordItemsDeleted() { return mealRecordItemsDeleted; }
+    }
+}
@@ -0,0 +1,226 @@
+package et.moe.ethernet.cateteria.service;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds ESC/POS command bytes for 80 mm thermal receipt printers. Text the printer's built-in
+ * code page cannot show (e.g. Ethiopic) is drawn with a Java font and sent as raster images, one
+ * per printed row, wrapped to the paper width and placed according to the current alignment.
+ */
+public class EscPosBuilder {
+
+    private static final byte ESC = 0x1B;
+    private static final byte GS = 0x1D;
+
+    public enum Align { LEFT, CENTER, RIGHT }
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+    private final int paperWidthDots;
+    private final Font rasterFont;
+    private Align align = Align.LEFT;
+
+    public EscPosBuilder(int paperWidthDots, Font rasterFont) {
+        this.paperWidthDots = paperWidthDots;
+        this.rasterFont = rasterFont;
+        write(ESC, '@');
+    }
+
+    public EscPosBuilder align(Align align) {
+        this.align = align;
+        return write(ESC, 'a', align.ordinal());
+    }
+
+    public EscPosBuilder bold(boolean on) {
+        return write(ESC, 'E', on ? 1 : 0);
+    }
+
+    public EscPosBuilder doubleSize(boolean on) {
+        return write(GS, '!', on ? 0x11 : 0x00);
+    }
+
+    /**
+     * Prints one line. Plain ASCII goes out as text; anything else is rasterized.
+     */
+    public EscPosBuilder line(String text) {
+        if (text == null) {
+            text = "";
+        }
+        if (isAscii(text)) {
+            out.writeBytes(text.getBytes(StandardCharsets.US_ASCII));
+            return write('\n');
+        }
+        return raster(text);
+    }
+
+    public EscPosBuilder feed(int lines) {
+        return write(ESC, 'd', lines);
+    }
+
+    public EscPosBuilder cut() {
+        // Feed to the cutter, then partial cut
+        return write(GS, 'V', 66, 0);
+    }
+
+    public EscPosBuilder raw(byte[] bytes) {
+        out.writeBytes(bytes);
+        return this;
+    }
+
+    public byte[] build() {
+        return out.toByteArray();
+    }
+
+    /**
+     * Interprets the escapes understood by {@code echo -e} ({@code \n}, {@code \t}, {@code \\},
+     * {@code \e}, {@code \xHH}) so data written for the old shell-based printing keeps working.
+     */
+    public static byte[] fromEchoEscapes(String data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length() + 2);
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            if (c == '\\' && i + 1 < data.length()) {
+                char next = data.charAt(i + 1);
+                switch (next) {
+                    case 'n' -> { bytes.write('\n'); i++; continue; }
+                    case 't' -> { bytes.write('\t'); i++; continue; }
+                    case 'r' -> { bytes.write('\r'); i++; continue; }
+                    case 'e' -> { bytes.write(ESC); i++; continue; }
+                    case '\\' -> { bytes.write('\\'); i++; continue; }
+                    case 'x' -> {
+                        int end = i + 2;
+                        while (end < data.length() && end < i + 4 && Character.digit(data.charAt(end), 16) >= 0) {
+                            end++;
+                        }
+                        if (end > i + 2) {
+                            bytes.write(Integer.parseInt(data.substring(i + 2, end), 16));
+                            i = end - 1;
+                            continue;
+                        }
+                    }
+                    default -> { }
+                }
+            }
+            bytes.writeBytes(String.valueOf(c).getBytes(StandardCharsets.UTF_8));
+        }
+        // echo appends a newline
+        bytes.write('\n');
+        return bytes.toByteArray();
+    }
+
+    private EscPosBuilder raster(String text) {
+        BufferedImage probe = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_BINARY);
+        Graphics2D probeGraphics = probe.createGraphics();
+        probeGraphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        FontMetrics metrics = probeGraphics.getFontMetrics(rasterFont);
+        probeGraphics.dispose();
+
+        for (String row : wrap(text, metrics)) {
+            rasterRow(row, metrics);
+        }
+        return this;
+    }
+
+    /**
+     * Splits text into rows no wider than the paper, at spaces where possible. A word wider than the
+     * paper on its own is broken between characters.
+     */
+    private List<String> wrap(String text, FontMetrics metrics) {
+        List<String> rows = new ArrayList<>();
+        String row = "";
+        for (String word : text.split(" ", -1)) {
+            String candidate = row.isEmpty() ? word : row + " " + word;
+            if (metrics.stringWidth(candidate) <= paperWidthDots) {
+                row = candidate;
+                continue;
+            }
+            if (!row.isEmpty()) {
+                rows.add(row);
+            }
+            while (metrics.stringWidth(word) > paperWidthDots) {
+                int end = fittingLength(word, metrics);
+                rows.add(word.substring(0, end));
+                word = word.substring(end);
+            }
+            row = word;
+        }
+        rows.add(row);
+        return rows;
+    }
+
+    // Length of the longest prefix that fits the paper, at least one character
+    private int fittingLength(String word, FontMetrics metrics) {
+        int end = word.offsetByCodePoints(0, 1);
+        while (end < word.length()) {
+            int next = word.offsetByCodePoints(end, 1);
+            if (metrics.stringWidth(word.substring(0, next)) > paperWidthDots) {
+                break;
+            }
+            end = next;
+        }
+        return end;
+    }
+
+    private void rasterRow(String row, FontMetrics metrics) {
+        int width = paperWidthDots;
+        int height = metrics.getHeight();
+        int textWidth = metrics.stringWidth(row);
+        // The image spans the paper, so the text is placed within it rather than by the printer
+        int x = switch (align) {
+            case LEFT -> 0;
+            case CENTER -> Math.max((width - textWidth) / 2, 0);
+            case RIGHT -> Math.max(width - textWidth, 0);
+        };
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.BLACK);
+        graphics.setFont(rasterFont);
+        graphics.drawString(row, x, metrics.getAscent());
+        graphics.dispose();
+
+        // GS v 0: raster bit image, 1 bit per dot, most significant bit first
+        int widthBytes = (width + 7) / 8;
+        write(GS, 'v', '0', 0, widthBytes & 0xFF, (widthBytes >> 8) & 0xFF, height & 0xFF, (height >> 8) & 0xFF);
+        for (int y = 0; y < height; y++) {
+            for (int xByte = 0; xByte < widthBytes; xByte++) {
+                int bits = 0;
+                for (int bit = 0; bit < 8; bit++) {
+                    int px = xByte * 8 + bit;
+                    if (px < width && (image.getRGB(px, y) & 0xFFFFFF) == 0) {
+                        bits |= 0x80 >> bit;
+                    }
+                }
+                out.write(bits);
+            }
+        }
+    }
+
+    private EscPosBuilder write(int... bytes) {
+        for (int b : bytes) {
+            out.write(b);
+        }
+        return this;
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x20 || c > 0x7E) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
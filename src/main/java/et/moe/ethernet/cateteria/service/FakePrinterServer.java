@@ -0,0 +1,121 @@
+package et.moe.ethernet.cateteria.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in for a raw TCP receipt printer, for development without hardware. Every connection is
+ * saved as {@code .bin} (the exact bytes) and {@code .txt} (text with the ESC/POS commands
+ * spelled out) in the output directory.
+ *
+ * <p>Enable with {@code cafeteria.print.fake-printer.enabled=true} and point a printer at it, e.g.
+ * {@code cafeteria.printers.POS-80=tcp://localhost:9100}.
+ */
+@Component
+@ConditionalOnProperty(name = "cafeteria.print.fake-printer.enabled", havingValue = "true")
+@Slf4j
+public class FakePrinterServer {
+
+    private static final DateTimeFormatter FILE_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    @Value("${cafeteria.print.fake-printer.port:9100}")
+    private int port;
+
+    @Value("${cafeteria.print.fake-printer.output-dir:fake-printer}")
+    private String outputDir;
+
+    private final AtomicInteger received = new AtomicInteger();
+    private ServerSocket serverSocket;
+
+    @PostConstruct
+    public void start() throws IOException {
+        Path output = Paths.get(outputDir);
+        Files.createDirectories(output);
+        serverSocket = new ServerSocket(port);
+        Thread acceptor = new Thread(() -> acceptLoop(output), "fake-printer");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Fake printer listening on port {}, writing receipts to {}", port, output.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        serverSocket.close();
+    }
+
+    private void acceptLoop(Path output) {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept(); InputStream in = socket.getInputStream()) {
+                byte[] bytes = in.readAllBytes();
+                String name = LocalDateTime.now().format(FILE_NAME) + "-" + received.incrementAndGet();
+                Files.write(output.resolve(name + ".bin"), bytes);
+                Files.writeString(output.resolve(name + ".txt"), describe(bytes));
+                log.info("Fake printer received {} bytes ({})", bytes.length, name);
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("Fake printer connection failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Text view of the bytes with the commands used by {@link EscPosBuilder} shown in brackets.
+     */
+    static String describe(byte[] bytes) {
+        StringBuilder text = new StringBuilder();
+        int i = 0;
+        while (i < bytes.length) {
+            int b = bytes[i] & 0xFF;
+            if (b == 0x1B && i + 1 < bytes.length) {
+                char command = (char) bytes[i + 1];
+                switch (command) {
+                    case '@' -> { text.append("[INIT]"); i += 2; }
+                    case 'a' -> { text.append("[ALIGN ").append(arg(bytes, i + 2)).append(']'); i += 3; }
+                    case 'E' -> { text.append("[BOLD ").append(arg(bytes, i + 2)).append(']'); i += 3; }
+                    case 'd' -> { text.append("[FEED ").append(arg(bytes, i + 2)).append("]\n"); i += 3; }
+                    default -> { text.append(String.format("[ESC %02X]", (int) command)); i += 2; }
+                }
+            } else if (b == 0x1D && i + 1 < bytes.length) {
+                char command = (char) bytes[i + 1];
+                switch (command) {
+                    case '!' -> { text.append("[SIZE ").append(arg(bytes, i + 2)).append(']'); i += 3; }
+                    case 'V' -> { text.append("[CUT]\n"); i += bytes.length > i + 2 && arg(bytes, i + 2) >= 65 ? 4 : 3; }
+                    case 'v' -> {
+                        int widthBytes = arg(bytes, i + 4) | arg(bytes, i + 5) << 8;
+                        int height = arg(bytes, i + 6) | arg(bytes, i + 7) << 8;
+                        text.append("[RASTER ").append(widthBytes * 8).append('x').append(height).append("]\n");
+                        i += 8 + widthBytes * height;
+                    }
+                    default -> { text.append(String.format("[GS %02X]", (int) command)); i += 2; }
+                }
+            } else if (b == '\n' || (b >= 0x20 && b < 0x7F)) {
+                text.append((char) b);
+                i++;
+            } else {
+                text.append(String.format("[%02X]", b));
+                i++;
+            }
+        }
+        return text.toString();
+    }
+
+    private static int arg(byte[] bytes, int index) {
+        return index < bytes.length ? bytes[index] & 0xFF : 0;
+    }
+}
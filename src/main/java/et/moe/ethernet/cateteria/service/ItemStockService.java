@@ -0,0 +1,450 @@
+package et.moe.ethernet.cateteria.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Live stock of meal items. Each item's remaining quantity is held in memory, split across
+ * several independently updated stripes so concurrent taps on the same item do not contend on
+ * one counter. Reservations are taken from the in-memory counters; the consumed quantities are
+ * written back to {@code meal_items.total_available} in periodic batches. Live stock is served
+ * from here ({@code GET /menu/stock}), not from the menu snapshot, so flushes do not change the
+ * menu version.
+ *
+ * <p>The in-memory counters are authoritative while the application runs, so only one backend
+ * instance may serve taps against a database.
+ *
+ * <p>When an admin sets an item's availability, its counter is swapped for one loaded from the new
+ * value less the consumption not yet flushed. A tap still holding the old counter sees it retired
+ * and moves to the new one; the old counter is kept for a grace period so anything booked on it
+ * meanwhile is still carried over.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ItemStockService {
+
+    private static final String LOAD_SQL = "SELECT total_available FROM meal_items WHERE id = ?";
+    private static final String FLUSH_SQL =
+        "UPDATE meal_items SET total_available = GREATEST(total_available - ?, 0), updated_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CatalogCacheService catalogCacheService;
+    private final PlatformTransactionManager transactionManager;
+
+    // Long enough for any tap that picked up a counter before it was retired to be done with it
+    private static final long RETIRED_GRACE_MS = 10_000;
+
+    private final ConcurrentHashMap<String, StockCounter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<RetiredCounter> retired = new ConcurrentLinkedQueue<>();
+    // Serializes flushes and resets, so a reset never loads a value a flush is about to change
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private record RetiredCounter(String mealItemId, StockCounter counter, long retiredAt) {
+    }
+
+    /**
+     * Reserves the given quantities (meal item ID -> quantity) all or nothing.
+     *
+     * @throws RuntimeException if an item does not exist or has not enough stock left
+     */
+    public void reserve(Map<String, Integer> quantities) {
+        Map<String, Integer> reserved = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            int quantity = entry.getValue();
+            if (!tryReserve(entry.getKey(), quantity)) {
+                release(reserved);
+                throw new RuntimeException("Insufficient stock for meal item: " + entry.getKey());
+            }
+            reserved.put(entry.getKey(), quantity);
+        }
+    }
+
+    /**
+     * Returns quantities from a reservation whose meal record could not be saved.
+     */
+    public void release(Map<String, Integer> quantities) {
+        quantities.forEach((id, quantity) -> {
+            StockCounter counter = counters.get(id);
+            if (counter != null) {
+                counter.release(quantity);
+            }
+        });
+    }
+
+    /**
+     * Books items that were already served, e.g. taps recorded offline, after the surrounding
+     * transaction commits. Never fails: stock simply runs down to zero.
+     */
+    public void consume(Map<String, Integer> quantities) {
+        afterCommit(() -> quantities.forEach(this::consume));
+    }
+
+    public int getAvailable(String mealItemId) {
+        return counter(mealItemId).available();
+    }
+
+    /**
+     * Live stock of the given meal items (ID -> available quantity); unknown items are left out.
+     */
+    public Map<String, Integer> getAvailable(Collection<String> mealItemIds) {
+        Map<String, Integer> available = new LinkedHashMap<>();
+        for (String id : mealItemIds) {
+            try {
+                available.put(id, getAvailable(id));
+            } catch (RuntimeException e) {
+                // Deleted since the caller listed it
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Forgets the in-memory stock of an item after an admin set its availability, so the next
+     * reservation starts from the new database value.
+     */
+    public void availabilityChanged(String mealItemId) {
+        availabilityChanged(List.of(mealItemId));
+    }
+
+    /**
+     * Same as {@link #availabilityChanged(String)} for the given items. Reservations not yet
+     * flushed are taken off the new value, so stock served before the change is never sold again.
+     */
+    public void availabilityChanged(Collection<String> mealItemIds) {
+        afterCommit(() -> reset(mealItemIds));
+    }
+
+    @Scheduled(fixedDelayString = "${cafeteria.stock.flush-interval-ms:2000}")
+    public void flush() {
+        writeLock.lock();
+        try {
+            carryOverRetired();
+            flushCounters();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void flushCounters() {
+        List<String> ids = new ArrayList<>();
+        List<Object[]> batchArgs = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        counters.forEach((id, counter) -> {
+            long consumed = counter.drainConsumed();
+            // Negative when more was released than reserved since the last flush
+            if (consumed != 0) {
+                ids.add(id);
+                batchArgs.add(new Object[]{consumed, now, id});
+            }
+        });
+        if (batchArgs.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, batchArgs);
+        } catch (RuntimeException e) {
+            // Keep the consumption so the next flush retries it
+            for (int i = 0; i < ids.size(); i++) {
+                StockCounter counter = counters.get(ids.get(i));
+                if (counter != null) {
+                    counter.restoreConsumed((long) batchArgs.get(i)[0]);
+                }
+            }
+            log.warn("Failed to flush stock for {} meal items, will retry", ids.size(), e);
+            return;
+        }
+
+        catalogCacheService.evictMealItems(ids);
+        log.debug("Flushed stock for {} meal items", ids.size());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void reset(Collection<String> mealItemIds) {
+        writeLock.lock();
+        try {
+            List<String> ids = new ArrayList<>();
+            List<Object[]> batchArgs = new ArrayList<>();
+            Map<String, StockCounter> replacements = new LinkedHashMap<>();
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            for (String id : mealItemIds) {
+                // Loaded before the swap, outside the map, so taps on the item are never blocked on the database
+                Integer value = load(id);
+                long[] pending = new long[1];
+                StockCounter replacement = counters.compute(id, (key, old) -> {
+                    if (old != null) {
+                        old.retire();
+                        pending[0] = old.drainConsumed();
+                        retired.add(new RetiredCounter(id, old, System.currentTimeMillis()));
+                    }
+                    return value == null ? null : new StockCounter((int) Math.max(value - pending[0], 0));
+                });
+                if (pending[0] != 0 && replacement != null) {
+                    ids.add(id);
+                    batchArgs.add(new Object[]{pending[0], now, id});
+                    replacements.put(id, replacement);
+                }
+            }
+            if (batchArgs.isEmpty()) {
+                return;
+            }
+            // Runs after the admin's commit, when that transaction can no longer be joined
+            TransactionTemplate newTransaction = new TransactionTemplate(transactionManager);
+            newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            try {
+                newTransaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(FLUSH_SQL, batchArgs));
+                catalogCacheService.evictMealItems(ids);
+            } catch (RuntimeException e) {
+                // The new counters already account for it; the next flush writes it
+                for (int i = 0; i < ids.size(); i++) {
+                    replacements.get(ids.get(i)).restoreConsumed((long) batchArgs.get(i)[0]);
+                }
+                log.warn("Failed to write pending stock of {} reset meal items, will retry", ids.size(), e);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Moves what was booked on retired counters after they were swapped out to the current ones:
+     * releases of reservations that were already counted as pending, and (in theory) bookings the
+     * swap missed.
+     */
+    private void carryOverRetired() {
+        long now = System.currentTimeMillis();
+        for (RetiredCounter entry : retired) {
+            long late = entry.counter().drainConsumed();
+            if (late != 0) {
+                StockCounter current = counters.get(entry.mealItemId());
+                if (current != null) {
+                    current.adjust(late);
+                } else {
+                    // Reloaded from the database next time, so the correction goes there directly
+                    jdbcTemplate.update(FLUSH_SQL, late, Timestamp.valueOf(LocalDateTime.now()), entry.mealItemId());
+                }
+            }
+            if (now - entry.retiredAt() > RETIRED_GRACE_MS) {
+                retired.remove(entry);
+            }
+        }
+    }
+
+    private boolean tryReserve(String mealItemId, int quantity) {
+        while (true) {
+            StockCounter counter = counter(mealItemId);
+            boolean reserved = counter.tryReserve(quantity);
+            if (!counter.isRetired()) {
+                return reserved;
+            }
+            // Swapped out meanwhile: undo here, where the retired counter's carry-over picks it up, and retry
+            if (reserved) {
+                counter.release(quantity);
+            }
+        }
+    }
+
+    private void consume(String mealItemId, int quantity) {
+        while (true) {
+            StockCounter counter = counter(mealItemId);
+            counter.consume(quantity);
+            if (!counter.isRetired()) {
+                return;
+            }
+            counter.release(quantity);
+        }
+    }
+
+    private StockCounter counter(String mealItemId) {
+        StockCounter counter = counters.get(mealItemId);
+        if (counter != null) {
+            return counter;
+        }
+        // Loaded outside the map; if another tap or a reset installs a counter first, that one wins
+        Integer value = load(mealItemId);
+        if (value == null) {
+            throw new RuntimeException("Meal item not found: " + mealItemId);
+        }
+        return counters.computeIfAbsent(mealItemId, id -> new StockCounter(value));
+    }
+
+    // Null if the item does not exist
+    private Integer load(String mealItemId) {
+        List<Integer> rows = jdbcTemplate.queryForList(LOAD_SQL, Integer.class, mealItemId);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        return rows.get(0) != null ? rows.get(0) : 0;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Remaining stock of one item spread over a power-of-two number of stripes. Each stripe sits
+     * on its own cache line; a reservation starts at a random stripe and moves on to the others
+     * only when that stripe runs dry.
+     */
+    static final class StockCounter {
+
+        // 16 ints = 64 bytes between stripes to avoid false sharing
+        private static final int PAD = 16;
+        private static final int STRIPES = Math.min(16, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors())));
+
+        private final AtomicIntegerArray cells = new AtomicIntegerArray(STRIPES * PAD);
+        private final LongAdder consumed = new LongAdder();
+        private volatile boolean retired;
+
+        StockCounter(int initial) {
+            int share = Math.max(initial, 0) / STRIPES;
+            int remainder = Math.max(initial, 0) % STRIPES;
+            for (int i = 0; i < STRIPES; i++) {
+                cells.set(i * PAD, share + (i < remainder ? 1 : 0));
+            }
+        }
+
+        boolean tryReserve(int quantity) {
+            if (quantity <= 0) {
+                return true;
+            }
+            if (takeFromStripes(quantity)) {
+                return true;
+            }
+            // Near sell-out the stock is scattered over stripes; competing partial takes can make
+            // both requests fail, so retry once with the other slow-path callers serialized
+            synchronized (this) {
+                return takeFromStripes(quantity);
+            }
+        }
+
+        void release(int quantity) {
+            if (quantity <= 0) {
+                return;
+            }
+            cells.addAndGet(homeStripe(), quantity);
+            consumed.add(-quantity);
+        }
+
+        void consume(int quantity) {
+            if (quantity <= 0) {
+                return;
+            }
+            int remaining = quantity;
+            for (int stripe = 0; stripe < STRIPES && remaining > 0; stripe++) {
+                remaining -= take(stripe * PAD, remaining);
+            }
+            // The full quantity is flushed; the database clamps at zero like the counter
+            consumed.add(quantity);
+        }
+
+        int available() {
+            int total = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                total += cells.get(i * PAD);
+            }
+            return total;
+        }
+
+        void retire() {
+            retired = true;
+        }
+
+        boolean isRetired() {
+            return retired;
+        }
+
+        // Books a quantity consumed elsewhere (positive) or returned (negative), to be flushed with the rest
+        void adjust(long quantity) {
+            if (quantity > 0) {
+                consume((int) quantity);
+            } else if (quantity < 0) {
+                release((int) -quantity);
+            }
+        }
+
+        long drainConsumed() {
+            return consumed.sumThenReset();
+        }
+
+        void restoreConsumed(long quantity) {
+            consumed.add(quantity);
+        }
+
+        private boolean takeFromStripes(int quantity) {
+            int start = ThreadLocalRandom.current().nextInt(STRIPES);
+            int remaining = quantity;
+            int[] taken = new int[STRIPES];
+            for (int i = 0; i < STRIPES && remaining > 0; i++) {
+                int stripe = (start + i) & (STRIPES - 1);
+                int got = take(stripe * PAD, remaining);
+                taken[stripe] = got;
+                remaining -= got;
+            }
+            if (remaining == 0) {
+                consumed.add(quantity);
+                return true;
+            }
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                if (taken[stripe] > 0) {
+                    cells.addAndGet(stripe * PAD, taken[stripe]);
+                }
+            }
+            return false;
+        }
+
+        private int take(int index, int wanted) {
+            while (true) {
+                int current = cells.get(index);
+                if (current <= 0) {
+                    return 0;
+                }
+                int got = Math.min(current, wanted);
+                if (cells.compareAndSet(index, current, current - got)) {
+                    return got;
+                }
+            }
+        }
+
+        private static int homeStripe() {
+            return ThreadLocalRandom.current().nextInt(STRIPES) * PAD;
+        }
+    }
+}
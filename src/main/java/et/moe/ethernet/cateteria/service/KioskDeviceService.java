@@ -0,0 +1,236 @@
+package et.moe.ethernet.cateteria.service;
+
+import et.moe.ethernet.cateteria.dto.KioskDeviceRequest;
+import et.moe.ethernet.cateteria.entity.KioskDevice;
+import et.moe.ethernet.cateteria.entity.User;
+import et.moe.ethernet.cateteria.repository.KioskDeviceRepository;
+import et.moe.ethernet.cateteria.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Registered kiosks and verification of their signed requests.
+ *
+ * <p>A kiosk signs {@code METHOD\nPATH?QUERY\nTIMESTAMP\nNONCE\nBASE64(SHA-256(body))} with
+ * HMAC-SHA256 using its secret and sends it with {@code X-Kiosk-Id}, {@code X-Kiosk-Timestamp}
+ * (epoch seconds), {@code X-Kiosk-Nonce} (unique per request) and {@code X-Kiosk-Signature}
+ * (Base64). Each device's key and operator user are cached, so a signed tap costs no database
+ * query. Nonces are remembered until their timestamp leaves the allowed skew, so a captured request
+ * cannot be replayed to this instance.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KioskDeviceService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Pattern NONCE = Pattern.compile("[A-Za-z0-9_-]{16,64}");
+
+    private final KioskDeviceRepository kioskDeviceRepository;
+    private final UserRepository userRepository;
+
+    // Accepted difference between the kiosk clock and ours; also bounds how long a request can be replayed
+    @Value("${cafeteria.kiosk.max-clock-skew-seconds:300}")
+    private long maxClockSkewSeconds;
+
+    // Upper bound for picking up changes made directly in the database
+    @Value("${cafeteria.kiosk.cache-ttl-seconds:300}")
+    private long cacheTtlSeconds;
+
+    private final Map<String, Credentials> credentialsCache = new ConcurrentHashMap<>();
+
+    // "<device id> <nonce>" -> epoch second after which the request's timestamp is rejected anyway
+    private final Map<String, Long> seenNonces = new ConcurrentHashMap<>();
+
+    private record Credentials(SecretKeySpec key, User operator, long expiresAtMillis) {
+    }
+
+    public List<KioskDevice> getAllDevices() {
+        return kioskDeviceRepository.findAllByOrderByIdAsc();
+    }
+
+    public KioskDevice registerDevice(KioskDeviceRequest request) {
+        if (kioskDeviceRepository.existsById(request.getId())) {
+            throw new RuntimeException("Kiosk device already exists: " + request.getId());
+        }
+        KioskDevice device = new KioskDevice();
+        device.setId(request.getId());
+        device.setName(request.getName());
+        device.setOperatorUser(findOperator(request.getOperatorUsername()));
+        device.setSecret(newSecret());
+        return kioskDeviceRepository.save(device);
+    }
+
+    public Optional<KioskDevice> updateDevice(String id, KioskDeviceRequest request) {
+        Optional<KioskDevice> updated = kioskDeviceRepository.findById(id)
+            .map(device -> {
+                device.setName(request.getName());
+                device.setOperatorUser(findOperator(request.getOperatorUsername()));
+                return kioskDeviceRepository.save(device);
+            });
+        credentialsCache.remove(id);
+        return updated;
+    }
+
+    public Optional<KioskDevice> rotateSecret(String id) {
+        Optional<KioskDevice> updated = kioskDeviceRepository.findById(id)
+            .map(device -> {
+                device.setSecret(newSecret());
+                return kioskDeviceRepository.save(device);
+            });
+        credentialsCache.remove(id);
+        return updated;
+    }
+
+    public Optional<KioskDevice> toggleDeviceStatus(String id) {
+        Optional<KioskDevice> updated = kioskDeviceRepository.findById(id)
+            .map(device -> {
+                device.setActive(!device.isActive());
+                return kioskDeviceRepository.save(device);
+            });
+        credentialsCache.remove(id);
+        return updated;
+    }
+
+    public boolean deleteDevice(String id) {
+        if (!kioskDeviceRepository.existsById(id)) {
+            return false;
+        }
+        kioskDeviceRepository.deleteById(id);
+        credentialsCache.remove(id);
+        return true;
+    }
+
+    /**
+     * Drops cached devices operated by the user, after the user was changed or deactivated.
+     */
+    public void operatorChanged(String userId) {
+        credentialsCache.values().removeIf(credentials -> credentials.operator().getId().equals(userId));
+    }
+
+    /**
+     * Verifies a signed kiosk request and returns the operator user it is attributed to.
+     */
+    public Optional<User> authenticate(String deviceId, String timestamp, String nonce, String signature,
+                                       String method, String pathAndQuery, byte[] body) {
+        long requestSeconds;
+        try {
+            requestSeconds = Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+        if (!NONCE.matcher(nonce).matches()) {
+            return Optional.empty();
+        }
+        long nowSeconds = System.currentTimeMillis() / 1000;
+        if (Math.abs(nowSeconds - requestSeconds) > maxClockSkewSeconds) {
+            log.debug("Rejected kiosk request from {}: timestamp outside the allowed skew", deviceId);
+            return Optional.empty();
+        }
+
+        Credentials credentials = getCredentials(deviceId);
+        if (credentials == null) {
+            log.debug("Rejected kiosk request from unknown or inactive device {}", deviceId);
+            return Optional.empty();
+        }
+
+        byte[] provided;
+        try {
+            provided = Base64.getDecoder().decode(signature);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        String canonical = method + "\n" + pathAndQuery + "\n" + timestamp + "\n" + nonce + "\n"
+            + Base64.getEncoder().encodeToString(sha256(body));
+        if (!MessageDigest.isEqual(provided, hmac(credentials.key(), canonical))) {
+            log.debug("Rejected kiosk request from {}: signature mismatch", deviceId);
+            return Optional.empty();
+        }
+        // Only signed requests get here, so the map holds no more than the kiosks send
+        Long previous = seenNonces.putIfAbsent(deviceId + " " + nonce, requestSeconds + maxClockSkewSeconds);
+        if (previous != null) {
+            log.warn("Rejected kiosk request from {}: nonce already used", deviceId);
+            return Optional.empty();
+        }
+        return Optional.of(credentials.operator());
+    }
+
+    @Scheduled(fixedRate = 60_000)
+    public void forgetExpiredNonces() {
+        long nowSeconds = System.currentTimeMillis() / 1000;
+        seenNonces.values().removeIf(expiresAt -> expiresAt < nowSeconds);
+    }
+
+    private Credentials getCredentials(String deviceId) {
+        long now = System.currentTimeMillis();
+        Credentials cached = credentialsCache.get(deviceId);
+        if (cached != null && cached.expiresAtMillis() > now) {
+            return cached;
+        }
+        Credentials loaded = kioskDeviceRepository.findById(deviceId)
+            .filter(device -> device.isActive() && device.getOperatorUser().isActive())
+            .map(device -> new Credentials(
+                new SecretKeySpec(Base64.getDecoder().decode(device.getSecret()), ALGORITHM),
+                device.getOperatorUser(),
+                now + cacheTtlSeconds * 1000))
+            .orElse(null);
+        // Unknown ids are not cached so the map only ever holds registered devices
+        if (loaded == null) {
+            credentialsCache.remove(deviceId);
+        } else {
+            credentialsCache.put(deviceId, loaded);
+        }
+        return loaded;
+    }
+
+    private User findOperator(String username) {
+        User operator = userRepository.findByUsername(username)
+            .orElseThrow(() -> new RuntimeException("User not found: " + username));
+        if (!operator.isActive()) {
+            throw new RuntimeException("User is not active: " + username);
+        }
+        return operator;
+    }
+
+    private static String newSecret() {
+        byte[] secret = new byte[32];
+        RANDOM.nextBytes(secret);
+        return Base64.getEncoder().encodeToString(secret);
+    }
+
+    private static byte[] hmac(SecretKeySpec key, String data) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
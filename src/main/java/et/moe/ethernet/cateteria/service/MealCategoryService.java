@@ -8,7 +8,9 @@ import et.moe.ethernet.cateteria.repository.MealCategoryRepository;
 import et.moe.ethernet.cateteria.repository.MealTypeRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -19,6 +21,7 @@ public class MealCategoryService {
     
     private final MealCategoryRepository mealCategoryRepository;
     private final MealTypeRepository mealTypeRepository;
+    private final MenuSnapshotService menuSnapshotService;
     
     public List<MealCategoryDto> getAllMealCategories() {
         return mealCategoryRepository.findAll().stream()
@@ -63,6 +66,7 @@ public class MealCategoryService {
         mealCategory.setActive(request.isActive());
         
         MealCategory savedCategory = mealCategoryRepository.save(mealCategory);
+        menuSnapshotService.catalogChanged();
         return MealCategoryDto.fromEntity(savedCategory);
     }
     
@@ -74,7 +78,9 @@ public class MealCategoryService {
                 existingCategory.setSupportedPrice(mealCategoryUpdates.getSupportedPrice());
                 existingCategory.setAllowedCount(mealCategoryUpdates.getAllowedCount() != null ? mealCategoryUpdates.getAllowedCount() : 1);
                 existingCategory.setActive(mealCategoryUpdates.isActive());
-                return MealCategoryDto.fromEntity(mealCategoryRepository.save(existingCategory));
+                MealCategoryDto saved = MealCategoryDto.fromEntity(mealCategoryRepository.save(existingCategory));
+                menuSnapshotService.catalogChanged();
+                return saved;
             });
     }
     
@@ -83,14 +89,23 @@ public class MealCategoryService {
             .map(category -> {
                 category.setActive(!category.isActive());
                 mealCategoryRepository.save(category);
+                menuSnapshotService.catalogChanged();
                 return true;
             })
             .orElse(false);
     }
     
+    @Transactional
+    public int setMealCategoriesActive(List<String> ids, boolean active) {
+        int affected = mealCategoryRepository.updateActiveByIds(ids, active, LocalDateTime.now());
+        menuSnapshotService.catalogChanged();
+        return affected;
+    }
+    
     public boolean deleteMealCategory(String id) {
         if (mealCategoryRepository.existsById(id)) {
             mealCategoryRepository.deleteById(id);
+            menuSnapshotService.catalogChanged();
             return true;
         }
         return false;
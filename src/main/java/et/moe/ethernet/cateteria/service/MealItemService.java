@@ -8,7 +8,9 @@ import et.moe.ethernet.cateteria.repository.MealCategoryRepository;
 import et.moe.ethernet.cateteria.repository.MealItemRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -19,6 +21,8 @@ public class MealItemService {
     
     private final MealItemRepository mealItemRepository;
     private final MealCategoryRepository mealCategoryRepository;
+    private final MenuSnapshotService menuSnapshotService;
+    private final ItemStockService itemStockService;
     
     public List<MealItemDto> getAllMealItems() {
         return mealItemRepository.findAll().stream()
@@ -68,6 +72,7 @@ public class MealItemService {
         mealItem.setActive(request.isActive());
         
         MealItem savedItem = mealItemRepository.save(mealItem);
+        menuSnapshotService.catalogChanged();
         return MealItemDto.fromEntity(savedItem);
     }
     
@@ -91,7 +96,12 @@ public class MealItemService {
                 }
                 existingItem.setActive(mealItemUpdates.isActive());
                 
-                return MealItemDto.fromEntity(mealItemRepository.save(existingItem));
+                MealItemDto saved = MealItemDto.fromEntity(mealItemRepository.save(existingItem));
+                if (mealItemUpdates.getTotalAvailable() != null) {
+                    itemStockService.availabilityChanged(id);
+                }
+                menuSnapshotService.catalogChanged();
+                return saved;
             });
     }
     
@@ -100,14 +110,40 @@ public class MealItemService {
             .map(item -> {
                 item.setActive(!item.isActive());
                 mealItemRepository.save(item);
+                menuSnapshotService.catalogChanged();
                 return true;
             })
             .orElse(false);
     }
     
+    @Transactional
+    public int setMealItemsActive(List<String> ids, boolean active) {
+        int affected = mealItemRepository.updateActiveByIds(ids, active, LocalDateTime.now());
+        menuSnapshotService.catalogChanged();
+        return affected;
+    }
+    
+    @Transactional
+    public int setMealItemsActiveByCategory(String mealCategoryId, boolean active) {
+        int affected = mealItemRepository.updateActiveByMealCategoryId(mealCategoryId, active, LocalDateTime.now());
+        menuSnapshotService.catalogChanged();
+        return affected;
+    }
+    
+    @Transactional
+    public int updateAvailabilityByCategory(String mealCategoryId, int totalAvailable) {
+        List<String> ids = mealItemRepository.findIdsByMealCategoryId(mealCategoryId);
+        int affected = mealItemRepository.updateTotalAvailableByMealCategoryId(mealCategoryId, totalAvailable, LocalDateTime.now());
+        itemStockService.availabilityChanged(ids);
+        menuSnapshotService.catalogChanged();
+        return affected;
+    }
+    
     public boolean deleteMealItem(String id) {
         if (mealItemRepository.existsById(id)) {
             mealItemRepository.deleteById(id);
+            itemStockService.availabilityChanged(id);
+            menuSnapshotService.catalogChanged();
             return true;
         }
         return false;
@@ -118,6 +154,8 @@ public class MealItemService {
             .map(item -> {
                 item.setTotalAvailable(totalAvailable);
                 mealItemRepository.save(item);
+                itemStockService.availabilityChanged(id);
+                menuSnapshotService.catalogChanged();
                 return true;
             })
             .orElse(false);
@@ -0,0 +1,326 @@
+package et.moe.ethernet.cateteria.service;
+
+import et.moe.ethernet.cateteria.dto.MealRecordDto;
+import et.moe.ethernet.cateteria.dto.MealRecordItemDto;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves meal records older than the retention window out of {@code meal_records} into the
+ * compressed, month-partitioned {@code meal_records_archive} (see add-meal-records-archive.sql),
+ * so the hot table and its indexes only hold recent months. Whole months are moved, oldest first,
+ * in chunks that each copy and delete in one transaction; a record is always in exactly one table.
+ * <p>
+ * Date range reads that reach before {@link #getArchivedBefore()} also query the archive, as does an
+ * employee's meal history once anything is archived. The retention window is at least a year, so
+ * the period reports never need it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MealRecordArchiveService {
+
+    // The yearly support report reaches 365 days back
+    private static final int MIN_RETENTION_MONTHS = 12;
+    private static final String FUTURE_PARTITION = "p_future";
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final String RECORD_COLUMNS =
+        "id, employee_id, card_id, meal_type_id, meal_category_id, recorded_by_user_id, meal_name, category, price_type, " +
+        "normal_price, supported_price, actual_price, support_amount, employee_salary, recorded_at, created_at, " +
+        "order_number, client_tap_id, kiosk_device_id";
+    private static final String ITEM_COLUMNS =
+        "id, meal_record_id, meal_item_id, quantity, price_per_item, total_price, created_at";
+
+    private static final String SELECT_ARCHIVED =
+        "SELECT a.id, e.employee_id AS employee_code, a.card_id, a.meal_type_id, a.meal_category_id, a.meal_name, " +
+        "a.category, a.price_type, a.normal_price, a.supported_price, a.actual_price, a.support_amount, " +
+        "a.employee_salary, a.recorded_at, a.created_at, a.order_number, a.recorded_by_user_id, u.username, " +
+        "u.full_name, e.short_code, mt.name AS meal_type_name, a.kiosk_device_id " +
+        "FROM meal_records_archive a " +
+        "JOIN employees e ON e.id = a.employee_id " +
+        "JOIN meal_types mt ON mt.id = a.meal_type_id " +
+        "LEFT JOIN users u ON u.id = a.recorded_by_user_id ";
+    private static final String SELECT_ARCHIVED_ITEMS =
+        "SELECT i.id, i.meal_record_id, i.meal_item_id, mi.name AS meal_item_name, i.quantity, i.price_per_item, " +
+        "i.total_price, i.created_at " +
+        "FROM meal_record_items_archive i " +
+        "LEFT JOIN meal_items mi ON mi.id = i.meal_item_id " +
+        "WHERE i.meal_record_id IN (:ids) " +
+        "ORDER BY i.created_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // Off until the archive tables exist
+    @Value("${cafeteria.archive.enabled:false}")
+    private boolean enabled;
+
+    // Months kept in meal_records besides the current one
+    @Value("${cafeteria.archive.retention-months:13}")
+    private int retentionMonths;
+
+    @Value("${cafeteria.archive.chunk-size:1000}")
+    private int chunkSize;
+
+    // Start of the first month not (completely) archived; null while nothing is archived
+    private volatile LocalDateTime archivedBefore;
+
+    private static final RowMapper<MealRecordDto> ARCHIVED_RECORD = (rs, rowNum) -> {
+        MealRecordDto dto = new MealRecordDto();
+        dto.setId(rs.getString("id"));
+        dto.setEmployeeId(rs.getString("employee_code"));
+        dto.setCardId(rs.getString("card_id"));
+        dto.setMealTypeId(rs.getString("meal_type_id"));
+        dto.setMealCategoryId(rs.getString("meal_category_id"));
+        dto.setMealName(rs.getString("meal_name"));
+        dto.setCategory(rs.getString("category").toLowerCase());
+        dto.setPriceType(rs.getString("price_type").toLowerCase());
+        dto.setNormalPrice(rs.getBigDecimal("normal_price"));
+        dto.setSupportedPrice(rs.getBigDecimal("supported_price"));
+        dto.setActualPrice(rs.getBigDecimal("actual_price"));
+        dto.setSupportAmount(rs.getBigDecimal("support_amount"));
+        dto.setEmployeeSalary(rs.getBigDecimal("employee_salary"));
+        dto.setTimestamp(rs.getObject("recorded_at", LocalDateTime.class));
+        dto.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+        dto.setOrderNumber(rs.getString("order_number"));
+        dto.setRecordedByUserId(rs.getString("recorded_by_user_id"));
+        dto.setRecordedByUsername(rs.getString("username"));
+        dto.setRecordedByFullName(rs.getString("full_name"));
+        dto.setEmployeeShortCode(rs.getString("short_code"));
+        dto.setMealTypeName(rs.getString("meal_type_name"));
+        dto.setKioskDeviceId(rs.getString("kiosk_device_id"));
+        return dto;
+    };
+
+    private static final RowMapper<MealRecordItemDto> ARCHIVED_ITEM = (rs, rowNum) -> new MealRecordItemDto(
+        rs.getString("id"),
+        rs.getString("meal_record_id"),
+        rs.getString("meal_item_id"),
+        rs.getString("meal_item_name"),
+        rs.getInt("quantity"),
+        rs.getBigDecimal("price_per_item"),
+        rs.getBigDecimal("total_price"),
+        rs.getObject("created_at", LocalDateTime.class));
+
+    @PostConstruct
+    public void init() {
+        if (retentionMonths < MIN_RETENTION_MONTHS) {
+            log.warn("cafeteria.archive.retention-months={} is below {}, the yearly report's reach; using {}",
+                retentionMonths, MIN_RETENTION_MONTHS, MIN_RETENTION_MONTHS);
+            retentionMonths = MIN_RETENTION_MONTHS;
+        }
+        try {
+            loadArchivedBefore();
+        } catch (DataAccessException e) {
+            // No archive table: nothing has been archived
+            if (enabled) {
+                log.warn("Meal record archive is enabled but meal_records_archive is not readable; run add-meal-records-archive.sql", e);
+            }
+        }
+        log.info("Meal record archive: {}, records before {} archived", enabled ? "enabled" : "disabled", archivedBefore);
+    }
+
+    /**
+     * Records before this time may be in the archive; null if nothing has been archived.
+     */
+    public LocalDateTime getArchivedBefore() {
+        return archivedBefore;
+    }
+
+    /**
+     * Whether a range starting at {@code start} includes archived months.
+     */
+    public boolean reaches(LocalDateTime start) {
+        LocalDateTime before = archivedBefore;
+        return before != null && start.isBefore(before);
+    }
+
+    /**
+     * Archived meal records recorded between start and end (inclusive), oldest first, with their items.
+     *
+     * @param department only employees of this department, or null for all
+     */
+    public List<MealRecordDto> findMealRecords(LocalDateTime start, LocalDateTime end, String department) {
+        if (!reaches(start)) {
+            return new ArrayList<>();
+        }
+        List<MealRecordDto> records = department == null
+            ? jdbcTemplate.query(SELECT_ARCHIVED + "WHERE a.recorded_at BETWEEN ? AND ? ORDER BY a.recorded_at",
+                ARCHIVED_RECORD, start, end)
+            : jdbcTemplate.query(SELECT_ARCHIVED + "WHERE a.recorded_at BETWEEN ? AND ? AND e.department = ? ORDER BY a.recorded_at",
+                ARCHIVED_RECORD, start, end, department);
+        return withItems(records);
+    }
+
+    /**
+     * Archived meal records of one employee, newest first, with their items.
+     *
+     * @param employeeId the employee's code (employees.employee_id)
+     */
+    public List<MealRecordDto> findMealRecordsByEmployee(String employeeId) {
+        if (archivedBefore == null) {
+            return new ArrayList<>();
+        }
+        return withItems(jdbcTemplate.query(SELECT_ARCHIVED + "WHERE e.employee_id = ? ORDER BY a.recorded_at DESC",
+            ARCHIVED_RECORD, employeeId));
+    }
+
+    @Scheduled(cron = "${cafeteria.archive.cron:0 30 2 * * *}")
+    public void archiveColdMonths() {
+        if (!enabled) {
+            // Another instance may archive; pick up what it moved
+            try {
+                loadArchivedBefore();
+            } catch (DataAccessException e) {
+                // No archive table
+            }
+            return;
+        }
+        LocalDateTime cutoff = LocalDate.now().withDayOfMonth(1).minusMonths(retentionMonths).atStartOfDay();
+        while (true) {
+            LocalDateTime oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(recorded_at) FROM meal_records WHERE recorded_at < ?", LocalDateTime.class, cutoff);
+            if (oldest == null) {
+                return;
+            }
+            archiveMonth(YearMonth.from(oldest));
+        }
+    }
+
+    /**
+     * Removes the archived meal records of a purged employee.
+     *
+     * @param guard run at the start of each chunk transaction; throws to stop the purge
+     * @return deleted meal record items and meal records
+     */
+    public int[] purgeEmployee(String employeeUuid, Runnable guard) {
+        if (archivedBefore == null) {
+            return new int[]{0, 0};
+        }
+        int items = 0;
+        int records = 0;
+        while (true) {
+            int[] counts = transactionTemplate.execute(status -> {
+                guard.run();
+                List<String> ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM meal_records_archive WHERE employee_id = ? LIMIT " + chunkSize, String.class, employeeUuid);
+                if (ids.isEmpty()) {
+                    return null;
+                }
+                MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+                return new int[]{
+                    namedParameterJdbcTemplate.update("DELETE FROM meal_record_items_archive WHERE meal_record_id IN (:ids)", params),
+                    namedParameterJdbcTemplate.update("DELETE FROM meal_records_archive WHERE id IN (:ids)", params)
+                };
+            });
+            if (counts == null) {
+                return new int[]{items, records};
+            }
+            items += counts[0];
+            records += counts[1];
+        }
+    }
+
+    private List<MealRecordDto> withItems(List<MealRecordDto> records) {
+        Map<String, MealRecordDto> byId = new HashMap<>();
+        for (MealRecordDto record : records) {
+            record.setMealItems(new ArrayList<>());
+            byId.put(record.getId(), record);
+        }
+        List<String> ids = new ArrayList<>(byId.keySet());
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<String> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+            namedParameterJdbcTemplate.query(SELECT_ARCHIVED_ITEMS, new MapSqlParameterSource("ids", chunk), ARCHIVED_ITEM)
+                .forEach(item -> byId.get(item.getMealRecordId()).getMealItems().add(item));
+        }
+        return records;
+    }
+
+    private void loadArchivedBefore() {
+        LocalDateTime newestArchived = jdbcTemplate.queryForObject(
+            "SELECT MAX(recorded_at) FROM meal_records_archive", LocalDateTime.class);
+        if (newestArchived != null) {
+            archivedBefore = YearMonth.from(newestArchived).plusMonths(1).atDay(1).atStartOfDay();
+        }
+    }
+
+    private void archiveMonth(YearMonth month) {
+        long started = System.currentTimeMillis();
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        addPartition(month, to);
+        // Moved first, so reads of this month include the archive while its records move
+        if (archivedBefore == null || archivedBefore.isBefore(to)) {
+            archivedBefore = to;
+        }
+
+        long moved = 0;
+        while (true) {
+            Integer count = transactionTemplate.execute(status -> {
+                List<String> ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM meal_records WHERE recorded_at >= ? AND recorded_at < ? LIMIT " + chunkSize,
+                    String.class, from, to);
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+                namedParameterJdbcTemplate.update("INSERT INTO meal_record_items_archive (" + ITEM_COLUMNS + ") SELECT " +
+                    ITEM_COLUMNS + " FROM meal_record_items WHERE meal_record_id IN (:ids)", params);
+                namedParameterJdbcTemplate.update("INSERT INTO meal_records_archive (" + RECORD_COLUMNS + ") SELECT " +
+                    RECORD_COLUMNS + " FROM meal_records WHERE id IN (:ids)", params);
+                // Stored receipts are only used for reprints, which archived records no longer get
+                namedParameterJdbcTemplate.update("DELETE FROM meal_record_receipts WHERE meal_record_id IN (:ids)", params);
+                namedParameterJdbcTemplate.update("DELETE FROM meal_record_items WHERE meal_record_id IN (:ids)", params);
+                return namedParameterJdbcTemplate.update("DELETE FROM meal_records WHERE id IN (:ids)", params);
+            });
+            if (count == null || count == 0) {
+                break;
+            }
+            moved += count;
+        }
+        log.info("Archived {} meal records of {} in {} ms", moved, month, System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Splits the month's partition off the open-ended one. Months are archived oldest first, so
+     * partitions are added in order; an older month that shows up later (e.g. retention lowered)
+     * lands in the lowest partition covering it.
+     */
+    private void addPartition(YearMonth month, LocalDateTime end) {
+        String name = "p" + month.format(PARTITION_MONTH);
+        List<String> partitions = jdbcTemplate.queryForList(
+            "SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'meal_records_archive' AND PARTITION_NAME IS NOT NULL",
+            String.class);
+        boolean covered = partitions.stream()
+            .anyMatch(partition -> !partition.equals(FUTURE_PARTITION) && partition.compareTo(name) >= 0);
+        if (covered || !partitions.contains(FUTURE_PARTITION)) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE meal_records_archive REORGANIZE PARTITION " + FUTURE_PARTITION + " INTO (" +
+            "PARTITION " + name + " VALUES LESS THAN ('" + end.toLocalDate() + "'), " +
+            "PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN (MAXVALUE))");
+        log.info("Added meal_records_archive partition {}", name);
+    }
+}
@@ -1,29 +1,46 @@
 package et.moe.ethernet.cateteria.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import et.moe.ethernet.cateteria.config.KioskSignatureFilter;
+import et.moe.ethernet.cateteria.config.ReplicaRead;
 import et.moe.ethernet.cateteria.dto.MealRecordDto;
 import et.moe.ethernet.cateteria.dto.EmployeeDto;
 import et.moe.ethernet.cateteria.dto.MealCategoryDto;
 import et.moe.ethernet.cateteria.dto.MealRecordItemDto;
+import et.moe.ethernet.cateteria.dto.MealRecordedEvent;
 import et.moe.ethernet.cateteria.dto.RecordMealWithItemsRequest;
 import et.moe.ethernet.cateteria.entity.*;
 import et.moe.ethernet.cateteria.repository.MealRecordRepository;
 import et.moe.ethernet.cateteria.repository.MealRecordItemRepository;
+import et.moe.ethernet.cateteria.repository.MealRecordReceiptRepository;
 import et.moe.ethernet.cateteria.repository.MealItemRepository;
 import et.moe.ethernet.cateteria.repository.SupportConfigRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class MealRecordService {
     
     private final MealRecordRepository mealRecordRepository;
@@ -31,31 +48,54 @@ public class MealRecordService {
     private final MealItemRepository mealItemRepository;
     private final EmployeeService employeeService;
     private final MealCategoryService mealCategoryService;
+    private final MealTypeService mealTypeService;
     private final SupportConfigRepository supportConfigRepository;
     private final UserService userService;
+    private final ItemStockService itemStockService;
+    private final MealRecordReceiptRepository mealRecordReceiptRepository;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MealRecordArchiveService mealRecordArchiveService;
+    private final TransactionTemplate transactionTemplate;
     
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public List<MealRecordDto> getAllMealRecords() {
         return mealRecordRepository.findAllOrderByRecordedAtDesc().stream()
             .map(MealRecordDto::fromEntity)
             .collect(Collectors.toList());
     }
     
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public List<MealRecordDto> getMealRecordsByEmployee(String employeeId) {
-        return mealRecordRepository.findByEmployeeIdOrderByRecordedAtDesc(employeeId).stream()
+        List<MealRecordDto> records = mealRecordRepository.findByEmployeeIdOrderByRecordedAtDesc(employeeId).stream()
             .map(MealRecordDto::fromEntity)
             .collect(Collectors.toList());
+        // Archived records are all older, so newest first still holds
+        records.addAll(mealRecordArchiveService.findMealRecordsByEmployee(employeeId));
+        return records;
     }
     
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public List<MealRecordDto> getMealRecordsByDateRange(LocalDateTime start, LocalDateTime end) {
-        return mealRecordRepository.findByRecordedAtBetween(start, end).stream()
+        // One read-only transaction, so a month being archived meanwhile is seen in exactly one table
+        List<MealRecordDto> records = mealRecordArchiveService.findMealRecords(start, end, null);
+        mealRecordRepository.findByRecordedAtBetween(start, end).stream()
             .map(MealRecordDto::fromEntity)
-            .collect(Collectors.toList());
+            .forEach(records::add);
+        return records;
     }
     
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public List<MealRecordDto> getMealRecordsByDepartmentAndDateRange(String department, LocalDateTime start, LocalDateTime end) {
-        return mealRecordRepository.findByDepartmentAndDateRange(department, start, end).stream()
+        List<MealRecordDto> records = mealRecordArchiveService.findMealRecords(start, end, department);
+        mealRecordRepository.findByDepartmentAndDateRange(department, start, end).stream()
             .map(MealRecordDto::fromEntity)
-            .collect(Collectors.toList());
+            .forEach(records::add);
+        return records;
     }
     
     public Optional<MealRecordDto> getMealRecordById(String id) {
@@ -78,15 +118,40 @@ public class MealRecordService {
         if (selectedItems == null || selectedItems.isEmpty()) {
             return MealRecordDto.fromEntity(mealRecord);
         }
-        saveMealRecordItems(mealRecord, selectedItems, pricePerItem);
+        MealCategoryDto mealCategory = mealCategoryService.getMealCategoryById(mealRecord.getMealCategory().getId())
+            .orElseThrow(() -> new RuntimeException("Meal category not found"));
+        long alreadyOnTray = mealRecordItemRepository.sumQuantityByMealRecordId(mealRecordId);
+        Map<String, MealItem> mealItems = validateTray(mealCategory, selectedItems, alreadyOnTray);
+        
+        Map<String, Integer> reserved = reserveStock(selectedItems);
+        writeWithStock(reserved, () -> saveMealRecordItems(mealRecord, selectedItems, mealItems, pricePerItem));
         // return with items populated
         MealRecordDto dto = MealRecordDto.fromEntity(mealRecord);
         List<MealRecordItemDto> items = mealRecordItemRepository.findByMealRecordIdOrderByCreatedAtAsc(mealRecordId)
             .stream().map(MealRecordItemDto::fromEntity).collect(Collectors.toList());
         dto.setMealItems(items);
+        storeReceipt(dto, false);
         return dto;
     }
     
+    /**
+     * The meal record as it was captured for its receipt. Records from before receipts were stored
+     * are loaded once and their receipt data stored on the way.
+     */
+    public Optional<MealRecordDto> getReceiptSnapshot(String id) {
+        Optional<MealRecordReceipt> receipt = mealRecordReceiptRepository.findById(id);
+        if (receipt.isPresent()) {
+            try {
+                return Optional.of(objectMapper.readValue(receipt.get().getPayload(), MealRecordDto.class));
+            } catch (JsonProcessingException e) {
+                log.warn("Stored receipt of meal record {} is unreadable, rebuilding it", id, e);
+            }
+        }
+        Optional<MealRecordDto> mealRecord = getMealRecordById(id);
+        mealRecord.ifPresent(snapshot -> storeReceipt(snapshot, receipt.isEmpty()));
+        return mealRecord;
+    }
+    
     public boolean hasUsedMealTypeToday(String cardId, String mealTypeId) {
         LocalDate today = LocalDate.now();
         long existingMeals = mealRecordRepository.countByCardIdAndMealTypeIdAndDate(cardId, mealTypeId, today);
@@ -104,9 +169,14 @@ public class MealRecordService {
             .orElseThrow(() -> new RuntimeException("Employee not found or inactive"));
         
         // Find meal category
-        MealCategory mealCategory = mealCategoryService.getMealCategoryById(mealCategoryId)
-            .map(this::mapToMealCategoryEntity)
+        MealCategoryDto mealCategoryDto = mealCategoryService.getMealCategoryById(mealCategoryId)
             .orElseThrow(() -> new RuntimeException("Meal category not found"));
+        MealCategory mealCategory = mapToMealCategoryEntity(mealCategoryDto);
+        mealTypeService.getMealTypeById(mealCategoryDto.getMealTypeId())
+            .ifPresent(mealType -> mealCategory.getMealType().setName(mealType.getName()));
+        
+        // Validate the tray against the cached category and its active items before any write
+        Map<String, MealItem> mealItems = validateTray(mealCategoryDto, selectedItems, 0);
         
         // Check if employee has already used this meal type today
         LocalDate today = LocalDate.now();
@@ -137,20 +207,55 @@ public class MealRecordService {
         mealRecord.setRecordedAt(LocalDateTime.now());
         
         // Set the current user who recorded the meal
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.isAuthenticated()) {
-            String username = authentication.getName();
-            userService.findByUsername(username).ifPresent(mealRecord::setRecordedByUser);
-        }
+        userService.getCurrentUser().ifPresent(mealRecord::setRecordedByUser);
+        mealRecord.setKioskDeviceId(KioskSignatureFilter.currentDeviceId());
         
-        MealRecord savedRecord = mealRecordRepository.save(mealRecord);
-        
-        // Save meal items if provided
-        if (selectedItems != null && !selectedItems.isEmpty()) {
-            saveMealRecordItems(savedRecord, selectedItems, pricing.actualPrice);
+        // Reserve item stock before writing anything; given back if the record and its items roll back
+        Map<String, Integer> reserved = reserveStock(selectedItems);
+        MealRecordDto dto = writeWithStock(reserved, () -> {
+            MealRecord savedRecord = mealRecordRepository.save(mealRecord);
+            
+            // Save meal items if provided
+            List<MealRecordItemDto> savedItems = new ArrayList<>();
+            if (selectedItems != null && !selectedItems.isEmpty()) {
+                savedItems = saveMealRecordItems(savedRecord, selectedItems, mealItems, pricing.actualPrice);
+            }
+            
+            MealRecordDto saved = MealRecordDto.fromEntity(savedRecord);
+            saved.setMealItems(savedItems);
+            return saved;
+        });
+        storeReceipt(dto, true);
+        // Live feed listeners only buffer the event, so the tap does not wait for them
+        eventPublisher.publishEvent(new MealRecordedEvent(dto));
+        return dto;
+    }
+    
+    /**
+     * Runs the writes of a tap in one transaction. The reserved stock is given back only if that
+     * transaction rolls back, or never starts.
+     */
+    private <T> T writeWithStock(Map<String, Integer> reserved, Supplier<T> writes) {
+        AtomicBoolean releaseRegistered = new AtomicBoolean();
+        try {
+            return transactionTemplate.execute(status -> {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int completionStatus) {
+                        if (completionStatus == STATUS_ROLLED_BACK) {
+                            itemStockService.release(reserved);
+                        }
+                    }
+                });
+                releaseRegistered.set(true);
+                return writes.get();
+            });
+        } catch (RuntimeException e) {
+            if (!releaseRegistered.get()) {
+                itemStockService.release(reserved);
+            }
+            throw e;
         }
-        
-        return MealRecordDto.fromEntity(savedRecord);
     }
     
     private MealPricing calculateMealPricing(Employee employee, MealCategory mealCategory) {
@@ -199,6 +304,7 @@ public class MealRecordService {
         mealCategory.setName(mealCategoryDto.getName());
         mealCategory.setNormalPrice(mealCategoryDto.getNormalPrice());
         mealCategory.setSupportedPrice(mealCategoryDto.getSupportedPrice());
+        mealCategory.setAllowedCount(mealCategoryDto.getAllowedCount());
         mealCategory.setActive(mealCategoryDto.isActive());
         
         // Create a minimal meal type reference
@@ -209,11 +315,54 @@ public class MealRecordService {
         return mealCategory;
     }
     
-    private void saveMealRecordItems(MealRecord mealRecord, List<RecordMealWithItemsRequest.SelectedMealItem> selectedItems, BigDecimal pricePerItem) {
+    private Map<String, Integer> reserveStock(List<RecordMealWithItemsRequest.SelectedMealItem> selectedItems) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        if (selectedItems != null) {
+            for (RecordMealWithItemsRequest.SelectedMealItem selectedItem : selectedItems) {
+                quantities.merge(selectedItem.getMealItemId(), selectedItem.getQuantity(), Integer::sum);
+            }
+        }
+        itemStockService.reserve(quantities);
+        return quantities;
+    }
+    
+    /**
+     * Checks the selected items against the category: each item must be an active item of this
+     * category and the tray may hold at most {@code allowedCount} items in total. Uses the cached
+     * category and active-item list only, so a tray costs no per-item queries.
+     *
+     * @return the selected meal items by ID
+     */
+    public Map<String, MealItem> validateTray(MealCategoryDto mealCategory, List<RecordMealWithItemsRequest.SelectedMealItem> selectedItems, long alreadyOnTray) {
+        if (selectedItems == null || selectedItems.isEmpty()) {
+            return Map.of();
+        }
+        
+        Map<String, MealItem> activeItems = mealItemRepository.findByMealCategoryIdAndIsActiveTrue(mealCategory.getId()).stream()
+            .collect(Collectors.toMap(MealItem::getId, Function.identity()));
+        
+        long totalQuantity = alreadyOnTray;
+        for (RecordMealWithItemsRequest.SelectedMealItem selectedItem : selectedItems) {
+            if (selectedItem.getQuantity() == null || selectedItem.getQuantity() <= 0) {
+                throw new RuntimeException("Invalid quantity for meal item: " + selectedItem.getMealItemId());
+            }
+            if (!activeItems.containsKey(selectedItem.getMealItemId())) {
+                throw new RuntimeException("Meal item not available in this category: " + selectedItem.getMealItemId());
+            }
+            totalQuantity += selectedItem.getQuantity();
+        }
+        
+        int allowedCount = mealCategory.getAllowedCount() != null ? mealCategory.getAllowedCount() : 1;
+        if (totalQuantity > allowedCount) {
+            throw new RuntimeException("Too many items selected: " + totalQuantity + " (allowed " + allowedCount + ")");
+        }
+        return activeItems;
+    }
+    
+    private List<MealRecordItemDto> saveMealRecordItems(MealRecord mealRecord, List<RecordMealWithItemsRequest.SelectedMealItem> selectedItems, Map<String, MealItem> mealItems, BigDecimal pricePerItem) {
+        List<MealRecordItemDto> saved = new ArrayList<>();
         for (RecordMealWithItemsRequest.SelectedMealItem selectedItem : selectedItems) {
-            // Find the meal item
-            MealItem mealItem = mealItemRepository.findById(selectedItem.getMealItemId())
-                .orElseThrow(() -> new RuntimeException("Meal item not found: " + selectedItem.getMealItemId()));
+            MealItem mealItem = mealItems.get(selectedItem.getMealItemId());
             
             // Create meal record item
             MealRecordItem mealRecordItem = new MealRecordItem();
@@ -223,7 +372,28 @@ public class MealRecordService {
             mealRecordItem.setPricePerItem(pricePerItem);
             mealRecordItem.setTotalPrice(pricePerItem.multiply(BigDecimal.valueOf(selectedItem.getQuantity())));
             
-            mealRecordItemRepository.save(mealRecordItem);
+            saved.add(MealRecordItemDto.fromEntity(mealRecordItemRepository.save(mealRecordItem)));
+        }
+        return saved;
+    }
+    
+    /**
+     * Stores the receipt data of a record. A failure here must not fail the tap; the receipt is
+     * rebuilt from the record on the next reprint. A receipt known to be missing (new record) is
+     * inserted directly; otherwise the stored one is updated.
+     */
+    private void storeReceipt(MealRecordDto mealRecord, boolean missing) {
+        try {
+            String payload = objectMapper.writeValueAsString(mealRecord);
+            MealRecordReceipt receipt = missing ? null : mealRecordReceiptRepository.findById(mealRecord.getId()).orElse(null);
+            if (receipt == null) {
+                receipt = new MealRecordReceipt();
+                receipt.setMealRecordId(mealRecord.getId());
+            }
+            receipt.setPayload(payload);
+            mealRecordReceiptRepository.save(receipt);
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Failed to store receipt of meal record {}", mealRecord.getId(), e);
         }
     }
     
@@ -5,7 +5,9 @@ import et.moe.ethernet.cateteria.entity.MealType;
 import et.moe.ethernet.cateteria.repository.MealTypeRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -15,6 +17,7 @@ import java.util.stream.Collectors;
 public class MealTypeService {
     
     private final MealTypeRepository mealTypeRepository;
+    private final MenuSnapshotService menuSnapshotService;
     
     public List<MealTypeDto> getAllMealTypes() {
         return mealTypeRepository.findAll().stream()
@@ -40,6 +43,7 @@ public class MealTypeService {
     
     public MealTypeDto createMealType(MealType mealType) {
         MealType savedMealType = mealTypeRepository.save(mealType);
+        menuSnapshotService.catalogChanged();
         return MealTypeDto.fromEntity(savedMealType);
     }
     
@@ -50,7 +54,9 @@ public class MealTypeService {
                 existingMealType.setIcon(mealTypeUpdates.getIcon());
                 existingMealType.setColor(mealTypeUpdates.getColor());
                 existingMealType.setActive(mealTypeUpdates.isActive());
-                return MealTypeDto.fromEntity(mealTypeRepository.save(existingMealType));
+                MealTypeDto saved = MealTypeDto.fromEntity(mealTypeRepository.save(existingMealType));
+                menuSnapshotService.catalogChanged();
+                return saved;
             });
     }
     
@@ -59,14 +65,23 @@ public class MealTypeService {
             .map(mealType -> {
                 mealType.setActive(!mealType.isActive());
                 mealTypeRepository.save(mealType);
+                menuSnapshotService.catalogChanged();
                 return true;
             })
             .orElse(false);
     }
     
+    @Transactional
+    public int setMealTypesActive(List<String> ids, boolean active) {
+        int affected = mealTypeRepository.updateActiveByIds(ids, active, LocalDateTime.now());
+        menuSnapshotService.catalogChanged();
+        return affected;
+    }
+    
     public boolean deleteMealType(String id) {
         if (mealTypeRepository.existsById(id)) {
             mealTypeRepository.deleteById(id);
+            menuSnapshotService.catalogChanged();
             return true;
         }
         return false;
@@ -0,0 +1,159 @@
+package et.moe.ethernet.cateteria.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import et.moe.ethernet.cateteria.dto.MealCategoryDto;
+import et.moe.ethernet.cateteria.dto.MealItemDto;
+import et.moe.ethernet.cateteria.dto.MealTypeDto;
+import et.moe.ethernet.cateteria.dto.MenuSnapshotDto;
+import et.moe.ethernet.cateteria.repository.MealCategoryRepository;
+import et.moe.ethernet.cateteria.repository.MealItemRepository;
+import et.moe.ethernet.cateteria.repository.MealTypeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Holds the whole active menu (types -> categories -> items) pre-serialized to JSON so kiosks can
+ * draw it with a single request. The snapshot is rebuilt whenever a catalog service reports a
+ * write. The version is derived from the content hash, so it only changes when the menu content
+ * does and stays the same across restarts and instances; it identifies content and is not ordered.
+ * <p>
+ * Live item stock changes with every tap and is left out ({@code totalAvailable} is null); kiosks
+ * read it from {@code GET /menu/stock}, so stock movements do not change the version.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MenuSnapshotService {
+
+    private final MealTypeRepository mealTypeRepository;
+    private final MealCategoryRepository mealCategoryRepository;
+    private final MealItemRepository mealItemRepository;
+    private final ObjectMapper objectMapper;
+
+    private volatile Snapshot current;
+
+    // A lock rather than synchronized: the rebuild queries the database, and blocking inside a
+    // monitor would pin the carrier thread when requests run on virtual threads
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        rebuild();
+    }
+
+    public Snapshot getSnapshot() {
+        Snapshot snapshot = current;
+        return snapshot != null ? snapshot : rebuild();
+    }
+
+    /**
+     * Called by the catalog services after a write. Inside a transaction the rebuild waits for the
+     * commit so the snapshot never shows rolled-back data.
+     */
+    public void catalogChanged() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rebuild();
+                }
+            });
+        } else {
+            rebuild();
+        }
+    }
+
+    public Snapshot rebuild() {
+        rebuildLock.lock();
+        try {
+            return buildSnapshot();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private Snapshot buildSnapshot() {
+        Map<String, List<MealItemDto>> itemsByCategory = mealItemRepository.findByIsActiveTrue().stream()
+            .map(MealItemDto::fromEntity)
+            .map(item -> {
+                item.setTotalAvailable(null);
+                return item;
+            })
+            .collect(Collectors.groupingBy(MealItemDto::getMealCategoryId));
+        Map<String, List<MealCategoryDto>> categoriesByType = mealCategoryRepository.findByIsActiveTrue().stream()
+            .map(MealCategoryDto::fromEntity)
+            .collect(Collectors.groupingBy(MealCategoryDto::getMealTypeId));
+
+        List<MenuSnapshotDto.MenuMealType> mealTypes = new ArrayList<>();
+        for (MealTypeDto mealType : mealTypeRepository.findByIsActiveTrue().stream().map(MealTypeDto::fromEntity).toList()) {
+            List<MenuSnapshotDto.MenuMealCategory> categories = categoriesByType.getOrDefault(mealType.getId(), List.of()).stream()
+                .map(category -> new MenuSnapshotDto.MenuMealCategory(category, itemsByCategory.getOrDefault(category.getId(), List.of())))
+                .toList();
+            mealTypes.add(new MenuSnapshotDto.MenuMealType(mealType, categories));
+        }
+
+        try {
+            byte[] contentHash = sha256(objectMapper.writeValueAsBytes(mealTypes));
+            Snapshot previous = current;
+            if (previous != null && Arrays.equals(previous.contentHash, contentHash)) {
+                return previous;
+            }
+            long version = ByteBuffer.wrap(contentHash).getLong() & Long.MAX_VALUE;
+            byte[] body = objectMapper.writeValueAsBytes(new MenuSnapshotDto(version, LocalDateTime.now(), mealTypes));
+            List<String> itemIds = itemsByCategory.values().stream().flatMap(List::stream).map(MealItemDto::getId).toList();
+            Snapshot snapshot = new Snapshot(version, "\"" + HexFormat.of().formatHex(contentHash, 0, 16) + "\"", body, contentHash, itemIds);
+            current = snapshot;
+            log.debug("Menu snapshot rebuilt: version {}, {} bytes", version, body.length);
+            return snapshot;
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize menu snapshot", e);
+        }
+    }
+
+    private static byte[] sha256(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class Snapshot {
+        private final long version;
+        private final String etag;
+        private final byte[] body;
+        private final byte[] contentHash;
+        private final List<String> itemIds;
+
+        Snapshot(long version, String etag, byte[] body, byte[] contentHash, List<String> itemIds) {
+            this.version = version;
+            this.etag = etag;
+            this.body = body;
+            this.contentHash = contentHash;
+            this.itemIds = itemIds;
+        }
+
+        public long getVersion() { return version; }
+        public String getEtag() { return etag; }
+        public byte[] getBody() { return body; }
+        public List<String> getItemIds() { return itemIds; }
+    }
+}
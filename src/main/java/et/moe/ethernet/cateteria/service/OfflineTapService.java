@@ -0,0 +1,394 @@
+package et.moe.ethernet.cateteria.service;
+
+import et.moe.ethernet.cateteria.config.KioskSignatureFilter;
+import et.moe.ethernet.cateteria.dto.MealCategoryDto;
+import et.moe.ethernet.cateteria.dto.OfflineTapBatchRequest;
+import et.moe.ethernet.cateteria.dto.OfflineTapBatchResult;
+import et.moe.ethernet.cateteria.dto.OfflineTapBatchResult.TapResult;
+import et.moe.ethernet.cateteria.dto.OfflineTapBatchResult.TapStatus;
+import et.moe.ethernet.cateteria.dto.RecordMealWithItemsRequest;
+import et.moe.ethernet.cateteria.entity.Employee;
+import et.moe.ethernet.cateteria.entity.MealRecord;
+import et.moe.ethernet.cateteria.entity.SupportConfig;
+import et.moe.ethernet.cateteria.entity.User;
+import et.moe.ethernet.cateteria.repository.EmployeeRepository;
+import et.moe.ethernet.cateteria.repository.SupportConfigRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Records taps a kiosk collected while offline. The whole batch is checked with a handful of
+ * set-based queries (earlier uploads, employees, existing meals of the affected days) and the
+ * accepted taps are written with JDBC batches, keeping their original time. Each tap is priced
+ * with the support configuration that was active when it happened.
+ *
+ * <p>Taps are recorded for the employee the kiosk resolved the card ID or short code to from its
+ * roster, not for whoever holds the card now: a card re-issued between the tap and the upload must
+ * not move the meal to its new owner.
+ *
+ * <p>A kiosk may upload the same batch twice at once (retry after a timeout). The slower upload
+ * then fails on the unique {@code client_tap_id}; it is rolled back and checked again, and finds
+ * the other upload's records as {@code ALREADY_RECORDED}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OfflineTapService {
+
+    private static final DateTimeFormatter ORDER_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    // MySQL handles IN lists of this size comfortably
+    private static final int IN_CHUNK_SIZE = 1000;
+    private static final int BATCH_SIZE = 500;
+    // One try plus retries after losing a race with concurrent uploads of the same taps
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final String INSERT_RECORD_SQL =
+        "INSERT INTO meal_records (id, employee_id, card_id, meal_type_id, meal_category_id, recorded_by_user_id, " +
+        "meal_name, category, price_type, normal_price, supported_price, actual_price, support_amount, employee_salary, " +
+        "recorded_at, created_at, order_number, client_tap_id, kiosk_device_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_ITEM_SQL =
+        "INSERT INTO meal_record_items (id, meal_record_id, meal_item_id, quantity, price_per_item, total_price, created_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final EmployeeRepository employeeRepository;
+    private final SupportConfigRepository supportConfigRepository;
+    private final MealCategoryService mealCategoryService;
+    private final MealRecordService mealRecordService;
+    private final ItemStockService itemStockService;
+    private final UserService userService;
+    private final TodayCountersService todayCountersService;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${cafeteria.offline.max-batch-size:5000}")
+    private int maxBatchSize;
+
+    // Taps older than this are not accepted any more (payroll for that period may be closed)
+    @Value("${cafeteria.offline.max-age-days:7}")
+    private int maxAgeDays;
+
+    // Tolerated kiosk clock drift into the future
+    @Value("${cafeteria.offline.max-clock-skew-seconds:300}")
+    private int maxClockSkewSeconds;
+
+    public OfflineTapBatchResult ingest(List<OfflineTapBatchRequest.OfflineTap> taps) {
+        long started = System.currentTimeMillis();
+        if (taps == null || taps.isEmpty()) {
+            throw new RuntimeException("No taps in batch");
+        }
+        if (taps.size() > maxBatchSize) {
+            throw new RuntimeException("Too many taps in one batch: " + taps.size() + " (max " + maxBatchSize + ")");
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> ingestBatch(taps, started));
+            } catch (DuplicateKeyException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw new RuntimeException("Taps are being uploaded concurrently, retry the upload", e);
+                }
+                // A concurrent upload of the same taps committed first; the next try finds its records
+                log.info("Offline batch of {} taps raced with another upload, checking again", taps.size());
+            }
+        }
+    }
+
+    private OfflineTapBatchResult ingestBatch(List<OfflineTapBatchRequest.OfflineTap> taps, long started) {
+        TapResult[] results = new TapResult[taps.size()];
+        List<Integer> pending = validateFields(taps, results);
+        pending = skipEarlierUploads(taps, pending, results);
+
+        // Resolve employees and categories for the whole batch at once
+        Set<String> employeeIds = new HashSet<>();
+        for (int i : pending) {
+            employeeIds.add(taps.get(i).getEmployeeId());
+        }
+        Map<String, Employee> employees = new HashMap<>();
+        for (List<String> chunk : chunks(new ArrayList<>(employeeIds))) {
+            for (Employee employee : employeeRepository.findAllById(chunk)) {
+                employees.put(employee.getId(), employee);
+            }
+        }
+        Map<String, Optional<MealCategoryDto>> categories = new HashMap<>();
+
+        List<Integer> valid = new ArrayList<>();
+        for (int i : pending) {
+            OfflineTapBatchRequest.OfflineTap tap = taps.get(i);
+            String mismatch = verifyEmployee(employees.get(tap.getEmployeeId()), tap);
+            if (mismatch != null) {
+                results[i] = reject(tap, mismatch);
+                continue;
+            }
+            Optional<MealCategoryDto> category = categories.computeIfAbsent(tap.getMealCategoryId(), mealCategoryService::getMealCategoryById);
+            if (category.isEmpty()) {
+                results[i] = reject(tap, "Meal category not found");
+                continue;
+            }
+            try {
+                mealRecordService.validateTray(category.get(), tap.getSelectedItems(), 0);
+            } catch (RuntimeException e) {
+                results[i] = reject(tap, e.getMessage());
+                continue;
+            }
+            valid.add(i);
+        }
+
+        // One meal per meal type per day: existing records of the affected days, then the batch in tap order
+        Map<String, String[]> taken = findExistingMeals(taps, valid);
+        valid.sort(Comparator.comparing(i -> taps.get(i).getRecordedAt()));
+
+        List<SupportConfig> supportHistory = supportConfigRepository.findAllByOrderByCreatedAtAsc();
+        String recordedByUserId = userService.getCurrentUser().map(User::getId).orElse(null);
+        String kioskDeviceId = KioskSignatureFilter.currentDeviceId();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> recordRows = new ArrayList<>();
+        List<TodayCountersService.Tap> counted = new ArrayList<>();
+        List<Object[]> itemRows = new ArrayList<>();
+        Map<String, Integer> consumed = new LinkedHashMap<>();
+
+        for (int i : valid) {
+            OfflineTapBatchRequest.OfflineTap tap = taps.get(i);
+            MealCategoryDto category = categories.get(tap.getMealCategoryId()).get();
+            String key = dayKey(tap.getEmployeeId(), category.getMealTypeId(), tap.getRecordedAt().toLocalDate());
+            String[] existing = taken.get(key);
+            if (existing != null) {
+                results[i] = new TapResult(tap.getClientId(), TapStatus.CONFLICT, existing[0], existing[1],
+                    "Employee has already used this meal type on " + tap.getRecordedAt().toLocalDate());
+                continue;
+            }
+
+            Employee employee = employees.get(tap.getEmployeeId());
+            BigDecimal maxSalary = supportConfigAt(supportHistory, tap.getRecordedAt()).getMaxSalaryForSupport();
+            boolean eligible = employee.getSalary() != null && employee.getSalary().compareTo(maxSalary) < 0;
+            BigDecimal normalPrice = category.getNormalPrice();
+            BigDecimal supportedPrice = category.getSupportedPrice();
+            BigDecimal actualPrice = eligible ? supportedPrice : normalPrice;
+            BigDecimal supportAmount = eligible ? normalPrice.subtract(supportedPrice) : BigDecimal.ZERO;
+
+            String id = UUID.randomUUID().toString();
+            String orderNumber = "ORD-" + tap.getRecordedAt().format(ORDER_DATE) + "-"
+                + id.replace("-", "").substring(0, 12).toUpperCase();
+            recordRows.add(new Object[]{
+                id, employee.getId(), tap.getCardId(), category.getMealTypeId(), category.getId(), recordedByUserId,
+                category.getName(), category.getCategory().toUpperCase(),
+                (eligible ? MealRecord.PriceType.SUPPORTED : MealRecord.PriceType.NORMAL).name(),
+                normalPrice, supportedPrice, actualPrice, supportAmount,
+                employee.getSalary(), Timestamp.valueOf(tap.getRecordedAt()), now, orderNumber, tap.getClientId(), kioskDeviceId
+            });
+            counted.add(new TodayCountersService.Tap(tap.getRecordedAt(), category.getMealTypeId(), eligible, actualPrice,
+                supportAmount, normalPrice));
+            if (tap.getSelectedItems() != null) {
+                for (RecordMealWithItemsRequest.SelectedMealItem item : tap.getSelectedItems()) {
+                    itemRows.add(new Object[]{
+                        UUID.randomUUID().toString(), id, item.getMealItemId(), item.getQuantity(),
+                        actualPrice, actualPrice.multiply(BigDecimal.valueOf(item.getQuantity())), now
+                    });
+                    consumed.merge(item.getMealItemId(), item.getQuantity(), Integer::sum);
+                }
+            }
+            taken.put(key, new String[]{id, orderNumber});
+            results[i] = new TapResult(tap.getClientId(), TapStatus.ACCEPTED, id, orderNumber, null);
+        }
+
+        for (List<Object[]> chunk : chunks(recordRows, BATCH_SIZE)) {
+            jdbcTemplate.batchUpdate(INSERT_RECORD_SQL, chunk);
+        }
+        for (List<Object[]> chunk : chunks(itemRows, BATCH_SIZE)) {
+            jdbcTemplate.batchUpdate(INSERT_ITEM_SQL, chunk);
+        }
+        // The food was served while offline, so stock is booked even if it ran out since
+        itemStockService.consume(consumed);
+        // Taps of today show up in the today counters once the batch is committed
+        todayCountersService.tapsRecorded(counted);
+
+        OfflineTapBatchResult result = new OfflineTapBatchResult();
+        result.setReceived(taps.size());
+        for (TapResult tapResult : results) {
+            switch (tapResult.getStatus()) {
+                case ACCEPTED -> result.setAccepted(result.getAccepted() + 1);
+                case ALREADY_RECORDED -> result.setAlreadyRecorded(result.getAlreadyRecorded() + 1);
+                case CONFLICT -> result.setConflicts(result.getConflicts() + 1);
+                case REJECTED -> result.setRejected(result.getRejected() + 1);
+            }
+            result.getResults().add(tapResult);
+        }
+        result.setDurationMs(System.currentTimeMillis() - started);
+        log.info("Offline taps ingested: {} received, {} accepted, {} already recorded, {} conflicts, {} rejected in {} ms",
+            result.getReceived(), result.getAccepted(), result.getAlreadyRecorded(), result.getConflicts(),
+            result.getRejected(), result.getDurationMs());
+        return result;
+    }
+
+    private List<Integer> validateFields(List<OfflineTapBatchRequest.OfflineTap> taps, TapResult[] results) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime latest = now.plusSeconds(maxClockSkewSeconds);
+        LocalDateTime earliest = now.toLocalDate().minusDays(maxAgeDays).atStartOfDay();
+        Set<String> clientIds = new HashSet<>();
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < taps.size(); i++) {
+            OfflineTapBatchRequest.OfflineTap tap = taps.get(i);
+            if (tap.getClientId() == null || tap.getClientId().isBlank() || tap.getClientId().length() > 100) {
+                results[i] = reject(tap, "clientId is required (max 100 characters)");
+            } else if (!clientIds.add(tap.getClientId())) {
+                results[i] = reject(tap, "Duplicate clientId in batch");
+            } else if (tap.getCardId() == null || tap.getEmployeeId() == null || tap.getMealCategoryId() == null) {
+                results[i] = reject(tap, "Missing required fields: cardId, employeeId and mealCategoryId");
+            } else if (tap.getRecordedAt() == null) {
+                results[i] = reject(tap, "Missing required field: recordedAt");
+            } else if (tap.getRecordedAt().isAfter(latest)) {
+                results[i] = reject(tap, "recordedAt is in the future");
+            } else if (tap.getRecordedAt().isBefore(earliest)) {
+                results[i] = reject(tap, "recordedAt is older than " + maxAgeDays + " days");
+            } else {
+                pending.add(i);
+            }
+        }
+        return pending;
+    }
+
+    private List<Integer> skipEarlierUploads(List<OfflineTapBatchRequest.OfflineTap> taps, List<Integer> pending, TapResult[] results) {
+        Map<String, String[]> uploaded = new HashMap<>();
+        List<String> clientIds = pending.stream().map(i -> taps.get(i).getClientId()).toList();
+        for (List<String> chunk : chunks(clientIds)) {
+            namedParameterJdbcTemplate.query(
+                "SELECT client_tap_id, id, order_number FROM meal_records WHERE client_tap_id IN (:clientIds)",
+                new MapSqlParameterSource("clientIds", chunk),
+                rs -> {
+                    uploaded.put(rs.getString("client_tap_id"), new String[]{rs.getString("id"), rs.getString("order_number")});
+                });
+        }
+
+        List<Integer> remaining = new ArrayList<>();
+        for (int i : pending) {
+            String[] record = uploaded.get(taps.get(i).getClientId());
+            if (record != null) {
+                results[i] = new TapResult(taps.get(i).getClientId(), TapStatus.ALREADY_RECORDED, record[0], record[1], null);
+            } else {
+                remaining.add(i);
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Why a tap cannot be recorded for the employee the kiosk resolved it to, or null if it can.
+     * The tapped card ID or short code has to belong to the active employee, as it does for live
+     * taps. If it no longer does, the tap is still accepted when the employee was changed after the
+     * tap (card re-issued or employee deactivated since), because the kiosk's roster was current then.
+     */
+    private static String verifyEmployee(Employee employee, OfflineTapBatchRequest.OfflineTap tap) {
+        if (employee == null || employee.getDeletedAt() != null) {
+            return "Employee not found";
+        }
+        boolean holdsCard = tap.getCardId().equals(employee.getCardId()) || tap.getCardId().equals(employee.getShortCode());
+        if (employee.isActive() && holdsCard) {
+            return null;
+        }
+        if (employee.getUpdatedAt() != null && employee.getUpdatedAt().isAfter(tap.getRecordedAt())) {
+            return null;
+        }
+        return employee.isActive() ? "Card does not belong to the employee" : "Employee not found or inactive";
+    }
+
+    /**
+     * Meals already recorded for the batch's employees on the batch's days, by employee, meal type and day.
+     */
+    private Map<String, String[]> findExistingMeals(List<OfflineTapBatchRequest.OfflineTap> taps, List<Integer> valid) {
+        Map<String, String[]> taken = new HashMap<>();
+        if (valid.isEmpty()) {
+            return taken;
+        }
+        Set<String> employeeIds = new HashSet<>();
+        LocalDate firstDay = null;
+        LocalDate lastDay = null;
+        for (int i : valid) {
+            OfflineTapBatchRequest.OfflineTap tap = taps.get(i);
+            employeeIds.add(tap.getEmployeeId());
+            LocalDate day = tap.getRecordedAt().toLocalDate();
+            firstDay = firstDay == null || day.isBefore(firstDay) ? day : firstDay;
+            lastDay = lastDay == null || day.isAfter(lastDay) ? day : lastDay;
+        }
+
+        for (List<String> chunk : chunks(new ArrayList<>(employeeIds))) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("employeeIds", chunk)
+                .addValue("from", Timestamp.valueOf(firstDay.atStartOfDay()))
+                .addValue("to", Timestamp.valueOf(lastDay.plusDays(1).atStartOfDay()));
+            namedParameterJdbcTemplate.query(
+                "SELECT id, order_number, employee_id, meal_type_id, recorded_at FROM meal_records " +
+                "WHERE employee_id IN (:employeeIds) AND recorded_at >= :from AND recorded_at < :to",
+                params,
+                rs -> {
+                    String key = dayKey(rs.getString("employee_id"), rs.getString("meal_type_id"),
+                        rs.getTimestamp("recorded_at").toLocalDateTime().toLocalDate());
+                    taken.putIfAbsent(key, new String[]{rs.getString("id"), rs.getString("order_number")});
+                });
+        }
+        return taken;
+    }
+
+    /**
+     * The configuration in force at the given time: the last one created before it. Replaced
+     * configurations are kept (deactivated), so the list is the full history.
+     */
+    private static SupportConfig supportConfigAt(List<SupportConfig> history, LocalDateTime time) {
+        SupportConfig inForce = null;
+        for (SupportConfig config : history) {
+            if (config.getCreatedAt() != null && config.getCreatedAt().isAfter(time)) {
+                break;
+            }
+            inForce = config;
+        }
+        if (inForce != null) {
+            return inForce;
+        }
+        // Tap from before the first configuration: use the oldest one
+        return history.isEmpty() ? new SupportConfig() : history.get(0);
+    }
+
+    private static TapResult reject(OfflineTapBatchRequest.OfflineTap tap, String message) {
+        return new TapResult(tap.getClientId(), TapStatus.REJECTED, null, null, message);
+    }
+
+    private static String dayKey(String employeeId, String mealTypeId, LocalDate day) {
+        return employeeId + '|' + mealTypeId + '|' + day;
+    }
+
+    private static <T> List<List<T>> chunks(List<T> list) {
+        return chunks(list, IN_CHUNK_SIZE);
+    }
+
+    private static <T> List<List<T>> chunks(List<T> list, int size) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int start = 0; start < list.size(); start += size) {
+            chunks.add(list.subList(start, Math.min(start + size, list.size())));
+        }
+        return chunks;
+    }
+}
@@ -1,112 +1,78 @@
 package et.moe.ethernet.cateteria.service;
 
 import et.moe.ethernet.cateteria.dto.MealRecordDto;
-import et.moe.ethernet.cateteria.dto.EmployeeDto;
-import et.moe.ethernet.cateteria.dto.MealCategoryDto;
-import et.moe.ethernet.cateteria.dto.MealTypeDto;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.awt.Font;
 
 @Service
 @RequiredArgsConstructor
 public class PrintService {
-    
-    private final EmployeeService employeeService;
-    private final MealCategoryService mealCategoryService;
-    private final MealTypeService mealTypeService;
-    
+
+    private static final String BOLD_MARKER = "**";
+
+    private final ReceiptTemplateService receiptTemplateService;
+
+    @Value("${cafeteria.print.paper-width-dots:576}")
+    private int paperWidthDots;
+
+    // Used for text the printer cannot show from its code page (e.g. Ethiopic names)
+    @Value("${cafeteria.print.raster-font:Noto Sans Ethiopic}")
+    private String rasterFontName;
+
+    @Value("${cafeteria.print.raster-font-size:24}")
+    private int rasterFontSize;
+
+    private Font rasterFont;
+
+    @PostConstruct
+    public void init() {
+        rasterFont = new Font(rasterFontName, Font.PLAIN, rasterFontSize);
+    }
+
     public String generateReceiptText(MealRecordDto mealRecord) {
-        StringBuilder receipt = new StringBuilder();
-        
-        // Get employee and meal category details
-        EmployeeDto employee = employeeService.getEmployeeByCardId(mealRecord.getCardId())
-            .orElseThrow(() -> new RuntimeException("Employee not found"));
-        
-        MealCategoryDto mealCategory = mealCategoryService.getMealCategoryById(mealRecord.getMealCategoryId())
-            .orElseThrow(() -> new RuntimeException("Meal category not found"));
-        MealTypeDto mealType = mealTypeService.getMealTypeById(mealRecord.getMealTypeId())
-            .orElseThrow(() -> new RuntimeException("Meal type not found"));
-        
-        // Format current time
-        String currentTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss"));
-        String currentDate = LocalDateTime.now().format(DateTimeFormatter.ofPattern("MM/dd/yyyy"));
-        
-        // Generate simplified receipt content with only requested fields - ensure UTF-8 encoding
-        receipt.append("MOE CAFETERIA\n");
-        receipt.append("Order: ").append(mealRecord.getOrderNumber()).append("\n");
-        receipt.append("Date: ").append(currentDate).append("\n");
-        receipt.append("Time: ").append(currentTime).append("\n");
-        receipt.append("Employee: ").append(employee.getShortCode()).append("\n");
-        receipt.append("Meal Type: ").append(mealType.getName()).append("\n\n");
-        receipt.append("Meal Category: **").append(mealCategory.getName()).append("**\n\n");
-        
-        // Add meal items if available
-        if (mealRecord.getMealItems() != null && !mealRecord.getMealItems().isEmpty()) {
-            receipt.append("SELECTED ITEMS:\n");
-            double totalPrice = 0.0;
-            for (var mealItem : mealRecord.getMealItems()) {
-                double itemTotal = mealItem.getPricePerItem().doubleValue() * mealItem.getQuantity();
-                totalPrice += itemTotal;
-                receipt.append(mealItem.getMealItemName())
-                      .append(" x").append(mealItem.getQuantity())
-                      .append(" - ").append(String.format("%.2f", itemTotal)).append(" ETB\n");
-            }
-            receipt.append("\nTOTAL: ").append(String.format("%.2f", totalPrice)).append(" ETB\n\n");
-        }
-        
-        receipt.append("Actual Price: ").append(String.format("%.2f", mealRecord.getActualPrice())).append(" ETB\n");
-        receipt.append("Thank you for using our service!\n");
-        
-        return receipt.toString();
+        return receiptTemplateService.render("detailed", mealRecord);
     }
-    
+
     public String generateSimpleReceiptText(MealRecordDto mealRecord) {
-        StringBuilder receipt = new StringBuilder();
-        
-        // Get employee and meal category details
-        EmployeeDto employee = employeeService.getEmployeeByCardId(mealRecord.getCardId())
-            .orElseThrow(() -> new RuntimeException("Employee not found"));
-        
-        MealCategoryDto mealCategory = mealCategoryService.getMealCategoryById(mealRecord.getMealCategoryId())
-            .orElseThrow(() -> new RuntimeException("Meal category not found"));
-         MealTypeDto mealType = mealTypeService.getMealTypeById(mealRecord.getMealTypeId())
-            .orElseThrow(() -> new RuntimeException("Meal category not found"));
-        
-        // Format current time
-        String currentTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss"));
-        String currentDate = LocalDateTime.now().format(DateTimeFormatter.ofPattern("MM/dd/yyyy"));
-        
-        // Generate simplified receipt content with only requested fields - ensure UTF-8 encoding
-        receipt.append("MOE CAFETERIA\n");
-        receipt.append("Order: ").append(mealRecord.getOrderNumber()).append("\n");
-        receipt.append("Date: ").append(currentDate).append("\n");
-        receipt.append("Time: ").append(currentTime).append("\n");
-        receipt.append("Employee: ").append(employee.getShortCode()).append("\n");
-        receipt.append("Meal Type: ").append(mealType.getName()).append("\n");
-        receipt.append("Meal Category: **").append(mealCategory.getName()).append("**\n");
-        
-        // Add meal items if available
-        if (mealRecord.getMealItems() != null && !mealRecord.getMealItems().isEmpty()) {
-            receipt.append("SELECTED ITEMS:\n");
-            double totalPrice = 0.0;
-            for (var mealItem : mealRecord.getMealItems()) {
-                double itemTotal = mealItem.getPricePerItem().doubleValue() * mealItem.getQuantity();
-                totalPrice += itemTotal;
-                receipt.append(mealItem.getMealItemName())
-                      .append(" x").append(mealItem.getQuantity())
-                      .append(" - ").append(String.format("%.2f", itemTotal)).append(" ETB\n");
+        return receiptTemplateService.render("simple", mealRecord);
+    }
+
+    public String generateReceiptText(String format, MealRecordDto mealRecord) {
+        return receiptTemplateService.render(format, mealRecord);
+    }
+
+    /**
+     * Renders a receipt template as ESC/POS bytes. The first line is printed as a centered title
+     * and lines containing {@code **bold**} markers are printed in bold.
+     */
+    public byte[] generateReceiptEscPos(String format, MealRecordDto mealRecord) {
+        String text = receiptTemplateService.render(format, mealRecord);
+        EscPosBuilder receipt = new EscPosBuilder(paperWidthDots, rasterFont);
+
+        String[] lines = text.split("\n", -1);
+        int last = lines.length;
+        // The final newline of the template does not start another line
+        if (last > 0 && lines[last - 1].isEmpty()) {
+            last--;
+        }
+        for (int i = 0; i < last; i++) {
+            String line = lines[i];
+            if (i == 0) {
+                receipt.align(EscPosBuilder.Align.CENTER).bold(true).doubleSize(true)
+                    .line(line)
+                    .doubleSize(false).bold(false).align(EscPosBuilder.Align.LEFT);
+            } else if (line.contains(BOLD_MARKER)) {
+                receipt.bold(true).line(line.replace(BOLD_MARKER, "")).bold(false);
+            } else {
+                receipt.line(line);
             }
-            receipt.append("\nTOTAL: ").append(String.format("%.2f", totalPrice)).append(" ETB\n\n");
         }
-        
-        receipt.append("Actual Price: ").append(String.format("%.2f", mealRecord.getActualPrice())).append(" ETB\n");
-        receipt.append("Thank you for using our service!\n");
-        
-        return receipt.toString();
+
+        return receipt.feed(3).cut().build();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,255 @@
+package et.moe.ethernet.cateteria.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import et.moe.ethernet.cateteria.dto.PrintJob;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Queues print jobs and sends them to the printers on background workers, so request threads
+ * never wait on a printer. Each printer has its own small worker pool; a stuck printer only
+ * holds up its own jobs. Only configured printers are accepted, so the number of pools is bounded
+ * by the configuration. Pending jobs are kept as JSON files in the spool directory and are
+ * picked up again after a restart. Failed attempts are retried with exponential backoff.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PrintSpoolService {
+
+    private static final long MAX_RETRY_DELAY_MS = 60_000;
+    private static final int FINISHED_JOBS_KEPT = 1000;
+    // Printer names end up in property keys, lp arguments and thread names; a leading '-' would
+    // make lp read the name as an option
+    private static final Pattern PRINTER_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]{0,63}");
+
+    private final ObjectMapper objectMapper;
+    private final PrinterConnector printerConnector;
+
+    @Value("${cafeteria.print.spool-dir:spool}")
+    private String spoolDir;
+
+    @Value("${cafeteria.print.workers-per-printer:1}")
+    private int workersPerPrinter;
+
+    @Value("${cafeteria.print.max-queued:500}")
+    private int maxQueued;
+
+    @Value("${cafeteria.print.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${cafeteria.print.retry-delay-ms:2000}")
+    private long retryDelayMs;
+
+    private final Map<String, PrintJob> pendingJobs = new ConcurrentHashMap<>();
+    // Slots taken against maxQueued; reserved before a job is spooled, freed when it finishes
+    private final AtomicInteger queuedSlots = new AtomicInteger();
+    private final Map<String, ScheduledExecutorService> workers = new ConcurrentHashMap<>();
+    private final Map<String, PrintJob> finishedJobs = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PrintJob> eldest) {
+            return size() > FINISHED_JOBS_KEPT;
+        }
+    });
+
+    private Path spool;
+
+    @PostConstruct
+    public void init() throws IOException {
+        spool = Paths.get(spoolDir).toAbsolutePath().normalize();
+        Files.createDirectories(spool);
+
+        // Resume jobs left over from the previous run, oldest first
+        List<PrintJob> recovered = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spool, "*.json")) {
+            for (Path file : files) {
+                try {
+                    PrintJob job = objectMapper.readValue(file.toFile(), PrintJob.class);
+                    if (job.getPayload() == null) {
+                        log.warn("Dropping spooled print job {} without payload", job.getId());
+                        Files.deleteIfExists(file);
+                        continue;
+                    }
+                    recovered.add(job);
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable spool file {}", file, e);
+                }
+            }
+        }
+        recovered.sort(Comparator.comparing(PrintJob::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder())));
+        for (PrintJob job : recovered) {
+            job.setStatus(PrintJob.Status.QUEUED);
+            job.setNextAttemptAt(null);
+            queuedSlots.incrementAndGet();
+            pendingJobs.put(job.getId(), job);
+            if (!printerConnector.isKnown(job.getPrinter())) {
+                // Removed from the configuration since the job was spooled
+                finish(job, PrintJob.Status.FAILED, "Unknown printer: " + job.getPrinter());
+                continue;
+            }
+            schedule(job, 0);
+        }
+        if (!recovered.isEmpty()) {
+            log.info("Resumed {} spooled print jobs from {}", recovered.size(), spool);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Jobs still pending stay in the spool directory and resume on the next start
+        workers.values().forEach(ScheduledExecutorService::shutdownNow);
+    }
+
+    /**
+     * Spools a job and returns immediately; the job is printed by the printer's workers.
+     *
+     * @throws IllegalArgumentException if the printer name is not valid or not configured
+     * @throws RuntimeException if the queue is full or the job cannot be written to the spool
+     */
+    public PrintJob submit(String printer, byte[] payload) {
+        if (!PRINTER_NAME.matcher(printer).matches()) {
+            throw new IllegalArgumentException("Invalid printer name: " + printer);
+        }
+        if (!printerConnector.isKnown(printer)) {
+            throw new IllegalArgumentException("Unknown printer: " + printer);
+        }
+        if (queuedSlots.incrementAndGet() > maxQueued) {
+            queuedSlots.decrementAndGet();
+            throw new RuntimeException("Print queue is full, try again later");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        PrintJob job = new PrintJob(UUID.randomUUID().toString(), printer, payload, PrintJob.Status.QUEUED,
+            0, null, now, now, null);
+        try {
+            persist(job);
+        } catch (RuntimeException e) {
+            queuedSlots.decrementAndGet();
+            throw e;
+        }
+        pendingJobs.put(job.getId(), job);
+        schedule(job, 0);
+        return job;
+    }
+
+    public Optional<PrintJob> getJob(String id) {
+        PrintJob job = pendingJobs.get(id);
+        return Optional.ofNullable(job != null ? job : finishedJobs.get(id));
+    }
+
+    public List<PrintJob> getPendingJobs() {
+        return pendingJobs.values().stream()
+            .sorted(Comparator.comparing(PrintJob::getCreatedAt))
+            .toList();
+    }
+
+    private void schedule(PrintJob job, long delayMs) {
+        workers.computeIfAbsent(job.getPrinter(), this::newWorkerPool)
+            .schedule(() -> run(job), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void run(PrintJob job) {
+        job.setAttempts(job.getAttempts() + 1);
+        update(job, PrintJob.Status.PRINTING, null);
+        try {
+            printerConnector.send(job.getPrinter(), job.getPayload());
+            finish(job, PrintJob.Status.DONE, null);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                // Shutting down; the job stays spooled
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (job.getAttempts() >= maxAttempts) {
+                log.warn("Print job {} on {} failed after {} attempts: {}", job.getId(), job.getPrinter(), job.getAttempts(), e.getMessage());
+                finish(job, PrintJob.Status.FAILED, e.getMessage());
+                return;
+            }
+            long delay = Math.min(retryDelayMs << (job.getAttempts() - 1), MAX_RETRY_DELAY_MS);
+            job.setNextAttemptAt(LocalDateTime.now().plusNanos(delay * 1_000_000));
+            update(job, PrintJob.Status.RETRYING, e.getMessage());
+            log.debug("Print job {} on {} failed, retrying in {} ms: {}", job.getId(), job.getPrinter(), delay, e.getMessage());
+            schedule(job, delay);
+        }
+    }
+
+    private void update(PrintJob job, PrintJob.Status status, String error) {
+        job.setStatus(status);
+        job.setLastError(error);
+        job.setUpdatedAt(LocalDateTime.now());
+        try {
+            persist(job);
+        } catch (RuntimeException e) {
+            // The job keeps running from memory; only its restart recovery is affected
+            log.warn("Failed to update spool file for print job {}", job.getId(), e);
+        }
+    }
+
+    private void finish(PrintJob job, PrintJob.Status status, String error) {
+        job.setStatus(status);
+        job.setLastError(error);
+        job.setNextAttemptAt(null);
+        job.setUpdatedAt(LocalDateTime.now());
+        finishedJobs.put(job.getId(), job);
+        if (pendingJobs.remove(job.getId()) != null) {
+            queuedSlots.decrementAndGet();
+        }
+        try {
+            Files.deleteIfExists(spoolFile(job.getId()));
+        } catch (IOException e) {
+            log.warn("Failed to remove spool file for print job {}", job.getId(), e);
+        }
+    }
+
+    private void persist(PrintJob job) {
+        Path target = spoolFile(job.getId());
+        Path temp = target.resolveSibling(job.getId() + ".tmp");
+        try {
+            objectMapper.writeValue(temp.toFile(), job);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write print job to spool: " + e.getMessage(), e);
+        }
+    }
+
+    private Path spoolFile(String jobId) {
+        return spool.resolve(jobId + ".json");
+    }
+
+    private ScheduledExecutorService newWorkerPool(String printer) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "print-" + printer + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newScheduledThreadPool(workersPerPrinter, threadFactory);
+    }
+}
@@ -0,0 +1,115 @@
+package et.moe.ethernet.cateteria.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Delivers raw printer bytes. The target of each printer is configured as
+ * {@code cafeteria.printers.<name>}:
+ * <ul>
+ *   <li>{@code tcp://host:9100} - raw socket (JetDirect / AppSocket)</li>
+ *   <li>{@code file:/dev/usb/lp0} - device file</li>
+ * </ul>
+ * CUPS queues listed in {@code cafeteria.print.cups-queues} are handed to {@code lp -o raw},
+ * started directly without a shell. Other printer names are not accepted.
+ */
+@Service
+@RequiredArgsConstructor
+public class PrinterConnector {
+
+    private static final int DEFAULT_RAW_PORT = 9100;
+
+    private final Environment environment;
+
+    @Value("${cafeteria.print.timeout-seconds:30}")
+    private int timeoutSeconds;
+
+    // Comma-separated CUPS queue names
+    @Value("${cafeteria.print.cups-queues:}")
+    private String cupsQueues;
+
+    private Set<String> allowedCupsQueues;
+
+    @PostConstruct
+    public void init() {
+        allowedCupsQueues = Arrays.stream(cupsQueues.split(","))
+            .map(String::trim)
+            .filter(name -> !name.isEmpty())
+            .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Whether the printer has a configured target or is an allowed CUPS queue.
+     */
+    public boolean isKnown(String printer) {
+        String target = environment.getProperty("cafeteria.printers." + printer);
+        return (target != null && !target.isBlank()) || allowedCupsQueues.contains(printer);
+    }
+
+    public void send(String printer, byte[] payload) throws IOException, InterruptedException {
+        String target = environment.getProperty("cafeteria.printers." + printer);
+        if (target == null || target.isBlank()) {
+            if (!allowedCupsQueues.contains(printer)) {
+                throw new IOException("Unknown printer: " + printer);
+            }
+            sendToCups(printer, payload);
+        } else if (target.startsWith("tcp://")) {
+            sendToSocket(URI.create(target), payload);
+        } else if (target.startsWith("file:")) {
+            sendToDevice(target.substring("file:".length()), payload);
+        } else {
+            throw new IOException("Unsupported printer target for " + printer + ": " + target);
+        }
+    }
+
+    private void sendToSocket(URI target, byte[] payload) throws IOException {
+        int port = target.getPort() > 0 ? target.getPort() : DEFAULT_RAW_PORT;
+        int timeoutMs = (int) TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(target.getHost(), port), timeoutMs);
+            socket.setSoTimeout(timeoutMs);
+            OutputStream out = socket.getOutputStream();
+            out.write(payload);
+            out.flush();
+            socket.shutdownOutput();
+        }
+    }
+
+    private void sendToDevice(String path, byte[] payload) throws IOException {
+        Files.write(Paths.get(path), payload, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void sendToCups(String printer, byte[] payload) throws IOException, InterruptedException {
+        // Arguments go to lp directly; receipt text only ever travels on stdin
+        Process process = new ProcessBuilder("lp", "-d", printer, "-o", "raw", "--")
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write(payload);
+        }
+        if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IOException("lp timed out after " + timeoutSeconds + "s");
+        }
+        if (process.exitValue() != 0) {
+            throw new IOException("lp failed with exit code: " + process.exitValue());
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package et.moe.ethernet.cateteria.service;
+
+import et.moe.ethernet.cateteria.dto.MealRecordDto;
+import et.moe.ethernet.cateteria.dto.MealRecordItemDto;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Receipt templates, compiled once and rendered from the data on a {@link MealRecordDto} alone.
+ *
+ * <p>Template syntax:
+ * <ul>
+ *   <li>{@code {{orderNumber}}} - a field of the record (see {@link #FIELDS})</li>
+ *   <li>{@code {{?items}}...{{/?items}}} - rendered only if the record has items</li>
+ *   <li>{@code {{#items}}...{{/items}}} - rendered once per item, with the {@code item.*} fields</li>
+ * </ul>
+ * The built-in formats live in {@code classpath:receipts/<format>.txt}. Files in
+ * {@code cafeteria.receipt.template-dir} add or override formats and are recompiled when they
+ * change.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReceiptTemplateService {
+
+    private static final List<String> BUILT_IN_FORMATS = List.of("detailed", "simple");
+    private static final String TEMPLATE_SUFFIX = ".txt";
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private static final Map<String, Segment> FIELDS = Map.of(
+        "orderNumber", (out, ctx) -> append(out, ctx.record.getOrderNumber()),
+        "date", (out, ctx) -> DATE.formatTo(ctx.recordedAt, out),
+        "time", (out, ctx) -> TIME.formatTo(ctx.recordedAt, out),
+        "employeeShortCode", (out, ctx) -> append(out, ctx.record.getEmployeeShortCode()),
+        "mealTypeName", (out, ctx) -> append(out, ctx.record.getMealTypeName()),
+        "mealCategoryName", (out, ctx) -> append(out, ctx.record.getMealName()),
+        "priceType", (out, ctx) -> append(out, ctx.record.getPriceType()),
+        "actualPrice", (out, ctx) -> appendMoney(out, ctx.record.getActualPrice()),
+        "supportAmount", (out, ctx) -> appendMoney(out, ctx.record.getSupportAmount()),
+        "itemsTotal", (out, ctx) -> appendMoney(out, ctx.itemsTotal)
+    );
+
+    private static final Map<String, Segment> ITEM_FIELDS = Map.of(
+        "item.name", (out, ctx) -> append(out, ctx.item.getMealItemName()),
+        "item.quantity", (out, ctx) -> out.append(ctx.item.getQuantity()),
+        "item.price", (out, ctx) -> appendMoney(out, ctx.item.getPricePerItem()),
+        "item.total", (out, ctx) -> appendMoney(out, itemTotal(ctx.item))
+    );
+
+    private final Environment environment;
+
+    @Value("${cafeteria.receipt.default-format:detailed}")
+    private String defaultFormat;
+
+    @Value("${cafeteria.receipt.template-dir:}")
+    private String templateDir;
+
+    private volatile Map<String, Template> templates = Map.of();
+    private final Map<Path, FileTime> externalFiles = new HashMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        Map<String, Template> compiled = new HashMap<>();
+        for (String format : BUILT_IN_FORMATS) {
+            try (InputStream in = new ClassPathResource("receipts/" + format + TEMPLATE_SUFFIX).getInputStream()) {
+                compiled.put(format, compile(format, new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+            }
+        }
+        templates = compiled;
+        reloadChangedTemplates();
+        if (!templates.containsKey(defaultFormat)) {
+            throw new IllegalStateException("Unknown default receipt format: " + defaultFormat);
+        }
+    }
+
+    /**
+     * Recompiles templates in the template directory that were added or modified since the last
+     * check. A template that fails to compile keeps its previous version.
+     */
+    @Scheduled(fixedDelayString = "${cafeteria.receipt.reload-interval-ms:10000}")
+    public synchronized void reloadChangedTemplates() {
+        if (templateDir == null || templateDir.isBlank()) {
+            return;
+        }
+        Path dir = Paths.get(templateDir);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        Map<String, Template> updated = new HashMap<>(templates);
+        boolean changed = false;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + TEMPLATE_SUFFIX)) {
+            for (Path file : files) {
+                FileTime modified = Files.getLastModifiedTime(file);
+                if (modified.equals(externalFiles.get(file))) {
+                    continue;
+                }
+                externalFiles.put(file, modified);
+                String name = file.getFileName().toString();
+                String format = name.substring(0, name.length() - TEMPLATE_SUFFIX.length());
+                try {
+                    updated.put(format, compile(format, Files.readString(file, StandardCharsets.UTF_8)));
+                    changed = true;
+                    log.info("Compiled receipt template '{}' from {}", format, file);
+                } catch (IllegalArgumentException e) {
+                    log.warn("Receipt template {} not loaded: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to scan receipt template directory {}", dir, e);
+        }
+        if (changed) {
+            templates = updated;
+        }
+    }
+
+    /**
+     * Picks the format for a receipt: the explicitly requested one, else the one configured for
+     * the kiosk ({@code cafeteria.receipt.kiosk.<kioskId>.format}), else the default.
+     */
+    public String resolveFormat(String requestedFormat, String kioskId) {
+        if (requestedFormat != null && !requestedFormat.isBlank()) {
+            return requestedFormat.toLowerCase();
+        }
+        if (kioskId != null && !kioskId.isBlank()) {
+            String kioskFormat = environment.getProperty("cafeteria.receipt.kiosk." + kioskId + ".format");
+            if (kioskFormat != null) {
+                return kioskFormat.toLowerCase();
+            }
+        }
+        return defaultFormat;
+    }
+
+    public Set<String> getFormats() {
+        return new TreeSet<>(templates.keySet());
+    }
+
+    /**
+     * @throws RuntimeException if the format does not exist
+     */
+    public String render(String format, MealRecordDto mealRecord) {
+        Template template = templates.get(format);
+        if (template == null) {
+            throw new RuntimeException("Unknown receipt format: " + format);
+        }
+
+        // Created per call: with virtual threads every request runs on a new thread, so per-thread
+        // buffers would never be reused
+        RenderContext ctx = new RenderContext();
+        ctx.record = mealRecord;
+        // Receipts show when the meal was recorded, also on reprints
+        ctx.recordedAt = mealRecord.getTimestamp() != null ? mealRecord.getTimestamp() : LocalDateTime.now();
+        ctx.itemsTotal = BigDecimal.ZERO;
+        if (mealRecord.getMealItems() != null) {
+            for (MealRecordItemDto item : mealRecord.getMealItems()) {
+                ctx.itemsTotal = ctx.itemsTotal.add(itemTotal(item));
+            }
+        }
+        StringBuilder out = new StringBuilder(1024);
+        template.render(out, ctx);
+        return out.toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the template has an unknown field or unbalanced sections
+     */
+    static Template compile(String name, String source) {
+        Deque<Section> open = new ArrayDeque<>();
+        open.push(new Section(null));
+        int position = 0;
+        while (position < source.length()) {
+            int start = source.indexOf("{{", position);
+            if (start < 0) {
+                open.peek().segments.add(literal(source.substring(position)));
+                break;
+            }
+            if (start > position) {
+                open.peek().segments.add(literal(source.substring(position, start)));
+            }
+            int end = source.indexOf("}}", start);
+            if (end < 0) {
+                throw new IllegalArgumentException(name + ": unclosed '{{' at offset " + start);
+            }
+            String tag = source.substring(start + 2, end).trim();
+            position = end + 2;
+
+            if (tag.equals("#items") || tag.equals("?items")) {
+                open.push(new Section(tag));
+            } else if (tag.startsWith("/")) {
+                Section section = open.pop();
+                if (section.tag == null || !tag.substring(1).equals(section.tag.startsWith("#") ? section.tag.substring(1) : section.tag)) {
+                    throw new IllegalArgumentException(name + ": unexpected {{" + tag + "}}");
+                }
+                open.peek().segments.add(section.tag.startsWith("#") ? loop(section.segments) : ifItems(section.segments));
+            } else {
+                boolean inLoop = open.stream().anyMatch(section -> "#items".equals(section.tag));
+                Segment field = FIELDS.get(tag);
+                if (field == null && inLoop) {
+                    field = ITEM_FIELDS.get(tag);
+                }
+                if (field == null) {
+                    throw new IllegalArgumentException(name + ": unknown field {{" + tag + "}}");
+                }
+                open.peek().segments.add(field);
+            }
+        }
+        if (open.size() != 1) {
+            throw new IllegalArgumentException(name + ": unclosed {{" + open.peek().tag + "}}");
+        }
+        return new Template(open.pop().segments);
+    }
+
+    private static Segment literal(String text) {
+        return (out, ctx) -> out.append(text);
+    }
+
+    private static Segment loop(List<Segment> body) {
+        Segment[] segments = body.toArray(new Segment[0]);
+        return (out, ctx) -> {
+            if (ctx.record.getMealItems() == null) {
+                return;
+            }
+            for (MealRecordItemDto item : ctx.record.getMealItems()) {
+                ctx.item = item;
+                for (Segment segment : segments) {
+                    segment.render(out, ctx);
+                }
+            }
+            ctx.item = null;
+        };
+    }
+
+    private static Segment ifItems(List<Segment> body) {
+        Segment[] segments = body.toArray(new Segment[0]);
+        return (out, ctx) -> {
+            if (ctx.record.getMealItems() != null && !ctx.record.getMealItems().isEmpty()) {
+                for (Segment segment : segments) {
+                    segment.render(out, ctx);
+                }
+            }
+        };
+    }
+
+    private static BigDecimal itemTotal(MealRecordItemDto item) {
+        if (item.getTotalPrice() != null) {
+            return item.getTotalPrice();
+        }
+        if (item.getPricePerItem() == null || item.getQuantity() == null) {
+            return BigDecimal.ZERO;
+        }
+        return item.getPricePerItem().multiply(BigDecimal.valueOf(item.getQuantity()));
+    }
+
+    private static void append(StringBuilder out, String value) {
+        out.append(value != null ? value : "");
+    }
+
+    private static void appendMoney(StringBuilder out, BigDecimal value) {
+        out.append((value != null ? value : BigDecimal.ZERO).setScale(2, RoundingMode.HALF_UP).toPlainString());
+    }
+
+    @FunctionalInterface
+    interface Segment {
+        void render(StringBuilder out, RenderContext ctx);
+    }
+
+    static final class Template {
+        private final Segment[] segments;
+
+        Template(List<Segment> segments) {
+            this.segments = segments.toArray(new Segment[0]);
+        }
+
+        void render(StringBuilder out, RenderContext ctx) {
+            for (Segment segment : segments) {
+                segment.render(out, ctx);
+            }
+        }
+    }
+
+    /**
+     * Render state of one call.
+     */
+    static final class RenderContext {
+        private MealRecordDto record;
+        private MealRecordItemDto item;
+        private LocalDateTime recordedAt;
+        private BigDecimal itemsTotal;
+    }
+
+    private static final class Section {
+        private final String tag;
+        private final List<Segment> segments = new ArrayList<>();
+
+        Section(String tag) {
+            this.tag = tag;
+        }
+    }
+}
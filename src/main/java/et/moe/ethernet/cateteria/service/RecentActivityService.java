@@ -0,0 +1,112 @@
+package et.moe.ethernet.cateteria.service;
+
+import et.moe.ethernet.cateteria.dto.MealRecordDto;
+import et.moe.ethernet.cateteria.dto.MealRecordedEvent;
+import et.moe.ethernet.cateteria.repository.MealRecordRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The most recent meal records, for dashboards that show the latest taps. A fixed-size ring
+ * filled as meals are recorded and warmed from the database at startup, so reading it costs no
+ * query. Writers claim a slot with one atomic increment and readers never lock; a reader skips
+ * slots that are not written yet or were overwritten while it read.
+ * <p>
+ * Meals uploaded in offline batches are not added until the next restart, as they were recorded
+ * in the past.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RecentActivityService {
+
+    private final MealRecordRepository mealRecordRepository;
+
+    @Value("${cafeteria.recent-activity.capacity:1000}")
+    private int capacity;
+
+    private record Slot(long sequence, MealRecordDto mealRecord) {
+    }
+
+    private AtomicReferenceArray<Slot> slots;
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        // Taps recorded while warming up are already in the ring
+        Set<String> present = new HashSet<>();
+        getRecent(capacity, null).forEach(mealRecord -> present.add(mealRecord.getId()));
+
+        List<MealRecordDto> latest = mealRecordRepository.findLatest(PageRequest.of(0, capacity)).stream()
+            .map(MealRecordDto::fromEntity)
+            .toList();
+        for (int i = latest.size() - 1; i >= 0; i--) {
+            if (!present.contains(latest.get(i).getId())) {
+                add(latest.get(i));
+            }
+        }
+        log.info("Recent activity warmed with {} meal records", latest.size());
+    }
+
+    @EventListener
+    public void onMealRecorded(MealRecordedEvent event) {
+        add(event.getMealRecord());
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Up to {@code limit} of the most recent meal records, newest first.
+     *
+     * @param kioskDeviceId only records of this kiosk, or null for all
+     */
+    public List<MealRecordDto> getRecent(int limit, String kioskDeviceId) {
+        long end = nextSequence.get();
+        long start = Math.max(0, end - capacity);
+        List<MealRecordDto> recent = new ArrayList<>(Math.min(limit, capacity));
+        for (long sequence = end - 1; sequence >= start && recent.size() < limit; sequence--) {
+            Slot slot = slots.get(index(sequence));
+            if (slot == null || slot.sequence() != sequence) {
+                continue;
+            }
+            if (kioskDeviceId == null || kioskDeviceId.equals(slot.mealRecord().getKioskDeviceId())) {
+                recent.add(slot.mealRecord());
+            }
+        }
+        // Concurrent taps can claim slots slightly out of time order
+        recent.sort(Comparator.comparing(MealRecordDto::getTimestamp,
+            Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder())));
+        return recent;
+    }
+
+    private void add(MealRecordDto mealRecord) {
+        long sequence = nextSequence.getAndIncrement();
+        slots.set(index(sequence), new Slot(sequence, mealRecord));
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % capacity);
+    }
+}
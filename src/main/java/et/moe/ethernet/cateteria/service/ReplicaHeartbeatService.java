@@ -0,0 +1,107 @@
+package et.moe.ethernet.cateteria.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import et.moe.ethernet.cateteria.config.DataSourceConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures how far the read replica is behind the primary. Every interval the current time is
+ * written to {@code replica_heartbeat} on the primary and read back from the replica; the replica
+ * is used for reads only while the difference stays below {@code max-lag-ms}. If the replica is
+ * unreachable or the heartbeat has not arrived, reads fall back to the primary until it catches up.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReplicaHeartbeatService {
+
+    private static final String CREATE_SQL =
+        "CREATE TABLE IF NOT EXISTS replica_heartbeat (id INT PRIMARY KEY, beat_at BIGINT NOT NULL)";
+    private static final String UPDATE_SQL = "UPDATE replica_heartbeat SET beat_at = ? WHERE id = 1";
+    private static final String INSERT_SQL = "INSERT INTO replica_heartbeat (id, beat_at) VALUES (1, ?)";
+    private static final String SELECT_SQL = "SELECT beat_at FROM replica_heartbeat WHERE id = 1";
+
+    private final Map<String, HikariDataSource> connectionPools;
+
+    // Measured lag includes up to one heartbeat interval
+    @Value("${cafeteria.datasource.replica.max-lag-ms:2000}")
+    private long maxLagMs;
+
+    private volatile boolean replicaUsable;
+    private volatile long lastLagMs = -1;
+    private volatile boolean tableCreated;
+
+    public boolean isReplicaConfigured() {
+        return connectionPools.containsKey(DataSourceConfig.REPLICA_POOL);
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    /**
+     * Lag seen at the last check in milliseconds, or -1 if the replica could not be read.
+     */
+    public long getLastLagMs() {
+        return lastLagMs;
+    }
+
+    @Scheduled(fixedDelayString = "${cafeteria.datasource.replica.heartbeat-interval-ms:500}")
+    public void checkLag() {
+        if (!isReplicaConfigured()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            writeHeartbeat(now);
+        } catch (RuntimeException e) {
+            // Without a fresh heartbeat on the primary the replica's lag cannot be judged
+            log.warn("Could not write replica heartbeat: {}", e.getMessage());
+            setUsable(false, -1);
+            return;
+        }
+
+        long lag;
+        try {
+            List<Long> beats = new JdbcTemplate(connectionPools.get(DataSourceConfig.REPLICA_POOL))
+                .queryForList(SELECT_SQL, Long.class);
+            lag = beats.isEmpty() ? -1 : Math.max(0, now - beats.get(0));
+        } catch (RuntimeException e) {
+            log.debug("Could not read replica heartbeat", e);
+            lag = -1;
+        }
+        setUsable(lag >= 0 && lag <= maxLagMs, lag);
+    }
+
+    private void writeHeartbeat(long now) {
+        JdbcTemplate primary = new JdbcTemplate(connectionPools.get(DataSourceConfig.GENERAL_POOL));
+        if (!tableCreated) {
+            primary.execute(CREATE_SQL);
+            tableCreated = true;
+        }
+        if (primary.update(UPDATE_SQL, now) == 0) {
+            primary.update(INSERT_SQL, now);
+        }
+    }
+
+    private void setUsable(boolean usable, long lag) {
+        if (usable != replicaUsable) {
+            if (usable) {
+                log.info("Read replica in use again (lag {} ms)", lag);
+            } else {
+                log.warn("Read replica lag {} ms exceeds {} ms or replica unreachable; reading from the primary",
+                    lag, maxLagMs);
+            }
+        }
+        replicaUsable = usable;
+        lastLagMs = lag;
+    }
+}
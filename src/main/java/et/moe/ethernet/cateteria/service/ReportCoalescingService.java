@@ -0,0 +1,143 @@
+package et.moe.ethernet.cateteria.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight front of {@link SupportReportService}: while a report is being computed, identical
+ * calls wait for that computation and receive the same result instead of running it again. Nothing
+ * is kept once the computation finishes, so a call that arrives afterwards computes a fresh report.
+ * Callers must not modify the returned reports, as they may be shared.
+ * <p>
+ * Not transactional on purpose: a caller waiting for another's computation holds no connection.
+ * It gives its report lane slot back too (see {@link AdmissionControlService#releaseCurrent()}), so
+ * any number of identical requests can join one computation instead of queueing behind the lane's
+ * limit.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReportCoalescingService {
+
+    private static final Set<String> PERIODS = Set.of("daily", "weekly", "monthly", "yearly");
+
+    private final SupportReportService supportReportService;
+    private final AdmissionControlService admissionControlService;
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counters> countersByReport = new ConcurrentHashMap<>();
+
+    private static class Counters {
+        final LongAdder computed = new LongAdder();
+        final LongAdder joined = new LongAdder();
+    }
+
+    public SupportReportService.SupportSummary getSupportSummary(String period) {
+        String normalized = normalizePeriod(period);
+        return coalesce("summary", normalized, () -> supportReportService.getSupportSummary(normalized));
+    }
+
+    public List<SupportReportService.DepartmentSupportAnalysis> getDepartmentAnalysis(String period) {
+        String normalized = normalizePeriod(period);
+        return coalesce("department-analysis", normalized, () -> supportReportService.getDepartmentAnalysis(normalized));
+    }
+
+    public SupportReportService.PaginatedDepartmentAnalysis getPaginatedDepartmentAnalysis(String period, int page, int size) {
+        String normalized = normalizePeriod(period);
+        return coalesce("department-analysis-page", normalized + "|" + page + "|" + size,
+            () -> supportReportService.getPaginatedDepartmentAnalysis(normalized, page, size));
+    }
+
+    public List<SupportReportService.MealCategoryUsage> getMealCategoryUsage(String period) {
+        String normalized = normalizePeriod(period);
+        return coalesce("category-usage", normalized, () -> supportReportService.getMealCategoryUsage(normalized));
+    }
+
+    /**
+     * Computed and joined calls per report, and the share of calls that joined a computation.
+     */
+    public Map<String, Object> getStatistics() {
+        long computed = 0;
+        long joined = 0;
+        Map<String, Object> reports = new LinkedHashMap<>();
+        for (Map.Entry<String, Counters> entry : countersByReport.entrySet()) {
+            long reportComputed = entry.getValue().computed.sum();
+            long reportJoined = entry.getValue().joined.sum();
+            reports.put(entry.getKey(), counterStats(reportComputed, reportJoined));
+            computed += reportComputed;
+            joined += reportJoined;
+        }
+
+        Map<String, Object> result = counterStats(computed, joined);
+        result.put("inFlight", inFlight.size());
+        result.put("reports", reports);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T coalesce(String report, String arguments, Supplier<T> computation) {
+        String key = report + "|" + arguments;
+        Counters counters = countersByReport.computeIfAbsent(report, name -> new Counters());
+        CompletableFuture<Object> own = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            counters.joined.increment();
+            log.debug("Joining in-flight report {}", key);
+            admissionControlService.releaseCurrent();
+            return (T) await(running);
+        }
+
+        counters.computed.increment();
+        try {
+            T result = computation.get();
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            // Waiting callers see the same failure as the caller that computed the report
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Same mapping as SupportReportService, so "Monthly", "monthly" and unknown periods share a computation
+    private static String normalizePeriod(String period) {
+        String normalized = period == null ? "monthly" : period.trim().toLowerCase();
+        return PERIODS.contains(normalized) ? normalized : "monthly";
+    }
+
+    private static Map<String, Object> counterStats(long computed, long joined) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("computed", computed);
+        stats.put("joined", joined);
+        long calls = computed + joined;
+        stats.put("coalescingRatio", calls == 0 ? 0.0 : (double) joined / calls);
+        return stats;
+    }
+}
@@ -0,0 +1,460 @@
+package et.moe.ethernet.cateteria.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import et.moe.ethernet.cateteria.config.RoutingDataSource;
+import et.moe.ethernet.cateteria.dto.ReportJob;
+import et.moe.ethernet.cateteria.dto.ReportJobRequest;
+import et.moe.ethernet.cateteria.service.AdmissionControlService.Lane;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Runs reports that take longer than an HTTP request in the background. A submitted spec becomes
+ * a job on a small bounded worker pool; its result is written to the results directory and can be
+ * downloaded until it expires. Submitting a spec that is already queued or running returns that
+ * job instead of starting a second one. Jobs read from the replica when one is configured.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReportJobService {
+
+    private static final String JOB_SUFFIX = ".job.json";
+    private static final String PART_SUFFIX = ".part";
+    // Files this service owns in the results directory: <job id>.<suffix>
+    private static final Pattern JOB_FILE = Pattern.compile("[0-9a-f-]{36}\\..+");
+    private static final Set<String> PERIODS = Set.of("daily", "weekly", "monthly", "yearly");
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd-HHmm");
+
+    private static final int EXPORT_CHUNK_SIZE = 1000;
+    private static final String EXPORT_HEADER =
+        "order_number,recorded_at,employee_id,name,department,meal_type,meal_category,price_type,normal_price,actual_price,support_amount";
+    // %s: meal_records or meal_records_archive
+    private static final String EXPORT_FROM =
+        " FROM %s mr" +
+        " JOIN employees e ON e.id = mr.employee_id" +
+        " JOIN meal_types mt ON mt.id = mr.meal_type_id" +
+        " JOIN meal_categories mc ON mc.id = mr.meal_category_id" +
+        " WHERE mr.recorded_at >= ? AND mr.recorded_at < ?";
+    private static final String EXPORT_COLUMNS =
+        "SELECT mr.id, mr.order_number, mr.recorded_at, e.employee_id, e.name, e.department, mt.name AS meal_type, " +
+        "mc.name AS meal_category, mr.price_type, mr.normal_price, mr.actual_price, mr.support_amount";
+    // Keyset pagination on (recorded_at, id), so each chunk is an index range scan
+    private static final String EXPORT_NEXT_CHUNK =
+        " AND (mr.recorded_at > ? OR (mr.recorded_at = ? AND mr.id > ?)) ORDER BY mr.recorded_at, mr.id LIMIT " + EXPORT_CHUNK_SIZE;
+
+    private final ReportCoalescingService reportCoalescingService;
+    private final MealRecordArchiveService mealRecordArchiveService;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+
+    @Value("${cafeteria.reports.results-dir:report-results}")
+    private String resultsDir;
+
+    @Value("${cafeteria.reports.workers:2}")
+    private int workers;
+
+    @Value("${cafeteria.reports.max-queued:20}")
+    private int maxQueued;
+
+    @Value("${cafeteria.reports.result-ttl-hours:24}")
+    private long resultTtlHours;
+
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    // Queued or running job per spec, joined by identical submissions
+    private final Map<String, ReportJob> activeBySpec = new ConcurrentHashMap<>();
+    private final ReentrantLock submitLock = new ReentrantLock();
+
+    private Path results;
+    private ThreadPoolExecutor executor;
+    private TransactionTemplate readOnlyTransaction;
+
+    private record ExportRow(String id, LocalDateTime recordedAt, String line) {
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        results = Paths.get(resultsDir).toAbsolutePath().normalize();
+        Files.createDirectories(results);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "report-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(maxQueued), threadFactory);
+
+        // Results of the previous run stay downloadable; jobs it did not finish are marked failed
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(results, "*" + JOB_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    ReportJob job = objectMapper.readValue(file.toFile(), ReportJob.class);
+                    jobs.put(job.getId(), job);
+                    if (!job.isFinished()) {
+                        finish(job, ReportJob.Status.FAILED, "Interrupted by a server restart");
+                    }
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable report job file {}", file, e);
+                }
+            }
+        }
+        cleanUp();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues a report, or returns the job already queued or running for the same spec.
+     *
+     * @throws IllegalArgumentException if the spec is invalid
+     * @throws RuntimeException if the report queue is full
+     */
+    public ReportJob submit(ReportJobRequest request) {
+        ReportJobRequest spec = normalize(request);
+        String key = specKey(spec);
+        submitLock.lock();
+        try {
+            ReportJob active = activeBySpec.get(key);
+            if (active != null) {
+                return active;
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            ReportJob job = new ReportJob(UUID.randomUUID().toString(), spec, ReportJob.Status.QUEUED, 0, null,
+                fileName(spec, now), contentType(spec), 0, now, null, null, null);
+            // Written before the job is registered, so a failed write leaves no job that never runs
+            persist(job);
+            jobs.put(job.getId(), job);
+            activeBySpec.put(key, job);
+            try {
+                executor.execute(() -> run(job, key));
+            } catch (RuntimeException e) {
+                jobs.remove(job.getId());
+                activeBySpec.remove(key, job);
+                deleteQuietly(jobFile(job.getId()));
+                if (e instanceof RejectedExecutionException) {
+                    throw new RuntimeException("Report queue is full, try again later");
+                }
+                throw e;
+            }
+            return job;
+        } finally {
+            submitLock.unlock();
+        }
+    }
+
+    public Optional<ReportJob> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public List<ReportJob> getJobs() {
+        return jobs.values().stream()
+            .sorted(Comparator.comparing(ReportJob::getCreatedAt).reversed())
+            .toList();
+    }
+
+    /**
+     * The result file of a finished job, or empty if the job failed, is still running or expired.
+     */
+    public Optional<Path> getResultFile(String id) {
+        ReportJob job = jobs.get(id);
+        if (job == null || job.getStatus() != ReportJob.Status.DONE) {
+            return Optional.empty();
+        }
+        Path file = resultFile(job);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    /**
+     * Removes expired jobs with their result files, and files of jobs no longer known (e.g. partial
+     * results left by a crash).
+     */
+    @Scheduled(fixedDelayString = "${cafeteria.reports.cleanup-interval-ms:600000}")
+    public void cleanUp() {
+        LocalDateTime now = LocalDateTime.now();
+        for (ReportJob job : jobs.values()) {
+            if (job.isFinished() && job.getExpiresAt() != null && job.getExpiresAt().isBefore(now)) {
+                jobs.remove(job.getId());
+                deleteQuietly(resultFile(job));
+                deleteQuietly(jobFile(job.getId()));
+                log.debug("Report job {} expired", job.getId());
+            }
+        }
+        // submit writes a job's files before registering it, so the scan must not run in between
+        submitLock.lock();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(results)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (JOB_FILE.matcher(name).matches() && !jobs.containsKey(name.substring(0, name.indexOf('.')))) {
+                    deleteQuietly(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to scan report results directory {}", results, e);
+        } finally {
+            submitLock.unlock();
+        }
+    }
+
+    private void run(ReportJob job, String key) {
+        job.setStatus(ReportJob.Status.RUNNING);
+        job.setStartedAt(LocalDateTime.now());
+        persistQuietly(job);
+
+        Path part = results.resolve(job.getId() + PART_SUFFIX);
+        // Reports never write, so their read-only transactions may use the replica
+        RoutingDataSource.setRoute(Lane.REPORT, true);
+        boolean wasReplicaRead = RoutingDataSource.enterReplicaRead();
+        try {
+            if (job.getSpec().getType() == ReportJob.Type.MEAL_RECORDS) {
+                exportMealRecords(job, part);
+            } else {
+                writeReport(job, part);
+            }
+            Path target = resultFile(job);
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.setResultBytes(Files.size(target));
+            job.setProgress(100);
+            finish(job, ReportJob.Status.DONE, null);
+            log.info("Report job {} ({}) finished: {} bytes", job.getId(), job.getSpec().getType(), job.getResultBytes());
+        } catch (Exception e) {
+            log.warn("Report job {} ({}) failed", job.getId(), job.getSpec().getType(), e);
+            deleteQuietly(part);
+            finish(job, ReportJob.Status.FAILED, e.getMessage());
+        } finally {
+            RoutingDataSource.exitReplicaRead(wasReplicaRead);
+            RoutingDataSource.clearRoute();
+            activeBySpec.remove(key, job);
+        }
+    }
+
+    private void writeReport(ReportJob job, Path part) throws IOException {
+        String period = job.getSpec().getPeriod();
+        job.setProgress(10);
+        Object report = switch (job.getSpec().getType()) {
+            case SUMMARY -> reportCoalescingService.getSupportSummary(period);
+            case DEPARTMENT_ANALYSIS -> reportCoalescingService.getDepartmentAnalysis(period);
+            case CATEGORY_USAGE -> reportCoalescingService.getMealCategoryUsage(period);
+            case MEAL_RECORDS -> throw new IllegalStateException("Meal records are exported, not reported");
+        };
+        job.setProgress(90);
+        objectMapper.writeValue(part.toFile(), report);
+    }
+
+    private void exportMealRecords(ReportJob job, Path part) throws IOException {
+        ReportJobRequest spec = job.getSpec();
+        String filter = spec.getDepartment() != null ? " AND e.department = ?" : "";
+        List<Object> rangeArgs = new ArrayList<>(List.of(spec.getStart(), spec.getEnd()));
+        if (spec.getDepartment() != null) {
+            rangeArgs.add(spec.getDepartment());
+        }
+        Long total = readOnlyTransaction.execute(status -> {
+            long count = jdbcTemplate.queryForObject("SELECT COUNT(*)" + EXPORT_FROM.formatted("meal_records") + filter,
+                Long.class, rangeArgs.toArray());
+            if (mealRecordArchiveService.reaches(spec.getStart())) {
+                count += jdbcTemplate.queryForObject("SELECT COUNT(*)" + EXPORT_FROM.formatted("meal_records_archive") + filter,
+                    Long.class, rangeArgs.toArray());
+            }
+            return count;
+        });
+
+        try (BufferedWriter writer = Files.newBufferedWriter(part, StandardCharsets.UTF_8)) {
+            writer.write(EXPORT_HEADER);
+            writer.newLine();
+
+            LocalDateTime lastRecordedAt = spec.getStart();
+            String lastId = "";
+            long exported = 0;
+            while (true) {
+                List<Object> args = new ArrayList<>(rangeArgs);
+                args.add(lastRecordedAt);
+                args.add(lastRecordedAt);
+                args.add(lastId);
+                String chunkQuery = EXPORT_COLUMNS + EXPORT_FROM.formatted("meal_records") + filter + EXPORT_NEXT_CHUNK;
+                // Checked per chunk, as the archive job moves a month after advancing the watermark. Both
+                // tables are read in one transaction and keyed alike, so a record being moved is exported once.
+                if (mealRecordArchiveService.reaches(lastRecordedAt)) {
+                    chunkQuery = "(" + chunkQuery + ") UNION ALL (" + EXPORT_COLUMNS +
+                        EXPORT_FROM.formatted("meal_records_archive") + filter + EXPORT_NEXT_CHUNK +
+                        ") ORDER BY recorded_at, id LIMIT " + EXPORT_CHUNK_SIZE;
+                    args.addAll(List.copyOf(args));
+                }
+                String query = chunkQuery;
+                List<ExportRow> chunk = readOnlyTransaction.execute(status -> jdbcTemplate.query(
+                    query,
+                    (rs, rowNum) -> {
+                        LocalDateTime recordedAt = rs.getObject("recorded_at", LocalDateTime.class);
+                        String line = String.join(",",
+                            csv(rs.getString("order_number")),
+                            csv(recordedAt.toString()),
+                            csv(rs.getString("employee_id")),
+                            csv(rs.getString("name")),
+                            csv(rs.getString("department")),
+                            csv(rs.getString("meal_type")),
+                            csv(rs.getString("meal_category")),
+                            csv(rs.getString("price_type")),
+                            amount(rs.getBigDecimal("normal_price")),
+                            amount(rs.getBigDecimal("actual_price")),
+                            amount(rs.getBigDecimal("support_amount")));
+                        return new ExportRow(rs.getString("id"), recordedAt, line);
+                    },
+                    args.toArray()));
+                for (ExportRow row : chunk) {
+                    writer.write(row.line());
+                    writer.newLine();
+                }
+                exported += chunk.size();
+                // Records added during the export can push the count past the total
+                job.setProgress(total == null || total == 0 ? 99 : (int) Math.min(99, exported * 100 / total));
+                if (chunk.size() < EXPORT_CHUNK_SIZE) {
+                    break;
+                }
+                ExportRow last = chunk.get(chunk.size() - 1);
+                lastRecordedAt = last.recordedAt();
+                lastId = last.id();
+            }
+        }
+    }
+
+    private ReportJobRequest normalize(ReportJobRequest request) {
+        if (request.getType() == null) {
+            throw new IllegalArgumentException("Report type is required");
+        }
+        if (request.getType() == ReportJob.Type.MEAL_RECORDS) {
+            if (request.getStart() == null || request.getEnd() == null) {
+                throw new IllegalArgumentException("start and end are required for MEAL_RECORDS");
+            }
+            if (!request.getStart().isBefore(request.getEnd())) {
+                throw new IllegalArgumentException("start must be before end");
+            }
+            String department = request.getDepartment() == null || request.getDepartment().isBlank()
+                ? null : request.getDepartment().trim();
+            return new ReportJobRequest(request.getType(), null, request.getStart(), request.getEnd(), department);
+        }
+        String period = request.getPeriod() == null || request.getPeriod().isBlank()
+            ? "monthly" : request.getPeriod().trim().toLowerCase();
+        if (!PERIODS.contains(period)) {
+            throw new IllegalArgumentException("Unknown period: " + request.getPeriod() + " (daily, weekly, monthly or yearly)");
+        }
+        return new ReportJobRequest(request.getType(), period, null, null, null);
+    }
+
+    private static String specKey(ReportJobRequest spec) {
+        return spec.getType() + "|" + spec.getPeriod() + "|" + spec.getStart() + "|" + spec.getEnd() + "|" + spec.getDepartment();
+    }
+
+    private static String fileName(ReportJobRequest spec, LocalDateTime now) {
+        String type = spec.getType().name().toLowerCase().replace('_', '-');
+        if (spec.getType() == ReportJob.Type.MEAL_RECORDS) {
+            return type + "-" + spec.getStart().format(FILE_DATE) + "-" + spec.getEnd().format(FILE_DATE) + ".csv";
+        }
+        return type + "-" + spec.getPeriod() + "-" + now.format(FILE_DATE) + ".json";
+    }
+
+    private static String contentType(ReportJobRequest spec) {
+        return spec.getType() == ReportJob.Type.MEAL_RECORDS ? "text/csv" : "application/json";
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    private static String amount(BigDecimal value) {
+        return value == null ? "" : value.toPlainString();
+    }
+
+    private void finish(ReportJob job, ReportJob.Status status, String error) {
+        LocalDateTime now = LocalDateTime.now();
+        job.setStatus(status);
+        job.setError(error);
+        job.setFinishedAt(now);
+        job.setExpiresAt(now.plusHours(resultTtlHours));
+        persistQuietly(job);
+    }
+
+    private void persistQuietly(ReportJob job) {
+        try {
+            persist(job);
+        } catch (RuntimeException e) {
+            // The job keeps its state in memory; only the view after a restart is affected
+            log.warn("Failed to update report job file {}", job.getId(), e);
+        }
+    }
+
+    private void persist(ReportJob job) {
+        Path target = jobFile(job.getId());
+        Path temp = target.resolveSibling(job.getId() + ".tmp");
+        try {
+            objectMapper.writeValue(temp.toFile(), job);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write report job: " + e.getMessage(), e);
+        }
+    }
+
+    private Path jobFile(String id) {
+        return results.resolve(id + JOB_SUFFIX);
+    }
+
+    private Path resultFile(ReportJob job) {
+        return results.resolve(job.getId() + (job.getSpec().getType() == ReportJob.Type.MEAL_RECORDS ? ".csv" : ".json"));
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}", file, e);
+        }
+    }
+}
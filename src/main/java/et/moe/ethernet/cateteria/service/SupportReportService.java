@@ -1,9 +1,11 @@
 package et.moe.ethernet.cateteria.service;
 
+import et.moe.ethernet.cateteria.config.ReplicaRead;
 import et.moe.ethernet.cateteria.entity.*;
 import et.moe.ethernet.cateteria.repository.*;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -17,13 +19,20 @@ import org.springframework.data.domain.Pageable;
 
 @Service
 @RequiredArgsConstructor
+@ReplicaRead
+@Transactional(readOnly = true)
 public class SupportReportService {
     
     private final MealRecordRepository mealRecordRepository;
     private final EmployeeRepository employeeRepository;
     private final SupportConfigRepository supportConfigRepository;
+    private final TodayCountersService todayCountersService;
     
     public SupportSummary getSupportSummary(String period) {
+        // Today's totals are kept in memory as meals are recorded
+        if ("daily".equalsIgnoreCase(period)) {
+            return todayCountersService.getSupportSummary();
+        }
         LocalDateTime startDate = getStartDateForPeriod(period);
         LocalDateTime endDate = LocalDateTime.now();
         
@@ -229,6 +238,7 @@ public class SupportReportService {
         );
     }
     
+    // At most a year back, which MealRecordArchiveService always keeps in meal_records
     private LocalDateTime getStartDateForPeriod(String period) {
         LocalDateTime now = LocalDateTime.now();
         return switch (period.toLowerCase()) {
@@ -0,0 +1,302 @@
+package et.moe.ethernet.cateteria.service;
+
+import et.moe.ethernet.cateteria.dto.MealRecordDto;
+import et.moe.ethernet.cateteria.dto.MealRecordedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live feed of kiosk taps for supervisor screens, sent as Server-Sent Events. Subscribers get
+ * either every recorded meal ({@code meal} events) or one {@code aggregate} event per second.
+ * <p>
+ * Publishing never blocks the tap: each subscriber has a bounded buffer, and when a slow client
+ * lets it fill up the oldest events are dropped. Buffers are written to the clients by sender
+ * threads, at most one per subscriber at a time, so a client whose socket stops draining only
+ * blocks its own sender. Such a client is disconnected once a write takes longer than the write
+ * timeout, or once a whole buffer of events was dropped without anything being sent.
+ */
+@Service
+@Slf4j
+public class TapFeedService {
+
+    public enum Mode {
+        MEALS, AGGREGATES
+    }
+
+    // What a supervisor screen shows for a tap; salary and other employee details are left out
+    public record TapFeedMeal(String mealRecordId, String orderNumber, LocalDateTime recordedAt, String employeeId,
+                              String employeeShortCode, String mealTypeName, String mealName, String priceType,
+                              BigDecimal actualPrice, BigDecimal supportAmount, String recordedByUsername) {
+    }
+
+    public record TapFeedAggregate(LocalDateTime second, long meals, long supportedMeals, BigDecimal revenue,
+                                   BigDecimal subsidy, Map<String, Long> mealsByMealType) {
+    }
+
+    // A buffered event; a null name is a keep-alive comment
+    private record FeedEvent(String name, Object data) {
+    }
+
+    private final class Subscriber {
+        final String id = UUID.randomUUID().toString();
+        final Mode mode;
+        final SseEmitter emitter;
+        final ArrayBlockingQueue<FeedEvent> buffer;
+        final AtomicBoolean sending = new AtomicBoolean();
+        final LongAdder dropped = new LongAdder();
+        // Events dropped since the last successful write
+        final AtomicInteger droppedSinceSend = new AtomicInteger();
+        // System.nanoTime() when the write in progress started, 0 while not writing
+        volatile long writeStartedAt;
+
+        Subscriber(Mode mode, SseEmitter emitter) {
+            this.mode = mode;
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+
+    @Value("${cafeteria.tap-feed.max-subscribers:100}")
+    private int maxSubscribers;
+
+    @Value("${cafeteria.tap-feed.buffer-size:256}")
+    private int bufferSize;
+
+    // A write blocked this long means the client stopped reading
+    @Value("${cafeteria.tap-feed.write-timeout-ms:5000}")
+    private long writeTimeoutMs;
+
+    // Clients reconnect after the timeout, as SSE clients do after any disconnect
+    @Value("${cafeteria.tap-feed.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${cafeteria.tap-feed.keep-alive-seconds:15}")
+    private int keepAliveSeconds;
+
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+    // Slots taken against maxSubscribers; reserved before a subscriber is added, freed when it is removed
+    private final AtomicInteger subscriberSlots = new AtomicInteger();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder droppedTotal = new LongAdder();
+
+    // Taps of the current second, reset by the aggregate tick
+    private final LongAdder secondMeals = new LongAdder();
+    private final LongAdder secondSupportedMeals = new LongAdder();
+    private final LongAdder secondRevenueCents = new LongAdder();
+    private final LongAdder secondSubsidyCents = new LongAdder();
+    private final Map<String, LongAdder> secondMealsByMealType = new ConcurrentHashMap<>();
+    private final AtomicLong ticks = new AtomicLong();
+
+    private ExecutorService senders;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        // Grows to at most one thread per subscriber, as each subscriber has at most one sender
+        senders = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "tap-feed-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+        subscriberSlots.set(0);
+        senders.shutdownNow();
+    }
+
+    /**
+     * Opens a feed for one client.
+     *
+     * @throws RuntimeException if the maximum number of subscribers is reached
+     */
+    public SseEmitter subscribe(Mode mode) {
+        if (subscriberSlots.incrementAndGet() > maxSubscribers) {
+            subscriberSlots.decrementAndGet();
+            throw new RuntimeException("Too many live feed subscribers, try again later");
+        }
+        Subscriber subscriber;
+        try {
+            subscriber = new Subscriber(mode, new SseEmitter(timeoutMs));
+        } catch (RuntimeException e) {
+            subscriberSlots.decrementAndGet();
+            throw e;
+        }
+        SseEmitter emitter = subscriber.emitter;
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        subscribers.put(subscriber.id, subscriber);
+        // Sends the headers right away, so the client sees the stream open before the first tap
+        enqueue(subscriber, new FeedEvent(null, "connected"));
+        log.debug("Tap feed subscriber {} ({}) connected", subscriber.id, mode);
+        return emitter;
+    }
+
+    @EventListener
+    public void onMealRecorded(MealRecordedEvent event) {
+        MealRecordDto record = event.getMealRecord();
+        secondMeals.increment();
+        if ("supported".equals(record.getPriceType())) {
+            secondSupportedMeals.increment();
+        }
+        secondRevenueCents.add(cents(record.getActualPrice()));
+        secondSubsidyCents.add(cents(record.getSupportAmount()));
+        String mealType = record.getMealTypeName() != null ? record.getMealTypeName() : record.getMealTypeId();
+        if (mealType != null) {
+            secondMealsByMealType.computeIfAbsent(mealType, name -> new LongAdder()).increment();
+        }
+
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        FeedEvent meal = new FeedEvent("meal", new TapFeedMeal(record.getId(), record.getOrderNumber(),
+            record.getTimestamp(), record.getEmployeeId(), record.getEmployeeShortCode(), record.getMealTypeName(),
+            record.getMealName(), record.getPriceType(), record.getActualPrice(), record.getSupportAmount(),
+            record.getRecordedByUsername()));
+        published.increment();
+        for (Subscriber subscriber : subscribers.values()) {
+            if (subscriber.mode == Mode.MEALS) {
+                enqueue(subscriber, meal);
+            }
+        }
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void publishAggregates() {
+        // Taps that land while the counters are read are counted in the next second
+        LocalDateTime second = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).minusSeconds(1);
+        long meals = secondMeals.sumThenReset();
+        long supportedMeals = secondSupportedMeals.sumThenReset();
+        long revenueCents = secondRevenueCents.sumThenReset();
+        long subsidyCents = secondSubsidyCents.sumThenReset();
+        Map<String, Long> byMealType = new LinkedHashMap<>();
+        secondMealsByMealType.forEach((mealType, count) -> {
+            long value = count.sumThenReset();
+            if (value > 0) {
+                byMealType.put(mealType, value);
+            }
+        });
+
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        FeedEvent aggregate = new FeedEvent("aggregate", new TapFeedAggregate(second, meals, supportedMeals,
+            BigDecimal.valueOf(revenueCents, 2), BigDecimal.valueOf(subsidyCents, 2), byMealType));
+        boolean keepAlive = keepAliveSeconds > 0 && ticks.incrementAndGet() % keepAliveSeconds == 0;
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers.values()) {
+            long writeStartedAt = subscriber.writeStartedAt;
+            if (writeStartedAt != 0 && now - writeStartedAt > TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs)) {
+                disconnect(subscriber, "write blocked for over " + writeTimeoutMs + " ms");
+                continue;
+            }
+            if (subscriber.mode == Mode.AGGREGATES) {
+                enqueue(subscriber, aggregate);
+            } else if (keepAlive && subscriber.buffer.isEmpty()) {
+                // Keeps proxies from closing an idle meal feed
+                enqueue(subscriber, new FeedEvent(null, "keep-alive"));
+            }
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subscribers", subscribers.size());
+        stats.put("mealsPublished", published.sum());
+        stats.put("eventsDropped", droppedTotal.sum());
+        return stats;
+    }
+
+    private void enqueue(Subscriber subscriber, FeedEvent event) {
+        // Drop-oldest: a full buffer gives up its oldest event for the new one
+        while (!subscriber.buffer.offer(event)) {
+            if (subscriber.buffer.poll() != null) {
+                subscriber.dropped.increment();
+                droppedTotal.increment();
+                if (subscriber.droppedSinceSend.incrementAndGet() >= bufferSize) {
+                    disconnect(subscriber, "a full buffer of events was dropped without a write");
+                    return;
+                }
+            }
+        }
+        if (subscriber.sending.compareAndSet(false, true)) {
+            senders.execute(() -> send(subscriber));
+        }
+    }
+
+    private void send(Subscriber subscriber) {
+        try {
+            FeedEvent event;
+            while ((event = subscriber.buffer.poll()) != null) {
+                subscriber.writeStartedAt = System.nanoTime();
+                if (event.name() == null) {
+                    subscriber.emitter.send(SseEmitter.event().comment((String) event.data()));
+                } else {
+                    subscriber.emitter.send(SseEmitter.event().name(event.name()).data(event.data()));
+                }
+                subscriber.droppedSinceSend.set(0);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client went away or the emitter already completed
+            remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+            return;
+        } finally {
+            subscriber.writeStartedAt = 0;
+            subscriber.sending.set(false);
+        }
+        // An event enqueued after the last poll but before the flag was cleared
+        if (!subscriber.buffer.isEmpty() && subscribers.containsKey(subscriber.id)
+                && subscriber.sending.compareAndSet(false, true)) {
+            senders.execute(() -> send(subscriber));
+        }
+    }
+
+    // Completing the emitter closes the response, which also fails a write blocked on it
+    private void disconnect(Subscriber subscriber, String reason) {
+        if (subscribers.containsKey(subscriber.id)) {
+            log.info("Disconnecting slow tap feed subscriber {}: {}", subscriber.id, reason);
+            remove(subscriber);
+            subscriber.emitter.complete();
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber.id) != null) {
+            subscriberSlots.decrementAndGet();
+            subscriber.buffer.clear();
+            log.debug("Tap feed subscriber {} disconnected, {} events dropped", subscriber.id, subscriber.dropped.sum());
+        }
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).longValue();
+    }
+}
@@ -0,0 +1,188 @@
+package et.moe.ethernet.cateteria.service;
+
+import et.moe.ethernet.cateteria.dto.MealRecordDto;
+import et.moe.ethernet.cateteria.dto.MealRecordedEvent;
+import et.moe.ethernet.cateteria.dto.MealTypeDto;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Today's meal totals, kept in memory so the "today so far" numbers need no query. Counters are
+ * striped ({@link LongAdder}) and updated by every tap; they are loaded from the database at
+ * startup, before any tap can arrive, and start from zero when the first tap or read of a new
+ * day finds yesterday's counters.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TodayCountersService {
+
+    private static final String LOAD_SQL =
+        "SELECT meal_type_id, price_type, COUNT(*) AS meals, SUM(actual_price) AS revenue, " +
+        "SUM(support_amount) AS subsidy, SUM(normal_price) AS potential_revenue " +
+        "FROM meal_records WHERE recorded_at >= ? AND recorded_at < ? GROUP BY meal_type_id, price_type";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MealTypeService mealTypeService;
+    private final EmployeeRosterService employeeRosterService;
+
+    /**
+     * One recorded meal, as counted.
+     */
+    public record Tap(LocalDateTime recordedAt, String mealTypeId, boolean supported, BigDecimal actualPrice,
+                      BigDecimal supportAmount, BigDecimal normalPrice) {
+    }
+
+    public record TodayTotals(LocalDate date, long totalMeals, long supportedMeals, long normalMeals,
+                              BigDecimal totalRevenue, BigDecimal totalSubsidy, BigDecimal potentialRevenue,
+                              Map<String, Long> mealsByMealType) {
+    }
+
+    private static final class DayCounters {
+        final LocalDate day;
+        final LongAdder meals = new LongAdder();
+        final LongAdder supportedMeals = new LongAdder();
+        final LongAdder revenueCents = new LongAdder();
+        final LongAdder subsidyCents = new LongAdder();
+        final LongAdder potentialRevenueCents = new LongAdder();
+        final Map<String, LongAdder> mealsByMealTypeId = new ConcurrentHashMap<>();
+
+        DayCounters(LocalDate day) {
+            this.day = day;
+        }
+
+        void add(String mealTypeId, boolean supported, long count, long revenue, long subsidy, long potentialRevenue) {
+            meals.add(count);
+            if (supported) {
+                supportedMeals.add(count);
+            }
+            revenueCents.add(revenue);
+            subsidyCents.add(subsidy);
+            potentialRevenueCents.add(potentialRevenue);
+            if (mealTypeId != null) {
+                mealsByMealTypeId.computeIfAbsent(mealTypeId, id -> new LongAdder()).add(count);
+            }
+        }
+    }
+
+    private final AtomicReference<DayCounters> today = new AtomicReference<>();
+
+    @PostConstruct
+    public void load() {
+        LocalDate day = LocalDate.now();
+        DayCounters counters = new DayCounters(day);
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            counters.add(rs.getString("meal_type_id"), "SUPPORTED".equals(rs.getString("price_type")),
+                rs.getLong("meals"), cents(rs.getBigDecimal("revenue")), cents(rs.getBigDecimal("subsidy")),
+                cents(rs.getBigDecimal("potential_revenue")));
+        }, Timestamp.valueOf(day.atStartOfDay()), Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+        today.set(counters);
+        log.info("Today's counters loaded: {} meals", counters.meals.sum());
+    }
+
+    @EventListener
+    public void onMealRecorded(MealRecordedEvent event) {
+        MealRecordDto record = event.getMealRecord();
+        add(new Tap(record.getTimestamp(), record.getMealTypeId(), "supported".equals(record.getPriceType()),
+            record.getActualPrice(), record.getSupportAmount(), record.getNormalPrice()));
+    }
+
+    /**
+     * Counts taps written outside the tap path (offline uploads). Inside a transaction they are
+     * counted after the commit.
+     */
+    public void tapsRecorded(List<Tap> taps) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    taps.forEach(TodayCountersService.this::add);
+                }
+            });
+        } else {
+            taps.forEach(this::add);
+        }
+    }
+
+    public TodayTotals getTotals() {
+        DayCounters counters = countersFor(LocalDate.now());
+        Map<String, Long> byMealType = new LinkedHashMap<>();
+        counters.mealsByMealTypeId.forEach((mealTypeId, count) -> byMealType.merge(
+            mealTypeService.getMealTypeById(mealTypeId).map(MealTypeDto::getName).orElse(mealTypeId),
+            count.sum(), Long::sum));
+        long meals = counters.meals.sum();
+        long supportedMeals = counters.supportedMeals.sum();
+        return new TodayTotals(counters.day, meals, supportedMeals, meals - supportedMeals,
+            BigDecimal.valueOf(counters.revenueCents.sum(), 2), BigDecimal.valueOf(counters.subsidyCents.sum(), 2),
+            BigDecimal.valueOf(counters.potentialRevenueCents.sum(), 2), byMealType);
+    }
+
+    /**
+     * The "daily" support summary from the counters and the roster's employee counts.
+     */
+    public SupportReportService.SupportSummary getSupportSummary() {
+        TodayTotals totals = getTotals();
+        EmployeeRosterService.EmployeeCounts employees = employeeRosterService.getEmployeeCounts();
+        double supportPercentage = totals.totalMeals() > 0 ? (double) totals.supportedMeals() / totals.totalMeals() * 100 : 0;
+        return new SupportReportService.SupportSummary(
+            (int) totals.totalMeals(),
+            (int) totals.supportedMeals(),
+            (int) totals.normalMeals(),
+            totals.totalRevenue().doubleValue(),
+            totals.totalSubsidy().doubleValue(),
+            totals.potentialRevenue().doubleValue(),
+            employees.eligibleForSupport(),
+            employees.active(),
+            supportPercentage
+        );
+    }
+
+    private void add(Tap tap) {
+        // Offline taps from a kiosk whose clock runs ahead must not start tomorrow early
+        if (tap.recordedAt() == null || tap.recordedAt().toLocalDate().isAfter(LocalDate.now())) {
+            return;
+        }
+        DayCounters counters = countersFor(tap.recordedAt().toLocalDate());
+        if (counters != null) {
+            counters.add(tap.mealTypeId(), tap.supported(), 1, cents(tap.actualPrice()), cents(tap.supportAmount()),
+                cents(tap.normalPrice()));
+        }
+    }
+
+    /**
+     * The counters of the given day, moving on to a new day when it has begun; null for an earlier day.
+     */
+    private DayCounters countersFor(LocalDate day) {
+        DayCounters current = today.get();
+        while (current.day.isBefore(day)) {
+            DayCounters next = new DayCounters(day);
+            if (today.compareAndSet(current, next)) {
+                log.info("Day closed: {} meals on {}", current.meals.sum(), current.day);
+                return next;
+            }
+            current = today.get();
+        }
+        return current.day.equals(day) ? current : null;
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).longValue();
+    }
+}
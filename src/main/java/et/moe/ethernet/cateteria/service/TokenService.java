@@ -0,0 +1,176 @@
+package et.moe.ethernet.cateteria.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import et.moe.ethernet.cateteria.entity.User;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Issues and verifies HMAC-SHA256 signed tokens of the form {@code base64url(json).base64url(signature)}.
+ *
+ * <p>Access tokens are short-lived and carry everything needed to authenticate a request (username,
+ * role, expiry), so they are verified without touching the database or the password encoder.
+ * Refresh tokens live longer and are only accepted by {@code /auth/refresh}, which re-checks the
+ * user; they also carry a fingerprint of the password hash and the user's token generation, so
+ * changing the password or logging out revokes them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TokenService {
+
+    public static final String TYPE_ACCESS = "access";
+    public static final String TYPE_REFRESH = "refresh";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final ObjectMapper objectMapper;
+
+    // Base64 encoded, at least 32 bytes. Must be shared by all instances behind a load balancer.
+    @Value("${cafeteria.auth.token-secret:}")
+    private String tokenSecret;
+
+    @Value("${cafeteria.auth.access-token-ttl-seconds:900}")
+    private long accessTokenTtlSeconds;
+
+    @Value("${cafeteria.auth.refresh-token-ttl-seconds:604800}")
+    private long refreshTokenTtlSeconds;
+
+    private SecretKeySpec key;
+
+    @PostConstruct
+    public void init() {
+        byte[] secret;
+        if (tokenSecret == null || tokenSecret.isBlank()) {
+            secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            log.warn("cafeteria.auth.token-secret is not set; using a random secret, tokens will not survive a restart");
+        } else {
+            secret = Base64.getDecoder().decode(tokenSecret.trim());
+            if (secret.length < 32) {
+                throw new IllegalStateException("cafeteria.auth.token-secret must be at least 32 bytes");
+            }
+        }
+        key = new SecretKeySpec(secret, ALGORITHM);
+    }
+
+    public long getAccessTokenTtlSeconds() {
+        return accessTokenTtlSeconds;
+    }
+
+    public String issueAccessToken(User user) {
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("typ", TYPE_ACCESS);
+        claims.put("sub", user.getUsername());
+        claims.put("role", user.getRole().name());
+        claims.put("exp", nowSeconds() + accessTokenTtlSeconds);
+        return sign(claims);
+    }
+
+    public String issueRefreshToken(User user) {
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("typ", TYPE_REFRESH);
+        claims.put("sub", user.getUsername());
+        claims.put("pwd", passwordFingerprint(user));
+        claims.put("gen", user.getTokenGeneration());
+        claims.put("exp", nowSeconds() + refreshTokenTtlSeconds);
+        return sign(claims);
+    }
+
+    /**
+     * Returns the claims of a token with a valid signature, the expected type and an expiry in the
+     * future, or empty for anything else.
+     */
+    public Optional<Map<String, Object>> verify(String token, String expectedType) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot != token.lastIndexOf('.')) {
+            return Optional.empty();
+        }
+        try {
+            byte[] payload = DECODER.decode(token.substring(0, dot));
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, hmac(payload))) {
+                return Optional.empty();
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> claims = objectMapper.readValue(payload, Map.class);
+            if (!expectedType.equals(claims.get("typ"))
+                || !(claims.get("exp") instanceof Number exp)
+                || exp.longValue() <= nowSeconds()
+                || !(claims.get("sub") instanceof String)) {
+                return Optional.empty();
+            }
+            return Optional.of(claims);
+        } catch (IllegalArgumentException | IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Whether a refresh token was issued for the user's current password and has not been revoked
+     * by a logout since.
+     */
+    public boolean isCurrent(Map<String, Object> claims, User user) {
+        return passwordFingerprint(user).equals(claims.get("pwd"))
+            && claims.get("gen") instanceof Number generation
+            && generation.longValue() == user.getTokenGeneration();
+    }
+
+    private String sign(Map<String, Object> claims) {
+        try {
+            byte[] payload = objectMapper.writeValueAsBytes(claims);
+            return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(hmac(payload));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to create token", e);
+        }
+    }
+
+    // Mac instances are not thread-safe; a new one per call is cheap and suits virtual threads,
+    // where a per-thread cache would be rebuilt on every request
+    private byte[] hmac(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+
+    private static String passwordFingerprint(User user) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest(user.getPassword().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
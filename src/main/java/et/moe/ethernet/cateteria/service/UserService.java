@@ -3,11 +3,15 @@ package et.moe.ethernet.cateteria.service;
 import et.moe.ethernet.cateteria.entity.User;
 import et.moe.ethernet.cateteria.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -19,6 +23,7 @@ public class UserService implements UserDetailsService {
     
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final KioskDeviceService kioskDeviceService;
     
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
@@ -38,6 +43,23 @@ public class UserService implements UserDetailsService {
         return userRepository.findByUsername(username);
     }
     
+    /**
+     * The user a write should be attributed to: the cached operator of a signed kiosk request, or
+     * the logged-in user.
+     */
+    public Optional<User> getCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+            || authentication instanceof AnonymousAuthenticationToken) {
+            return Optional.empty();
+        }
+        if (authentication.getPrincipal() instanceof User operator) {
+            // Signed kiosk requests carry the device's cached operator, no lookup needed
+            return Optional.of(operator);
+        }
+        return userRepository.findByUsername(authentication.getName());
+    }
+    
     public Optional<User> findByEmail(String email) {
         return userRepository.findByEmail(email);
     }
@@ -81,7 +103,9 @@ public class UserService implements UserDetailsService {
                     existingUser.setPassword(passwordEncoder.encode(userUpdates.getPassword()));
                 }
                 
-                return userRepository.save(existingUser);
+                User saved = userRepository.save(existingUser);
+                kioskDeviceService.operatorChanged(saved.getId());
+                return saved;
             });
     }
     
@@ -93,17 +117,28 @@ public class UserService implements UserDetailsService {
             });
     }
     
+    /**
+     * Revokes every refresh token issued to the user so far.
+     */
+    @Transactional
+    public void revokeRefreshTokens(String username) {
+        userRepository.incrementTokenGeneration(username);
+    }
+    
     public Optional<User> toggleUserStatus(String id) {
         return userRepository.findById(id)
             .map(user -> {
                 user.setActive(!user.isActive());
-                return userRepository.save(user);
+                User saved = userRepository.save(user);
+                kioskDeviceService.operatorChanged(saved.getId());
+                return saved;
             });
     }
     
     public boolean deleteUser(String id) {
         if (userRepository.existsById(id)) {
             userRepository.deleteById(id);
+            kioskDeviceService.operatorChanged(id);
             return true;
         }
         return false;
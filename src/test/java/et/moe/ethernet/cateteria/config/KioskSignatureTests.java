@@ -0,0 +1,179 @@
+package et.moe.ethernet.cateteria.config;
+
+import et.moe.ethernet.cateteria.entity.KioskDevice;
+import et.moe.ethernet.cateteria.entity.User;
+import et.moe.ethernet.cateteria.repository.KioskDeviceRepository;
+import et.moe.ethernet.cateteria.repository.UserRepository;
+import et.moe.ethernet.cateteria.service.KioskDeviceService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Kiosk request signing and verification, through {@link KioskSignatureFilter} with the device
+ * "KIOSK-01" served from a mocked repository.
+ */
+class KioskSignatureTests {
+
+    private static final String DEVICE_ID = "KIOSK-01";
+    private static final String PATH = "/api/meal-records/record-with-items";
+    private static final byte[] BODY = "{\"cardId\":\"04A2B3C4D5\"}".getBytes(StandardCharsets.UTF_8);
+
+    private byte[] secret;
+    private User operator;
+    private KioskSignatureFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        secret = new byte[32];
+        secret[0] = 7;
+        operator = new User();
+        operator.setId("operator-id");
+        operator.setUsername("operator");
+
+        KioskDevice device = new KioskDevice();
+        device.setId(DEVICE_ID);
+        device.setSecret(Base64.getEncoder().encodeToString(secret));
+        device.setOperatorUser(operator);
+
+        KioskDeviceRepository kioskDeviceRepository = mock(KioskDeviceRepository.class);
+        when(kioskDeviceRepository.findById(DEVICE_ID)).thenReturn(Optional.of(device));
+        when(kioskDeviceRepository.findById("KIOSK-99")).thenReturn(Optional.empty());
+        KioskDeviceService kioskDeviceService = new KioskDeviceService(kioskDeviceRepository, mock(UserRepository.class));
+        ReflectionTestUtils.setField(kioskDeviceService, "maxClockSkewSeconds", 300L);
+        ReflectionTestUtils.setField(kioskDeviceService, "cacheTtlSeconds", 300L);
+        filter = new KioskSignatureFilter(kioskDeviceService);
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void signedRequestIsAuthenticatedAsOperatorAndKeepsItsBody() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = send(signed(DEVICE_ID, now(), newNonce(), BODY), chain);
+
+        assertEquals(200, response.getStatus());
+        assertNotNull(chain.getRequest());
+        assertArrayEquals(BODY, chain.getRequest().getInputStream().readAllBytes());
+        assertEquals(operator, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+        assertEquals(DEVICE_ID, KioskSignatureFilter.currentDeviceId());
+    }
+
+    @Test
+    void requestWithoutSignaturePassesThroughUnauthenticated() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", PATH);
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void replayedRequestIsRejected() throws Exception {
+        String timestamp = now();
+        String nonce = newNonce();
+        assertEquals(200, send(signed(DEVICE_ID, timestamp, nonce, BODY), new MockFilterChain()).getStatus());
+        SecurityContextHolder.clearContext();
+
+        MockFilterChain chain = new MockFilterChain();
+        assertEquals(401, send(signed(DEVICE_ID, timestamp, nonce, BODY), chain).getStatus());
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    void changedBodyIsRejected() throws Exception {
+        MockHttpServletRequest request = signed(DEVICE_ID, now(), newNonce(), BODY);
+        request.setContent("{\"cardId\":\"FFFFFFFFFF\"}".getBytes(StandardCharsets.UTF_8));
+        assertEquals(401, send(request, new MockFilterChain()).getStatus());
+    }
+
+    @Test
+    void changedQueryIsRejected() throws Exception {
+        MockHttpServletRequest request = signed(DEVICE_ID, now(), newNonce(), BODY);
+        request.setQueryString("cardId=FFFFFFFFFF");
+        assertEquals(401, send(request, new MockFilterChain()).getStatus());
+    }
+
+    @Test
+    void staleTimestampIsRejected() throws Exception {
+        String stale = String.valueOf(System.currentTimeMillis() / 1000 - 301);
+        assertEquals(401, send(signed(DEVICE_ID, stale, newNonce(), BODY), new MockFilterChain()).getStatus());
+    }
+
+    @Test
+    void unknownDeviceIsRejected() throws Exception {
+        assertEquals(401, send(signed("KIOSK-99", now(), newNonce(), BODY), new MockFilterChain()).getStatus());
+    }
+
+    @Test
+    void missingOrMalformedNonceIsRejected() throws Exception {
+        MockHttpServletRequest withoutNonce = signed(DEVICE_ID, now(), newNonce(), BODY);
+        withoutNonce.removeHeader(KioskSignatureFilter.NONCE_HEADER);
+        assertEquals(401, send(withoutNonce, new MockFilterChain()).getStatus());
+
+        assertEquals(401, send(signed(DEVICE_ID, now(), "short", BODY), new MockFilterChain()).getStatus());
+    }
+
+    @Test
+    void oversizedBodyIsRejected() throws Exception {
+        MockHttpServletResponse response = send(signed(DEVICE_ID, now(), newNonce(), new byte[4 * 1024 * 1024 + 1]), new MockFilterChain());
+        assertEquals(413, response.getStatus());
+        assertTrue(response.getContentAsString().contains("too large"));
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request, MockFilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    // Signs the way a kiosk does: METHOD\nPATH?QUERY\nTIMESTAMP\nNONCE\nBASE64(SHA-256(body))
+    private MockHttpServletRequest signed(String deviceId, String timestamp, String nonce, byte[] body) throws Exception {
+        String bodyHash = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(body));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+        String canonical = "POST\n" + PATH + "\n" + timestamp + "\n" + nonce + "\n" + bodyHash;
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", PATH);
+        request.setContent(body);
+        request.addHeader(KioskSignatureFilter.DEVICE_HEADER, deviceId);
+        request.addHeader(KioskSignatureFilter.TIMESTAMP_HEADER, timestamp);
+        request.addHeader(KioskSignatureFilter.NONCE_HEADER, nonce);
+        request.addHeader(KioskSignatureFilter.SIGNATURE_HEADER,
+            Base64.getEncoder().encodeToString(mac.doFinal(canonical.getBytes(StandardCharsets.UTF_8))));
+        return request;
+    }
+
+    private static String now() {
+        return String.valueOf(System.currentTimeMillis() / 1000);
+    }
+
+    private static String newNonce() {
+        return UUID.randomUUID().toString();
+    }
+}
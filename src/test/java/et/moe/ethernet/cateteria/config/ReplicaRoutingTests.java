@@ -0,0 +1,176 @@
+package et.moe.ethernet.cateteria.config;
+
+import et.moe.ethernet.cateteria.service.AdmissionControlService.Lane;
+import et.moe.ethernet.cateteria.service.ReplicaHeartbeatService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Replica routing against two embedded databases: each holds a marker row naming it, and the
+ * replica's heartbeat is written by the test in place of replication. {@link ReplicaReader}
+ * stands in for the report and list services marked {@link ReplicaRead}.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+    "cafeteria.datasource.replica.url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+    "cafeteria.datasource.replica.max-lag-ms=2000",
+    // Only the first scheduled check runs; the tests call checkLag() themselves
+    "cafeteria.datasource.replica.heartbeat-interval-ms=3600000"
+})
+class ReplicaRoutingTests {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    @Qualifier(DataSourceConfig.GENERAL_POOL)
+    private DataSource primary;
+
+    @Autowired
+    @Qualifier(DataSourceConfig.REPLICA_POOL)
+    private DataSource replica;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReplicaHeartbeatService replicaHeartbeatService;
+
+    @Autowired
+    private ReplicaReader replicaReader;
+
+    @TestConfiguration
+    static class ReplicaReaderConfig {
+        @Bean
+        ReplicaReader replicaReader(DataSource dataSource) {
+            return new ReplicaReader(dataSource);
+        }
+    }
+
+    static class ReplicaReader {
+        private final DataSource dataSource;
+
+        @PersistenceContext
+        private EntityManager entityManager;
+
+        ReplicaReader(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @ReplicaRead
+        public String databaseName() {
+            return new JdbcTemplate(dataSource).queryForObject("SELECT name FROM db_marker", String.class);
+        }
+
+        @ReplicaRead
+        public CacheMode cacheMode() {
+            return entityManager.unwrap(Session.class).getCacheMode();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        mark(primary, "primary");
+        mark(replica, "replica");
+        new JdbcTemplate(replica).execute(
+            "CREATE TABLE IF NOT EXISTS replica_heartbeat (id INT PRIMARY KEY, beat_at BIGINT NOT NULL)");
+    }
+
+    @AfterEach
+    void clearRoute() {
+        RoutingDataSource.clearRoute();
+    }
+
+    @Test
+    void markedReadOfGetRequestUsesReplica() {
+        replicateHeartbeat(System.currentTimeMillis());
+        RoutingDataSource.setRoute(Lane.REPORT, true);
+        assertEquals("replica", replicaReader.databaseName());
+    }
+
+    @Test
+    void unmarkedReadOnlyTransactionUsesPrimary() {
+        // e.g. the cached menu and support configuration lookups
+        replicateHeartbeat(System.currentTimeMillis());
+        RoutingDataSource.setRoute(Lane.DEFAULT, true);
+        assertEquals("primary", databaseName(true));
+    }
+
+    @Test
+    void markedReadDoesNotFillSecondLevelCache() {
+        replicateHeartbeat(System.currentTimeMillis());
+        RoutingDataSource.setRoute(Lane.REPORT, true);
+        assertEquals(CacheMode.GET, replicaReader.cacheMode());
+    }
+
+    @Test
+    void markedReadInsideWriteTransactionUsesPrimary() {
+        replicateHeartbeat(System.currentTimeMillis());
+        RoutingDataSource.setRoute(Lane.DEFAULT, true);
+        assertEquals("primary", new TransactionTemplate(transactionManager).execute(status -> replicaReader.databaseName()));
+    }
+
+    @Test
+    void nonGetRequestUsesPrimary() {
+        replicateHeartbeat(System.currentTimeMillis());
+        RoutingDataSource.setRoute(Lane.DEFAULT, false);
+        assertEquals("primary", replicaReader.databaseName());
+    }
+
+    @Test
+    void tapUsesPrimary() {
+        replicateHeartbeat(System.currentTimeMillis());
+        RoutingDataSource.setRoute(Lane.TAP, true);
+        assertEquals("primary", replicaReader.databaseName());
+    }
+
+    @Test
+    void laggingReplicaFallsBackToPrimary() {
+        replicateHeartbeat(System.currentTimeMillis() - 60_000);
+        assertFalse(replicaHeartbeatService.isReplicaUsable());
+        RoutingDataSource.setRoute(Lane.REPORT, true);
+        assertEquals("primary", replicaReader.databaseName());
+    }
+
+    private void mark(DataSource target, String name) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(target);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS db_marker (name VARCHAR(20))");
+        jdbcTemplate.update("DELETE FROM db_marker");
+        jdbcTemplate.update("INSERT INTO db_marker (name) VALUES (?)", name);
+    }
+
+    // Stands in for replication: the replica shows the heartbeat written at beatAt
+    private void replicateHeartbeat(long beatAt) {
+        new JdbcTemplate(replica).update("MERGE INTO replica_heartbeat KEY (id) VALUES (1, ?)", beatAt);
+        replicaHeartbeatService.checkLag();
+    }
+
+    private String databaseName(boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status ->
+            new JdbcTemplate(dataSource).queryForObject("SELECT name FROM db_marker", String.class));
+    }
+}
@@ -0,0 +1,53 @@
+package et.moe.ethernet.cateteria.service;
+
+import et.moe.ethernet.cateteria.dto.EmployeeImportResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Employee import against an embedded database. A name longer than the column passes validation
+ * and is only refused by the database, in the middle of a JDBC batch.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:employee-import;DB_CLOSE_DELAY=-1")
+class EmployeeImportServiceTests {
+
+    @Autowired
+    private EmployeeImportService employeeImportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void rowRefusedByTheDatabaseIsReportedAndTheRestOfTheBatchIsWritten() throws Exception {
+        String prefix = "IMP-" + UUID.randomUUID().toString().substring(0, 8);
+        String csv = "employeeId,name,department,salary\n"
+            + prefix + "-1,Abebe Kebede,Finance,3000\n"
+            + prefix + "-2," + "x".repeat(300) + ",Finance,3000\n"
+            + prefix + "-3,Almaz Tesfaye,Finance,4000\n";
+
+        EmployeeImportResult result = employeeImportService.importEmployees(
+            new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), EmployeeImportService.ImportFormat.CSV);
+
+        assertEquals(3, result.getTotalRows());
+        assertEquals(2, result.getInserted());
+        assertEquals(1, result.getFailed());
+        assertEquals(2, result.getErrors().get(0).getRow());
+        assertEquals(prefix + "-2", result.getErrors().get(0).getEmployeeId());
+        assertTrue(result.getErrors().get(0).getMessage().startsWith("Could not be saved: "));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM employees WHERE employee_id LIKE ?",
+            Integer.class, prefix + "-%"));
+    }
+}
@@ -0,0 +1,164 @@
+package et.moe.ethernet.cateteria.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The striped stock counters against a mocked database: items "rice" and "egg" start with the
+ * stock loaded by {@code LOAD_SQL}, and flushes are captured from {@code batchUpdate}.
+ */
+class ItemStockServiceTests {
+
+    private JdbcTemplate jdbcTemplate;
+    private CatalogCacheService catalogCacheService;
+    private ItemStockService itemStockService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        catalogCacheService = mock(CatalogCacheService.class);
+        when(jdbcTemplate.queryForList(anyString(), eq(Integer.class), eq("rice"))).thenReturn(List.of(10));
+        when(jdbcTemplate.queryForList(anyString(), eq(Integer.class), eq("egg"))).thenReturn(List.of(1));
+        when(jdbcTemplate.queryForList(anyString(), eq(Integer.class), eq("missing"))).thenReturn(List.of());
+        itemStockService = new ItemStockService(jdbcTemplate, catalogCacheService, mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void reserveTakesStock() {
+        itemStockService.reserve(Map.of("rice", 4));
+        assertEquals(6, itemStockService.getAvailable("rice"));
+    }
+
+    @Test
+    void reserveIsAllOrNothing() {
+        assertThrows(RuntimeException.class, () -> itemStockService.reserve(Map.of("rice", 3, "egg", 2)));
+        assertEquals(10, itemStockService.getAvailable("rice"));
+        assertEquals(1, itemStockService.getAvailable("egg"));
+    }
+
+    @Test
+    void reserveCanTakeTheLastUnitSpreadOverStripes() {
+        for (int i = 0; i < 10; i++) {
+            itemStockService.reserve(Map.of("rice", 1));
+        }
+        assertEquals(0, itemStockService.getAvailable("rice"));
+        assertThrows(RuntimeException.class, () -> itemStockService.reserve(Map.of("rice", 1)));
+    }
+
+    @Test
+    void reserveOfUnknownItemFails() {
+        assertThrows(RuntimeException.class, () -> itemStockService.reserve(Map.of("missing", 1)));
+    }
+
+    @Test
+    void releaseReturnsStockAndIsNotFlushed() {
+        itemStockService.reserve(Map.of("rice", 4));
+        itemStockService.release(Map.of("rice", 4));
+        assertEquals(10, itemStockService.getAvailable("rice"));
+
+        itemStockService.flush();
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void consumeRunsDownToZeroAndFlushesTheFullQuantity() {
+        itemStockService.consume(Map.of("egg", 3));
+        assertEquals(0, itemStockService.getAvailable("egg"));
+
+        itemStockService.flush();
+        assertEquals(List.of(3L), flushedQuantities(1));
+    }
+
+    @Test
+    void failedFlushIsRetried() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+            .thenThrow(new DataAccessResourceFailureException("database down"))
+            .thenReturn(new int[]{1});
+        itemStockService.reserve(Map.of("rice", 2));
+
+        itemStockService.flush();
+        verify(catalogCacheService, never()).evictMealItems(anyList());
+
+        itemStockService.reserve(Map.of("rice", 1));
+        itemStockService.flush();
+        // The failed 2 and the new 1 go out together
+        assertEquals(List.of(2L, 3L), flushedQuantities(2));
+        verify(catalogCacheService).evictMealItems(List.of("rice"));
+
+        itemStockService.flush();
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void availabilityChangeResetsOnlyTheGivenItems() {
+        itemStockService.reserve(Map.of("rice", 4));
+        itemStockService.reserve(Map.of("egg", 1));
+        // The admin sets rice to 50; egg is not touched
+        when(jdbcTemplate.queryForList(anyString(), eq(Integer.class), eq("rice"))).thenReturn(List.of(50));
+
+        itemStockService.availabilityChanged(List.of("rice"));
+
+        // Rice's unflushed reservation is written off the new value; egg keeps its counter
+        assertEquals(List.of(4L), flushedQuantities(1));
+        assertEquals(46, itemStockService.getAvailable("rice"));
+        assertEquals(0, itemStockService.getAvailable("egg"));
+
+        itemStockService.flush();
+        List<Object[]> flushed = flushedBatches(2).get(1);
+        assertEquals(1, flushed.size());
+        assertEquals("egg", flushed.get(0)[2]);
+        assertEquals(1L, flushed.get(0)[0]);
+    }
+
+    @Test
+    void availabilityChangeSwapsTheCounterInPlace() {
+        itemStockService.reserve(Map.of("rice", 4));
+        when(jdbcTemplate.queryForList(anyString(), eq(Integer.class), eq("rice"))).thenReturn(List.of(50));
+
+        itemStockService.availabilityChanged(List.of("rice"));
+        // Released after the swap: goes back on the new counter and is flushed as returned stock
+        itemStockService.release(Map.of("rice", 4));
+        itemStockService.reserve(Map.of("rice", 50));
+        assertEquals(0, itemStockService.getAvailable("rice"));
+        assertThrows(RuntimeException.class, () -> itemStockService.reserve(Map.of("rice", 1)));
+
+        itemStockService.flush();
+        // 4 pending at the swap, then -4 released and 50 reserved
+        assertEquals(List.of(4L, 46L), flushedQuantities(2));
+    }
+
+    @Test
+    void getAvailableSkipsUnknownItems() {
+        assertEquals(Map.of("rice", 10), itemStockService.getAvailable(List.of("rice", "missing")));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<Object[]>> flushedBatches(int calls) {
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(calls)).batchUpdate(anyString(), batches.capture());
+        return batches.getAllValues();
+    }
+
+    // The quantity of the first row of each flush
+    private List<Long> flushedQuantities(int calls) {
+        return flushedBatches(calls).stream().map(batch -> (Long) batch.get(0)[0]).toList();
+    }
+}
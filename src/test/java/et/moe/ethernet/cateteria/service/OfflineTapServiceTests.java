@@ -0,0 +1,282 @@
+package et.moe.ethernet.cateteria.service;
+
+import et.moe.ethernet.cateteria.dto.OfflineTapBatchRequest;
+import et.moe.ethernet.cateteria.dto.OfflineTapBatchResult;
+import et.moe.ethernet.cateteria.dto.OfflineTapBatchResult.TapResult;
+import et.moe.ethernet.cateteria.dto.OfflineTapBatchResult.TapStatus;
+import et.moe.ethernet.cateteria.entity.Employee;
+import et.moe.ethernet.cateteria.entity.MealCategory;
+import et.moe.ethernet.cateteria.entity.MealType;
+import et.moe.ethernet.cateteria.entity.SupportConfig;
+import et.moe.ethernet.cateteria.repository.EmployeeRepository;
+import et.moe.ethernet.cateteria.repository.MealCategoryRepository;
+import et.moe.ethernet.cateteria.repository.MealTypeRepository;
+import et.moe.ethernet.cateteria.repository.SupportConfigRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+/**
+ * Offline tap upload against an embedded database: one employee earning 3000, one meal category,
+ * and a support configuration history where the limit was raised from 2000 to 5000 yesterday.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:offline-taps;DB_CLOSE_DELAY=-1")
+class OfflineTapServiceTests {
+
+    @Autowired
+    private OfflineTapService offlineTapService;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private MealTypeRepository mealTypeRepository;
+
+    @Autowired
+    private MealCategoryRepository mealCategoryRepository;
+
+    @Autowired
+    private SupportConfigRepository supportConfigRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    // Stands in for the operator lookup, which runs between the duplicate check and the insert
+    @MockitoBean
+    private UserService userService;
+
+    private String cardId;
+    private String employeeId;
+    private String categoryId;
+
+    @BeforeEach
+    void setUp() {
+        when(userService.getCurrentUser()).thenReturn(Optional.empty());
+
+        MealType lunch = new MealType();
+        lunch.setName("Lunch");
+        lunch = mealTypeRepository.save(lunch);
+
+        MealCategory category = new MealCategory();
+        category.setMealType(lunch);
+        category.setCategory(MealCategory.MealCategoryType.FASTING);
+        category.setName("Lunch - Fasting");
+        category.setNormalPrice(new BigDecimal("50.00"));
+        category.setSupportedPrice(new BigDecimal("20.00"));
+        categoryId = mealCategoryRepository.save(category).getId();
+
+        cardId = "CARD-" + UUID.randomUUID().toString().substring(0, 8);
+        Employee employee = new Employee();
+        employee.setEmployeeId("E-" + cardId);
+        employee.setCardId(cardId);
+        employee.setName("Abebe Kebede");
+        employee.setDepartment("Finance");
+        employee.setSalary(new BigDecimal("3000.00"));
+        employeeId = employeeRepository.save(employee).getId();
+
+        jdbcTemplate.update("DELETE FROM support_config");
+        saveSupportConfig("2000.00", LocalDate.now().minusDays(5).atStartOfDay(), false);
+        saveSupportConfig("5000.00", LocalDate.now().minusDays(1).atStartOfDay(), true);
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void tapsArePricedWithTheConfigurationInForceWhenTheyHappened() {
+        LocalDateTime beforeRaise = LocalDate.now().minusDays(2).atTime(12, 0);
+        LocalDateTime afterRaise = LocalDateTime.now().minusMinutes(1);
+
+        OfflineTapBatchResult result = offlineTapService.ingest(List.of(tap("t1", beforeRaise), tap("t2", afterRaise)));
+
+        assertEquals(2, result.getAccepted());
+        assertEquals("NORMAL", priceType("t1"));
+        assertEquals(0, new BigDecimal("50.00").compareTo(actualPrice("t1")));
+        assertEquals("SUPPORTED", priceType("t2"));
+        assertEquals(0, new BigDecimal("20.00").compareTo(actualPrice("t2")));
+    }
+
+    @Test
+    void secondMealOfTheSameTypeOnADayConflictsWithTheFirst() {
+        LocalDateTime noon = LocalDate.now().minusDays(1).atTime(12, 0);
+
+        // Sent out of order: the earlier tap wins
+        OfflineTapBatchResult result = offlineTapService.ingest(List.of(tap("late", noon.plusHours(1)), tap("early", noon)));
+
+        TapResult late = result.getResults().get(0);
+        TapResult early = result.getResults().get(1);
+        assertEquals(TapStatus.ACCEPTED, early.getStatus());
+        assertEquals(TapStatus.CONFLICT, late.getStatus());
+        assertEquals(early.getMealRecordId(), late.getMealRecordId());
+
+        // Also against meals recorded by an earlier upload
+        TapResult again = offlineTapService.ingest(List.of(tap("evening", noon.plusHours(6)))).getResults().get(0);
+        assertEquals(TapStatus.CONFLICT, again.getStatus());
+        assertEquals(early.getMealRecordId(), again.getMealRecordId());
+    }
+
+    @Test
+    void reuploadedTapsAreAlreadyRecorded() {
+        List<OfflineTapBatchRequest.OfflineTap> taps = List.of(tap("r1", LocalDateTime.now().minusMinutes(5)));
+        TapResult first = offlineTapService.ingest(taps).getResults().get(0);
+
+        OfflineTapBatchResult second = offlineTapService.ingest(taps);
+
+        assertEquals(1, second.getAlreadyRecorded());
+        assertEquals(first.getMealRecordId(), second.getResults().get(0).getMealRecordId());
+        assertEquals(first.getOrderNumber(), second.getResults().get(0).getOrderNumber());
+        assertEquals(1, count("r1"));
+    }
+
+    @Test
+    void concurrentUploadOfTheSameTapsIsResolvedAsAlreadyRecorded() {
+        List<OfflineTapBatchRequest.OfflineTap> taps = List.of(tap("c1", LocalDateTime.now().minusMinutes(5)));
+        AtomicBoolean raced = new AtomicBoolean();
+        String[] otherRecordId = new String[1];
+        // After this upload checked for earlier uploads, the same batch is recorded by another one
+        when(userService.getCurrentUser()).thenAnswer(invocation -> {
+            if (raced.compareAndSet(false, true)) {
+                otherRecordId[0] = CompletableFuture.supplyAsync(() -> offlineTapService.ingest(taps))
+                    .join().getResults().get(0).getMealRecordId();
+            }
+            return Optional.empty();
+        });
+
+        TapResult result = offlineTapService.ingest(taps).getResults().get(0);
+
+        assertEquals(TapStatus.ALREADY_RECORDED, result.getStatus());
+        assertEquals(otherRecordId[0], result.getMealRecordId());
+        assertEquals(1, count("c1"));
+    }
+
+    @Test
+    void tapsStayWithTheEmployeeTheKioskResolvedAfterTheCardIsReissued() {
+        LocalDateTime noon = LocalDate.now().minusDays(1).atTime(12, 0);
+        TapResult first = offlineTapService.ingest(List.of(tap("before-reissue", noon))).getResults().get(0);
+        String newOwnerId = reissueCard();
+
+        // Uploaded after the card moved to the new owner, tapped while it was still the old owner's
+        OfflineTapBatchRequest.OfflineTap late = tap("late-upload", noon.plusHours(1));
+        TapResult lateResult = offlineTapService.ingest(List.of(late)).getResults().get(0);
+        // The new owner's own meal is not blocked by the old owner's
+        OfflineTapBatchRequest.OfflineTap newOwner = tap("new-owner", noon.plusHours(2));
+        newOwner.setEmployeeId(newOwnerId);
+        TapResult newOwnerResult = offlineTapService.ingest(List.of(newOwner)).getResults().get(0);
+
+        assertEquals(TapStatus.CONFLICT, lateResult.getStatus());
+        assertEquals(first.getMealRecordId(), lateResult.getMealRecordId());
+        assertEquals(TapStatus.ACCEPTED, newOwnerResult.getStatus());
+        assertEquals(employeeId, recordedEmployee("before-reissue"));
+        assertEquals(newOwnerId, recordedEmployee("new-owner"));
+    }
+
+    @Test
+    void tapWithAShortCodeIsRecorded() {
+        String shortCode = cardId.substring(cardId.length() - 4);
+        jdbcTemplate.update("UPDATE employees SET short_code = ? WHERE id = ?", shortCode, employeeId);
+        entityManagerFactory.getCache().evictAll();
+        OfflineTapBatchRequest.OfflineTap tap = tap("short-code", LocalDateTime.now().minusMinutes(5));
+        tap.setCardId(shortCode);
+
+        TapResult result = offlineTapService.ingest(List.of(tap)).getResults().get(0);
+
+        assertEquals(TapStatus.ACCEPTED, result.getStatus());
+        assertEquals(employeeId, recordedEmployee("short-code"));
+    }
+
+    @Test
+    void tapForAnEmployeeThatNeverHeldTheCardIsRejected() {
+        String otherId = saveEmployee("OTHER-" + UUID.randomUUID().toString().substring(0, 8));
+        // Unchanged since before the tap, so a re-issued card cannot explain the mismatch
+        jdbcTemplate.update("UPDATE employees SET updated_at = ? WHERE id = ?",
+            Timestamp.valueOf(LocalDateTime.now().minusDays(1)), otherId);
+        entityManagerFactory.getCache().evictAll();
+        OfflineTapBatchRequest.OfflineTap tap = tap("wrong-employee", LocalDateTime.now().minusMinutes(5));
+        tap.setEmployeeId(otherId);
+
+        TapResult result = offlineTapService.ingest(List.of(tap)).getResults().get(0);
+
+        assertEquals(TapStatus.REJECTED, result.getStatus());
+        assertEquals("Card does not belong to the employee", result.getMessage());
+    }
+
+    // Moves the card to a new employee, as a re-issue does; returns the new owner's id
+    private String reissueCard() {
+        jdbcTemplate.update("UPDATE employees SET card_id = NULL, updated_at = ? WHERE id = ?",
+            Timestamp.valueOf(LocalDateTime.now()), employeeId);
+        String newOwnerId = saveEmployee(cardId);
+        entityManagerFactory.getCache().evictAll();
+        return newOwnerId;
+    }
+
+    private String saveEmployee(String card) {
+        Employee employee = new Employee();
+        employee.setEmployeeId("E-" + card);
+        employee.setCardId(card);
+        employee.setName("Almaz Tesfaye");
+        employee.setDepartment("Finance");
+        employee.setSalary(new BigDecimal("3000.00"));
+        return employeeRepository.save(employee).getId();
+    }
+
+    private void saveSupportConfig(String maxSalary, LocalDateTime createdAt, boolean active) {
+        SupportConfig config = new SupportConfig();
+        config.setMaxSalaryForSupport(new BigDecimal(maxSalary));
+        config.setActive(active);
+        String id = supportConfigRepository.save(config).getId();
+        jdbcTemplate.update("UPDATE support_config SET created_at = ? WHERE id = ?", Timestamp.valueOf(createdAt), id);
+    }
+
+    private OfflineTapBatchRequest.OfflineTap tap(String clientId, LocalDateTime recordedAt) {
+        OfflineTapBatchRequest.OfflineTap tap = new OfflineTapBatchRequest.OfflineTap();
+        // Client ids are unique per database, so make them unique per test
+        tap.setClientId(cardId + "-" + clientId);
+        tap.setCardId(cardId);
+        tap.setEmployeeId(employeeId);
+        tap.setMealCategoryId(categoryId);
+        tap.setRecordedAt(recordedAt);
+        return tap;
+    }
+
+    private String priceType(String clientId) {
+        return jdbcTemplate.queryForObject("SELECT price_type FROM meal_records WHERE client_tap_id = ?", String.class,
+            cardId + "-" + clientId);
+    }
+
+    private BigDecimal actualPrice(String clientId) {
+        return jdbcTemplate.queryForObject("SELECT actual_price FROM meal_records WHERE client_tap_id = ?", BigDecimal.class,
+            cardId + "-" + clientId);
+    }
+
+    private String recordedEmployee(String clientId) {
+        return jdbcTemplate.queryForObject("SELECT employee_id FROM meal_records WHERE client_tap_id = ?", String.class,
+            cardId + "-" + clientId);
+    }
+
+    private int count(String clientId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM meal_records WHERE client_tap_id = ?", Integer.class,
+            cardId + "-" + clientId);
+    }
+}
@@ -0,0 +1,125 @@
+package et.moe.ethernet.cateteria.service;
+
+import et.moe.ethernet.cateteria.service.AdmissionControlService.Lane;
+import et.moe.ethernet.cateteria.service.AdmissionControlService.Outcome;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Report coalescing behind the report lane with its default limits (4 concurrent, 16 queued, 10 s
+ * queue timeout). Each call is admitted and released the way {@code AdmissionControlFilter} does.
+ * The summary computation blocks until {@code release} is counted down.
+ */
+class ReportCoalescingServiceTests {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private SupportReportService supportReportService;
+    private AdmissionControlService admissionControlService;
+    private ReportCoalescingService reportCoalescingService;
+
+    @BeforeEach
+    void setUp() {
+        supportReportService = mock(SupportReportService.class);
+        admissionControlService = new AdmissionControlService(Map.of(), mock(ReplicaHeartbeatService.class));
+        ReflectionTestUtils.setField(admissionControlService, "tapMaxConcurrent", 80);
+        ReflectionTestUtils.setField(admissionControlService, "tapMaxQueued", 40);
+        ReflectionTestUtils.setField(admissionControlService, "tapQueueTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(admissionControlService, "perKioskMaxConcurrent", 4);
+        ReflectionTestUtils.setField(admissionControlService, "reportMaxConcurrent", 4);
+        ReflectionTestUtils.setField(admissionControlService, "reportMaxQueued", 16);
+        ReflectionTestUtils.setField(admissionControlService, "reportQueueTimeoutMs", 10000L);
+        ReflectionTestUtils.setField(admissionControlService, "defaultMaxConcurrent", 20);
+        ReflectionTestUtils.setField(admissionControlService, "defaultMaxQueued", 40);
+        ReflectionTestUtils.setField(admissionControlService, "defaultQueueTimeoutMs", 3000L);
+        ReflectionTestUtils.setField(admissionControlService, "requestThreads", 200);
+        admissionControlService.init();
+        reportCoalescingService = new ReportCoalescingService(supportReportService, admissionControlService);
+    }
+
+    @Test
+    void twelveIdenticalRequestsShareOneComputation() throws Exception {
+        SupportReportService.SupportSummary summary = new SupportReportService.SupportSummary(12, 0, 12, 600.0, 0.0, 600.0, 0, 12, 0.0);
+        when(supportReportService.getSupportSummary("monthly")).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return summary;
+        });
+
+        ExecutorService requests = Executors.newFixedThreadPool(12);
+        try {
+            List<CompletableFuture<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                results.add(CompletableFuture.supplyAsync(this::requestSummary, requests));
+            }
+            // More joiners than lane slots: only possible if waiting callers give their slot back
+            awaitJoined(11);
+            release.countDown();
+
+            for (CompletableFuture<Object> result : results) {
+                assertSame(summary, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            release.countDown();
+            requests.shutdownNow();
+        }
+        verify(supportReportService, times(1)).getSupportSummary("monthly");
+        assertEquals(0, reportLaneActive());
+    }
+
+    @Test
+    void releaseAfterReleaseCurrentFreesTheSlotOnce() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Outcome.ADMITTED, admissionControlService.admit(Lane.REPORT, null));
+            admissionControlService.releaseCurrent();
+            admissionControlService.release(Lane.REPORT, null);
+        }
+        assertEquals(0, reportLaneActive());
+    }
+
+    // What a report request goes through: admission, the coalesced report, release
+    private Object requestSummary() {
+        try {
+            Outcome outcome = admissionControlService.admit(Lane.REPORT, null);
+            if (outcome != Outcome.ADMITTED) {
+                return outcome;
+            }
+            try {
+                return reportCoalescingService.getSupportSummary("monthly");
+            } finally {
+                admissionControlService.release(Lane.REPORT, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private Object reportLaneActive() {
+        Map<?, ?> lanes = (Map<?, ?>) admissionControlService.getStatistics().get("lanes");
+        return ((Map<?, ?>) lanes.get(Lane.REPORT.name())).get("active");
+    }
+
+    private void awaitJoined(long joined) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((long) reportCoalescingService.getStatistics().get("joined") < joined && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(joined, reportCoalescingService.getStatistics().get("joined"));
+    }
+}
@@ -0,0 +1,117 @@
+package et.moe.ethernet.cateteria.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import et.moe.ethernet.cateteria.controller.ReportJobController;
+import et.moe.ethernet.cateteria.dto.ReportJob;
+import et.moe.ethernet.cateteria.dto.ReportJobRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Report job submission with one worker and room for one queued job. The summary report blocks
+ * until {@code release} is counted down, so the first job keeps the worker busy.
+ */
+class ReportJobServiceTests {
+
+    @TempDir
+    Path resultsDir;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ReportJobService reportJobService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReportCoalescingService reportCoalescingService = mock(ReportCoalescingService.class);
+        when(reportCoalescingService.getSupportSummary(anyString())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return null;
+        });
+        reportJobService = new ReportJobService(reportCoalescingService, mock(MealRecordArchiveService.class),
+            mock(JdbcTemplate.class), mock(PlatformTransactionManager.class), new ObjectMapper().registerModule(new JavaTimeModule()));
+        ReflectionTestUtils.setField(reportJobService, "resultsDir", resultsDir.toString());
+        ReflectionTestUtils.setField(reportJobService, "workers", 1);
+        ReflectionTestUtils.setField(reportJobService, "maxQueued", 1);
+        ReflectionTestUtils.setField(reportJobService, "resultTtlHours", 24L);
+        reportJobService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        reportJobService.shutdown();
+    }
+
+    @Test
+    void sameSpecJoinsTheActiveJob() {
+        ReportJob running = reportJobService.submit(summary("monthly"));
+        ReportJob queued = reportJobService.submit(summary("weekly"));
+
+        // Normalized to the same spec: period is trimmed and lower-cased, and defaults to monthly
+        assertSame(running, reportJobService.submit(summary(" Monthly ")));
+        assertSame(running, reportJobService.submit(summary(null)));
+        assertSame(queued, reportJobService.submit(summary("weekly")));
+        assertNotEquals(running.getId(), queued.getId());
+        assertEquals(2, reportJobService.getJobs().size());
+    }
+
+    @Test
+    void fullQueueIsRejectedWith503AndLeavesNoJob() {
+        reportJobService.submit(summary("monthly"));
+        reportJobService.submit(summary("weekly"));
+
+        ResponseEntity<Object> response = new ReportJobController(reportJobService).submit(summary("daily"));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals(Map.of("error", "Report queue is full, try again later"), response.getBody());
+        assertEquals(2, reportJobService.getJobs().size());
+        assertEquals(2, resultsDir.toFile().list((dir, name) -> name.endsWith(".job.json")).length);
+    }
+
+    @Test
+    void rejectedSpecCanBeSubmittedAgainOnceThereIsRoom() throws Exception {
+        ReportJob running = reportJobService.submit(summary("monthly"));
+        ReportJob queued = reportJobService.submit(summary("weekly"));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE,
+            new ReportJobController(reportJobService).submit(summary("daily")).getStatusCode());
+
+        release.countDown();
+        awaitFinished(running);
+        awaitFinished(queued);
+
+        ReportJob daily = reportJobService.submit(summary("daily"));
+        assertNotEquals(ReportJob.Status.FAILED, daily.getStatus());
+        assertEquals(3, reportJobService.getJobs().size());
+    }
+
+    private static ReportJobRequest summary(String period) {
+        return new ReportJobRequest(ReportJob.Type.SUMMARY, period, null, null, null);
+    }
+
+    private static void awaitFinished(ReportJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!job.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(ReportJob.Status.DONE, job.getStatus());
+    }
+}
@@ -0,0 +1,97 @@
+package et.moe.ethernet.cateteria.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import et.moe.ethernet.cateteria.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Base64;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenServiceTests {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(new byte[32]);
+
+    private TokenService tokenService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        tokenService = newTokenService(SECRET);
+        user = new User();
+        user.setUsername("operator");
+        user.setPassword("$2a$10$hash");
+        user.setRole(User.UserRole.OPERATOR);
+    }
+
+    @Test
+    void accessTokenVerifies() {
+        Map<String, Object> claims = tokenService.verify(tokenService.issueAccessToken(user), TokenService.TYPE_ACCESS).orElseThrow();
+        assertEquals("operator", claims.get("sub"));
+        assertEquals("OPERATOR", claims.get("role"));
+    }
+
+    @Test
+    void tokenOfOtherTypeIsRejected() {
+        assertTrue(tokenService.verify(tokenService.issueRefreshToken(user), TokenService.TYPE_ACCESS).isEmpty());
+        assertTrue(tokenService.verify(tokenService.issueAccessToken(user), TokenService.TYPE_REFRESH).isEmpty());
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        String token = tokenService.issueAccessToken(user);
+        String forgedPayload = Base64.getUrlEncoder().withoutPadding().encodeToString(
+            "{\"typ\":\"access\",\"sub\":\"operator\",\"role\":\"ADMIN\",\"exp\":9999999999}".getBytes());
+        assertTrue(tokenService.verify(forgedPayload + token.substring(token.indexOf('.')), TokenService.TYPE_ACCESS).isEmpty());
+        assertTrue(tokenService.verify(token + "x", TokenService.TYPE_ACCESS).isEmpty());
+        assertTrue(tokenService.verify("not-a-token", TokenService.TYPE_ACCESS).isEmpty());
+    }
+
+    @Test
+    void tokenSignedWithOtherSecretIsRejected() {
+        byte[] otherSecret = new byte[32];
+        otherSecret[0] = 1;
+        TokenService other = newTokenService(Base64.getEncoder().encodeToString(otherSecret));
+        assertTrue(tokenService.verify(other.issueAccessToken(user), TokenService.TYPE_ACCESS).isEmpty());
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        ReflectionTestUtils.setField(tokenService, "accessTokenTtlSeconds", -1L);
+        assertTrue(tokenService.verify(tokenService.issueAccessToken(user), TokenService.TYPE_ACCESS).isEmpty());
+    }
+
+    @Test
+    void refreshTokenIsRevokedByLogout() {
+        Map<String, Object> claims = tokenService.verify(tokenService.issueRefreshToken(user), TokenService.TYPE_REFRESH).orElseThrow();
+        assertTrue(tokenService.isCurrent(claims, user));
+
+        // What UserService.revokeRefreshTokens does in the database
+        user.setTokenGeneration(user.getTokenGeneration() + 1);
+        assertFalse(tokenService.isCurrent(claims, user));
+
+        Map<String, Object> renewed = tokenService.verify(tokenService.issueRefreshToken(user), TokenService.TYPE_REFRESH).orElseThrow();
+        assertTrue(tokenService.isCurrent(renewed, user));
+    }
+
+    @Test
+    void refreshTokenIsRevokedByPasswordChange() {
+        Map<String, Object> claims = tokenService.verify(tokenService.issueRefreshToken(user), TokenService.TYPE_REFRESH).orElseThrow();
+        user.setPassword("$2a$10$otherhash");
+        assertFalse(tokenService.isCurrent(claims, user));
+    }
+
+    private static TokenService newTokenService(String secret) {
+        TokenService service = new TokenService(new ObjectMapper());
+        ReflectionTestUtils.setField(service, "tokenSecret", secret);
+        ReflectionTestUtils.setField(service, "accessTokenTtlSeconds", 900L);
+        ReflectionTestUtils.setField(service, "refreshTokenTtlSeconds", 604800L);
+        service.init();
+        return service;
+    }
+}